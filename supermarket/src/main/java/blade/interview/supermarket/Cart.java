@@ -1,16 +1,51 @@
 package blade.interview.supermarket;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 
+/**
+ * The totals are kept up to date by every change, so they cost nothing to read.
+ * The receipt is rendered into a buffer that is kept between the calls: only the lines changed since are rendered again,
+ * each in the place of its old text, and a removed line is cut out. So it's one line per scan wherever the scanned item is on the receipt.
+ * The items are interned by the Catalog and the cart holds their SKU ids and quantities in int arrays, see SkuQuantities,
+ * so addItem(int) allocates nothing, nor does addItem(Item) once the Catalog has seen the item, and an Item changed after it was added doesn't change the cart.
+ * Carts share a Catalog and its PricingEngine, the ones created without one share the default engine, see PricingEngine.shared().
+ * Money is in cents and the points in tenths, see Money, so the totals are exact however many lines there are.
+ * The lines are priced by the PricingEngine, a table lookup per line. When the rules are swapped,
+ * the cart prices all its lines again the next time it's changed or read.
+ * Not thread-safe, CartStore shares carts between threads.
+ */
 public class Cart {
 
     private String id;
-    private Map<Item, Integer> items = new LinkedHashMap<>(); // remember ordering of items
+    private final Catalog catalog;
+    private final PricingEngine pricing;
+    private long pricedWithVersion;
+    private final SkuQuantities lines = new SkuQuantities(); // remember ordering of items
+    private long totalPriceCents;
+    private long totalPointsTenths;
+    // header and the lines rendered so far
+    private StringBuilder receipt = new StringBuilder();
+    private StringBuilder summary = new StringBuilder();
+    private StringBuilder changedLine = new StringBuilder();
+    private int[] lineEnds = new int[8];
+    // of the lines rendered, the ones whose quantity changed since
+    private boolean[] staleLines = new boolean[8];
+    private int numberOfStaleLines;
+    private int headerEnd;
+    private int renderedLines = -1; // -1 when even the header has to be rendered
 
+    /** With the default pricing rules and the catalog shared by all the carts created this way, compiled once for all of them. */
     public Cart(String id) {
+        this(id, PricingEngine.shared());
+    }
+
+    public Cart(String id, PricingEngine pricing) {
         this.id = id;
+        this.catalog = pricing.getCatalog();
+        this.pricing = pricing;
+        this.pricedWithVersion = pricing.table().version();
     }
 
     public String getId() {
@@ -19,45 +54,214 @@ public class Cart {
 
     public void setId(final String id) {
         this.id = id;
+        renderAgainFrom(-1);
+    }
+
+    public Catalog getCatalog() {
+        return catalog;
     }
 
     public void addItem(Item i) {
-        Integer count = items.get(i);
-        if (count == null)
-            count = 0;
-        items.put(i, ++count);
+        addItem(catalog.intern(i).getId());
+    }
+
+    /** @param skuId from the catalog of the cart */
+    public void addItem(int skuId) {
+        setQuantity(skuId, lines.get(skuId) + 1);
+    }
+
+    /** Takes the whole line off the receipt. */
+    public void removeItem(Item i) {
+        setQuantity(i, 0);
+    }
+
+    /**
+     * @param count 0 removes the line, a new item goes to the end of the receipt
+     */
+    public void setQuantity(Item i, int count) {
+        setQuantity(catalog.intern(i).getId(), count);
+    }
+
+    /** Same as setQuantity(Item, int). */
+    public void setQuantity(int skuId, int count) {
+        Sku sku = catalog.get(skuId);
+        if (count < 0)
+            throw new IllegalArgumentException("Negative quantity " + count + " of " + sku.getName());
+        PricingTable table = pricing.table(skuId);
+        reprice(table);
+        int position = lines.positionOf(skuId);
+        int oldCount = position < 0 ? 0 : lines.quantityAt(position);
+        if (count == oldCount)
+            return;
+        totalPriceCents += table.linePriceCents(skuId, count) - table.linePriceCents(skuId, oldCount);
+        totalPointsTenths += table.linePointsTenths(skuId, count) - table.linePointsTenths(skuId, oldCount);
+        if (position < 0)
+            position = lines.add(skuId, count);
+        else if (count == 0)
+            lines.removeAt(position);
+        else
+            lines.setQuantityAt(position, count);
+        if (position >= renderedLines)
+            return; // a new line, or one that isn't rendered yet anyway
+        if (count == 0) {
+            cutRenderedLine(position);
+        } else if (!staleLines[position]) {
+            staleLines[position] = true;
+            numberOfStaleLines++;
+        }
+    }
+
+    /** @return 0 if it's not in the cart */
+    public int getQuantity(Item i) {
+        return getQuantity(catalog.intern(i).getId());
+    }
+
+    /** Same as getQuantity(Item). */
+    public int getQuantity(int skuId) {
+        return lines.get(skuId);
+    }
+
+    public long getTotalPriceCents() {
+        reprice(pricing.table());
+        return totalPriceCents;
+    }
+
+    public long getTotalPointsTenths() {
+        reprice(pricing.table());
+        return totalPointsTenths;
     }
 
     public String getReceipt() {
-        String receipt = "Receipt ID " + this.id + "\n";
-        double totalPrice = 0;
-        double totalPoints = 0;
-        for (Entry<Item, Integer> entry : items.entrySet()) {
-            Item item = entry.getKey();
-            Integer count = entry.getValue();
-            double currentPrice = item.getPrice() * count;
-            // 10 percent discount when buy a lot for all green items!
-            if (item.getCategoryCode() != null && item.getCategoryCode() == Item.GREEN && currentPrice > 5)
-                currentPrice *= 0.9;
-            double currentPoints = 0;
-            switch (item.getCategoryCode()) {
-                case Item.MEAT:
-                    currentPoints = 1; // no joy for meat eater
-                    break;
-                case Item.DAIRY:
-                    currentPoints = 0.5 * count;
-                    break;
-                case Item.GREEN:
-                    currentPoints = 1.5 * count; // more perks for healthy eating
-                    break;
-            }
-            receipt += "\t" + count + " " + item.getName() + "\t" + String.valueOf(currentPrice) + "\n";
-            totalPrice += currentPrice;
-            totalPoints += currentPoints;
+        StringBuilder out = new StringBuilder(receipt.length() + 64);
+        try {
+            writeReceipt(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // a StringBuilder doesn't throw
         }
+        return out.toString();
+    }
+
+    /** Same as getReceipt, straight into the out, e.g. a Writer or a reused StringBuilder. */
+    public void writeReceipt(Appendable out) throws IOException {
+        render();
+        out.append(receipt);
         // Bill summary
-        receipt += "Total price: $" + String.valueOf(totalPrice) + "\n";
-        receipt += "You earned " + String.valueOf(totalPoints) + " points";
-        return receipt;
+        summary.setLength(0);
+        out.append(CartSnapshot.appendSummary(summary, totalPriceCents, totalPointsTenths));
+    }
+
+    /** @return copy of the lines and totals as they are now, for another thread to read, see CartStore */
+    public CartSnapshot snapshot() {
+        PricingTable table = pricing.table();
+        reprice(table);
+        Sku[] skus = new Sku[lines.size()];
+        int[] quantities = new int[skus.length];
+        long[] linePriceCents = new long[skus.length];
+        for (int position = 0; position < skus.length; position++) {
+            skus[position] = catalog.get(lines.skuAt(position));
+            quantities[position] = lines.quantityAt(position);
+            linePriceCents[position] = table.linePriceCents(lines.skuAt(position), quantities[position]);
+        }
+        return new CartSnapshot(id, skus, quantities, linePriceCents, totalPriceCents, totalPointsTenths, table.version());
+    }
+
+    /**
+     * Same as snapshot(), from the snapshot taken right before the SKU's line changed: only that line is new, the rest are shared.
+     * The whole cart is copied if the rules changed since, or if there is no previous snapshot.
+     * @param previous snapshot of the cart as it was before the last change, null if there is none
+     */
+    CartSnapshot snapshot(CartSnapshot previous, int skuId) {
+        PricingTable table = pricing.table(skuId);
+        reprice(table);
+        if (null == previous || previous.rulesVersion() != table.version() || !previous.getId().equals(id))
+            return snapshot();
+        int position = lines.positionOf(skuId);
+        if (position < 0) {
+            int removed = previous.positionOf(skuId);
+            return removed < 0 ? previous : previous.withoutLine(removed, totalPriceCents, totalPointsTenths);
+        }
+        int count = lines.quantityAt(position);
+        return previous.withLine(position, catalog.get(skuId), count, table.linePriceCents(skuId, count), totalPriceCents, totalPointsTenths);
+    }
+
+    private void render() {
+        PricingTable table = pricing.table();
+        reprice(table);
+        if (renderedLines < 0) {
+            receipt.setLength(0);
+            CartSnapshot.appendHeader(receipt, this.id);
+            headerEnd = receipt.length();
+            renderedLines = 0;
+        }
+        if (numberOfStaleLines > 0)
+            renderStaleLines(table);
+        receipt.setLength(renderedLines == 0 ? headerEnd : lineEnds[renderedLines - 1]);
+        if (lineEnds.length < lines.size()) {
+            lineEnds = Arrays.copyOf(lineEnds, 2 * lines.size());
+            staleLines = Arrays.copyOf(staleLines, lineEnds.length);
+        }
+        for (; renderedLines < lines.size(); renderedLines++) {
+            Sku sku = catalog.get(lines.skuAt(renderedLines));
+            int count = lines.quantityAt(renderedLines);
+            CartSnapshot.appendLine(receipt, count, sku.getName(), table.linePriceCents(sku.getId(), count));
+            lineEnds[renderedLines] = receipt.length();
+        }
+    }
+
+    /** Renders the stale lines again in the place of their old text, the lines after them only move. */
+    private void renderStaleLines(PricingTable table) {
+        int shift = 0;
+        for (int position = 0; position < renderedLines; position++) {
+            if (!staleLines[position]) {
+                lineEnds[position] += shift;
+                continue;
+            }
+            int start = position == 0 ? headerEnd : lineEnds[position - 1];
+            int end = lineEnds[position] + shift;
+            int skuId = lines.skuAt(position);
+            int count = lines.quantityAt(position);
+            changedLine.setLength(0);
+            CartSnapshot.appendLine(changedLine, count, catalog.get(skuId).getName(), table.linePriceCents(skuId, count));
+            receipt.delete(start, end).insert(start, changedLine);
+            shift += changedLine.length() - (end - start);
+            lineEnds[position] = start + changedLine.length();
+            staleLines[position] = false;
+        }
+        numberOfStaleLines = 0;
+    }
+
+    /** Cuts the text of a rendered line out of the receipt, the lines after it move up. */
+    private void cutRenderedLine(int position) {
+        int start = position == 0 ? headerEnd : lineEnds[position - 1];
+        int length = lineEnds[position] - start;
+        receipt.delete(start, lineEnds[position]);
+        if (staleLines[position])
+            numberOfStaleLines--;
+        for (int next = position + 1; next < renderedLines; next++) {
+            lineEnds[next - 1] = lineEnds[next] - length;
+            staleLines[next - 1] = staleLines[next];
+        }
+        staleLines[--renderedLines] = false;
+    }
+
+    /** @param position -1 renders the header again too */
+    private void renderAgainFrom(int position) {
+        renderedLines = Math.min(renderedLines, position);
+        Arrays.fill(staleLines, false);
+        numberOfStaleLines = 0;
+    }
+
+    /** Totals and lines again from scratch if the table has other rules than the cart was priced with. */
+    private void reprice(PricingTable table) {
+        if (table.version() == pricedWithVersion)
+            return;
+        totalPriceCents = 0;
+        totalPointsTenths = 0;
+        for (int position = 0; position < lines.size(); position++) {
+            totalPriceCents += table.linePriceCents(lines.skuAt(position), lines.quantityAt(position));
+            totalPointsTenths += table.linePointsTenths(lines.skuAt(position), lines.quantityAt(position));
+        }
+        pricedWithVersion = table.version();
+        renderAgainFrom(0);
     }
 }
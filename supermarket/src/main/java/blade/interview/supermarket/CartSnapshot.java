@@ -0,0 +1,176 @@
+package blade.interview.supermarket;
+
+import java.util.Arrays;
+
+/**
+ * Immutable copy of the lines and totals of a Cart at one point, priced with the rules of that point.
+ * Safe to share between threads, the receipt is rendered from it the same way as Cart.getReceipt() does, without the cart.
+ * The next snapshot of a change is made from the previous one, see Cart.snapshot(CartSnapshot, int): a changed line is one new Line
+ * in a copy of the line array, and a new line goes into the spare room of the same array, the older snapshots don't look that far.
+ */
+public final class CartSnapshot {
+
+    private final String id;
+    private final Line[] lines; // may be longer and shared with the later snapshots, only the first numberOfLines are this one's
+    private final int numberOfLines;
+    private final long totalPriceCents;
+    private final long totalPointsTenths;
+    private final long rulesVersion;
+    private String receipt; // rendered on demand, racy but every thread renders the same
+
+    CartSnapshot(String id, Sku[] skus, int[] quantities, long[] linePriceCents, long totalPriceCents, long totalPointsTenths,
+                 long rulesVersion) {
+        this(id, new Line[Math.max(8, skus.length)], skus.length, totalPriceCents, totalPointsTenths, rulesVersion);
+        for (int line = 0; line < skus.length; line++)
+            lines[line] = new Line(skus[line], quantities[line], linePriceCents[line]);
+    }
+
+    private CartSnapshot(String id, Line[] lines, int numberOfLines, long totalPriceCents, long totalPointsTenths, long rulesVersion) {
+        this.id = id;
+        this.lines = lines;
+        this.numberOfLines = numberOfLines;
+        this.totalPriceCents = totalPriceCents;
+        this.totalPointsTenths = totalPointsTenths;
+        this.rulesVersion = rulesVersion;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int lines() {
+        return numberOfLines;
+    }
+
+    public Sku skuAt(int line) {
+        return lineAt(line).sku;
+    }
+
+    public int quantityAt(int line) {
+        return lineAt(line).quantity;
+    }
+
+    public long linePriceCentsAt(int line) {
+        return lineAt(line).priceCents;
+    }
+
+    /** @return number of items on all the lines */
+    public long getItemCount() {
+        long count = 0;
+        for (int line = 0; line < numberOfLines; line++)
+            count += lines[line].quantity;
+        return count;
+    }
+
+    public long getTotalPriceCents() {
+        return totalPriceCents;
+    }
+
+    public long getTotalPointsTenths() {
+        return totalPointsTenths;
+    }
+
+    /** @return version of the PricingTable it's priced with */
+    long rulesVersion() {
+        return rulesVersion;
+    }
+
+    /** @return the line of the SKU, -1 if it's not in the cart */
+    int positionOf(int skuId) {
+        for (int line = 0; line < numberOfLines; line++) {
+            if (lines[line].sku.getId() == skuId)
+                return line;
+        }
+        return -1;
+    }
+
+    /**
+     * @param position of the line, numberOfLines adds one
+     * @return this one with the line at the position and the new totals
+     */
+    CartSnapshot withLine(int position, Sku sku, int quantity, long priceCents, long totalPriceCents, long totalPointsTenths) {
+        Line[] changed = lines;
+        if (position < numberOfLines)
+            changed = lines.clone();
+        else if (numberOfLines == lines.length || null != lines[numberOfLines])
+            changed = Arrays.copyOf(lines, 2 * numberOfLines + 1); // full, or the room was taken by another snapshot
+        changed[position] = new Line(sku, quantity, priceCents);
+        return new CartSnapshot(id, changed, Math.max(numberOfLines, position + 1), totalPriceCents, totalPointsTenths, rulesVersion);
+    }
+
+    /** @return this one without the line at the position, the lines after it move up */
+    CartSnapshot withoutLine(int position, long totalPriceCents, long totalPointsTenths) {
+        Line[] changed = new Line[lines.length];
+        System.arraycopy(lines, 0, changed, 0, position);
+        System.arraycopy(lines, position + 1, changed, position, numberOfLines - position - 1);
+        return new CartSnapshot(id, changed, numberOfLines - 1, totalPriceCents, totalPointsTenths, rulesVersion);
+    }
+
+    /** @return same lines priced with the current rules of the engine, without the cart */
+    CartSnapshot repriced(PricingEngine pricing) {
+        int lastSkuId = 0;
+        for (int line = 0; line < numberOfLines; line++)
+            lastSkuId = Math.max(lastSkuId, lines[line].sku.getId());
+        PricingTable table = numberOfLines == 0 ? pricing.table() : pricing.table(lastSkuId);
+        Line[] repriced = new Line[lines.length];
+        long priceCents = 0;
+        long pointsTenths = 0;
+        for (int line = 0; line < numberOfLines; line++) {
+            Line old = lines[line];
+            repriced[line] = new Line(old.sku, old.quantity, table.linePriceCents(old.sku.getId(), old.quantity));
+            priceCents += repriced[line].priceCents;
+            pointsTenths += table.linePointsTenths(old.sku.getId(), old.quantity);
+        }
+        return new CartSnapshot(id, repriced, numberOfLines, priceCents, pointsTenths, table.version());
+    }
+
+    public String getReceipt() {
+        String rendered = receipt;
+        if (null == rendered) {
+            StringBuilder out = appendHeader(new StringBuilder(64 + 32 * numberOfLines), id);
+            for (int line = 0; line < numberOfLines; line++)
+                appendLine(out, lines[line].quantity, lines[line].sku.getName(), lines[line].priceCents);
+            rendered = appendSummary(out, totalPriceCents, totalPointsTenths).toString();
+            receipt = rendered;
+        }
+        return rendered;
+    }
+
+    @Override
+    public String toString() {
+        return getReceipt();
+    }
+
+    private Line lineAt(int line) {
+        if (line >= numberOfLines)
+            throw new IndexOutOfBoundsException("Line " + line + " of " + numberOfLines);
+        return lines[line];
+    }
+
+    static StringBuilder appendHeader(StringBuilder out, String id) {
+        return out.append("Receipt ID ").append(id).append("\n");
+    }
+
+    static StringBuilder appendLine(StringBuilder out, int count, String name, long priceCents) {
+        out.append('\t').append(count).append(' ').append(name).append('\t');
+        return Money.append(out, priceCents, Money.CENTS).append('\n');
+    }
+
+    static StringBuilder appendSummary(StringBuilder out, long totalPriceCents, long totalPointsTenths) {
+        Money.append(out.append("Total price: $"), totalPriceCents, Money.CENTS).append("\n");
+        return Money.append(out.append("You earned "), totalPointsTenths, Money.TENTHS).append(" points");
+    }
+
+    /** A line as it was, a snapshot with another quantity or price has a new one. */
+    private static final class Line {
+        final Sku sku;
+        final int quantity;
+        final long priceCents;
+
+        Line(Sku sku, int quantity, long priceCents) {
+            this.sku = sku;
+            this.quantity = quantity;
+            this.priceCents = priceCents;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package blade.interview.supermarket;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The open carts of the checkouts, by Cart.getId(), shared by all the threads: the scanning terminals change them,
+ * the displays and the pricing read them.
+ * Every cart has a lock of its own, so the terminals only wait for each other when they change the same cart.
+ * The items are interned before the lock is taken, the Catalog and the PricingEngine don't lock either.
+ * After every change the cart publishes a CartSnapshot, made from the previous one with just the changed line new, see CartSnapshot.
+ * snapshot() and getReceipt() read the last one and never lock, so a display never holds up a scan and never sees half of one.
+ * A snapshot is priced with the rules current when it's read, the same as checkout() prices the cart: if the rules were swapped
+ * since the cart last changed, the reader prices the snapshot's lines again itself, still without the cart or its lock.
+ * The counters of the whole store are LongAdders, they don't make the terminals contend on one field.
+ * Thread-safe.
+ */
+public class CartStore {
+
+    private final PricingEngine pricing;
+    private static final AtomicReferenceFieldUpdater<Entry, CartSnapshot> SNAPSHOT =
+        AtomicReferenceFieldUpdater.newUpdater(Entry.class, CartSnapshot.class, "snapshot");
+    private final ConcurrentHashMap<String, Entry> carts = new ConcurrentHashMap<>();
+    private final LongAdder itemCount = new LongAdder(); // in the open carts
+    private final LongAdder revenueCents = new LongAdder(); // of the carts checked out
+    private final LongAdder checkouts = new LongAdder();
+
+    /** With a catalog of its own and the default pricing rules. */
+    public CartStore() {
+        this(new PricingEngine(new Catalog()));
+    }
+
+    public CartStore(PricingEngine pricing) {
+        this.pricing = pricing;
+    }
+
+    public Catalog getCatalog() {
+        return pricing.getCatalog();
+    }
+
+    /** @return the cart with the id, a new empty one if there is no open cart with it */
+    public CartSnapshot open(String id) {
+        return snapshot(carts.computeIfAbsent(id, key -> new Entry(new Cart(key, pricing))));
+    }
+
+    /**
+     * @return the cart after the item was added
+     * @throws IllegalArgumentException if there is no open cart with the id
+     * @throws IllegalStateException if the cart was checked out meanwhile
+     */
+    public CartSnapshot addItem(String id, Item i) {
+        return update(id, getCatalog().intern(i).getId(), 1, true);
+    }
+
+    /** Same as addItem(String, Item). */
+    public CartSnapshot addItem(String id, int skuId) {
+        return update(id, skuId, 1, true);
+    }
+
+    /** Takes the whole line off the receipt. */
+    public CartSnapshot removeItem(String id, Item i) {
+        return setQuantity(id, i, 0);
+    }
+
+    /** See Cart.setQuantity(Item, int) and addItem(String, Item). */
+    public CartSnapshot setQuantity(String id, Item i, int count) {
+        return update(id, getCatalog().intern(i).getId(), count, false);
+    }
+
+    /** Same as setQuantity(String, Item, int). */
+    public CartSnapshot setQuantity(String id, int skuId, int count) {
+        return update(id, skuId, count, false);
+    }
+
+    /**
+     * @return the cart as of its last change, priced with the current rules
+     * @throws IllegalArgumentException if there is no open cart with the id
+     */
+    public CartSnapshot snapshot(String id) {
+        return snapshot(entry(id));
+    }
+
+    /** Same as snapshot(id).getReceipt(). */
+    public String getReceipt(String id) {
+        return snapshot(id).getReceipt();
+    }
+
+    /**
+     * Closes the cart, it's priced with the current rules and its total is added to the revenue.
+     * The id can be opened again for a new cart.
+     * @throws IllegalArgumentException if there is no open cart with the id
+     * @throws IllegalStateException if it's checked out by another thread meanwhile
+     */
+    public CartSnapshot checkout(String id) {
+        Entry entry = entry(id);
+        synchronized (entry) {
+            checkOpen(id, entry);
+            entry.checkedOut = true;
+            carts.remove(id, entry);
+            CartSnapshot snapshot = entry.snapshot = entry.cart.snapshot();
+            itemCount.add(-snapshot.getItemCount());
+            revenueCents.add(snapshot.getTotalPriceCents());
+            checkouts.increment();
+            return snapshot;
+        }
+    }
+
+    /** @return number of open carts */
+    public int size() {
+        return carts.size();
+    }
+
+    /** @return number of items in all the open carts, it may miss the changes in progress */
+    public long getItemCount() {
+        return itemCount.sum();
+    }
+
+    /** @return total price of all the carts checked out, in cents, it may miss the checkouts in progress */
+    public long getRevenueCents() {
+        return revenueCents.sum();
+    }
+
+    public long getCheckouts() {
+        return checkouts.sum();
+    }
+
+    private CartSnapshot update(String id, int skuId, int count, boolean add) {
+        Entry entry = entry(id);
+        synchronized (entry) {
+            checkOpen(id, entry);
+            int oldCount = entry.cart.getQuantity(skuId);
+            int newCount = add ? oldCount + count : count;
+            entry.cart.setQuantity(skuId, newCount);
+            itemCount.add(newCount - oldCount);
+            return entry.snapshot = entry.cart.snapshot(entry.snapshot, skuId);
+        }
+    }
+
+    /** The last snapshot, priced again outside the lock if the rules were swapped since it was published. */
+    private CartSnapshot snapshot(Entry entry) {
+        CartSnapshot snapshot = entry.snapshot;
+        if (snapshot.rulesVersion() == pricing.table().version() || entry.checkedOut)
+            return snapshot;
+        CartSnapshot repriced = snapshot.repriced(pricing);
+        // kept for the next readers, unless a scan published a newer one meanwhile
+        SNAPSHOT.compareAndSet(entry, snapshot, repriced);
+        return repriced;
+    }
+
+    private Entry entry(String id) {
+        Entry entry = carts.get(id);
+        if (null == entry)
+            throw new IllegalArgumentException("No open cart " + id);
+        return entry;
+    }
+
+    private static void checkOpen(String id, Entry entry) {
+        if (entry.checkedOut)
+            throw new IllegalStateException("Cart " + id + " is checked out");
+    }
+
+    /** The cart and its lock, the cart is only touched while holding it. */
+    private static final class Entry {
+        final Cart cart;
+        volatile CartSnapshot snapshot;
+        volatile boolean checkedOut;
+
+        Entry(Cart cart) {
+            this.cart = cart;
+            this.snapshot = cart.snapshot();
+        }
+    }
+}
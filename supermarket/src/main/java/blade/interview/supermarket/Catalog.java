@@ -0,0 +1,82 @@
+package blade.interview.supermarket;
+
+import java.util.Arrays;
+
+/**
+ * Interns the items: every distinct name, category, price and organic label becomes one immutable Sku with the next int id, 0, 1, 2...
+ * Carts keep the ids only, so one catalog shared by all the carts holds each item once, however many carts have it.
+ * Changing an Item after it was added doesn't touch the carts, the next intern() gives a new Sku for it.
+ * Thread-safe, get() doesn't lock and neither does intern() once the item was seen.
+ * The SKUs are found by their fields in an open addressing table, so interning a known item allocates nothing.
+ */
+public class Catalog {
+
+    private volatile Sku[] byId = new Sku[64];
+    /** By the hash of the fields, linear probing, at most half full. A slot is only ever set once, the table is replaced to grow. */
+    private volatile Sku[] interned = new Sku[128];
+    private int size;
+
+    /** @return the Sku of the item as it is now, a new one if it wasn't seen before. The price is rounded to cents. */
+    public Sku intern(Item item) {
+        String name = item.getName();
+        Integer categoryCode = item.getCategoryCode();
+        long priceCents = Money.cents(item.getPrice());
+        boolean organic = item.isOrganic();
+        int hash = Sku.hash(name, categoryCode, priceCents, organic);
+        Sku sku = find(interned, name, categoryCode, priceCents, organic, hash);
+        return null != sku ? sku : add(name, categoryCode, priceCents, organic, hash);
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no such id
+     */
+    public Sku get(int id) {
+        Sku[] skus = byId;
+        Sku sku = id >= 0 && id < skus.length ? skus[id] : null;
+        if (null == sku)
+            throw new IllegalArgumentException("Unknown SKU id " + id);
+        return sku;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized Sku add(String name, Integer categoryCode, long priceCents, boolean organic, int hash) {
+        Sku sku = find(interned, name, categoryCode, priceCents, organic, hash);
+        if (null != sku)
+            return sku;
+        sku = new Sku(size, name, categoryCode, priceCents, organic);
+        Sku[] skus = size == byId.length ? Arrays.copyOf(byId, 2 * size) : byId;
+        skus[size++] = sku;
+        // published before it's in the table, so an id from intern() is always there for get()
+        byId = skus;
+        if (2 * size > interned.length) {
+            Sku[] larger = new Sku[2 * interned.length];
+            for (int id = 0; id < size; id++)
+                insert(larger, skus[id]);
+            interned = larger;
+        } else {
+            // the Sku's fields are final, a reader that sees it in the slot sees them too
+            insert(interned, sku);
+        }
+        return sku;
+    }
+
+    private static Sku find(Sku[] table, String name, Integer categoryCode, long priceCents, boolean organic, int hash) {
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            Sku sku = table[slot];
+            if (null == sku || sku.matches(name, categoryCode, priceCents, organic, hash))
+                return sku;
+        }
+    }
+
+    private static void insert(Sku[] table, Sku sku) {
+        int mask = table.length - 1;
+        int slot = sku.hashCode() & mask;
+        while (null != table[slot])
+            slot = (slot + 1) & mask;
+        table[slot] = sku;
+    }
+}
@@ -2,6 +2,9 @@ package blade.interview.supermarket;
 
 import java.util.Objects;
 
+/**
+ * What is scanned. Carts don't keep it, they keep the Sku the Catalog interns it to, so it can be changed after it was added.
+ */
 public class Item {
 
     public static final int MEAT = 0;
@@ -11,11 +14,18 @@ public class Item {
     private String _name;
     private Integer _categoryCode;
     private double _price;
+    private boolean _organic;
 
     public Item(String name, Integer categoryCode, double price) {
+        this(name, categoryCode, price, false);
+    }
+
+    /** @param organic organic items earn more reward points, see PricingRule */
+    public Item(String name, Integer categoryCode, double price, boolean organic) {
         _name = name;
         _categoryCode = categoryCode;
         _price = price;
+        _organic = organic;
     }
 
     public String getName() {
@@ -42,6 +52,14 @@ public class Item {
         this._price = price;
     }
 
+    public boolean isOrganic() {
+        return _organic;
+    }
+
+    public void setOrganic(boolean organic) {
+        this._organic = organic;
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) {
@@ -52,12 +70,13 @@ public class Item {
         }
         Item item = (Item) o;
         return Double.compare(item._price, _price) == 0 &&
+            item._organic == _organic &&
             _name.equals(item._name) &&
             _categoryCode.equals(item._categoryCode);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(_name, _categoryCode, _price);
+        return Objects.hash(_name, _categoryCode, _price, _organic);
     }
 }
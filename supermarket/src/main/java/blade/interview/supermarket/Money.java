@@ -0,0 +1,76 @@
+package blade.interview.supermarket;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed point amounts in long minor units: money in cents (scale 2), reward points in tenths (scale 1).
+ * Sums are exact and there's no double in the pricing, so 2.7 * 2 less 10% is 4.86 and not 4.8600000000000003.
+ * Rounding rule: a percentage of an amount is rounded half up to the minor unit, e.g. 10% of $5.55 is $0.56,
+ * and a discount is taken off after the rounding, so the half cent goes to the customer.
+ */
+public final class Money {
+
+    public static final int CENTS = 2;
+    public static final int TENTHS = 1;
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000};
+    /** Below that many cents the error of amount * 100 is way under HALF_CENT_MARGIN, see cents(). */
+    private static final double EXACT_CENTS_LIMIT = 1e8;
+    private static final double HALF_CENT_MARGIN = 1e-6;
+
+    private Money() {
+    }
+
+    /**
+     * @return the decimal amount in cents, rounded half up, e.g. 2.7 is 270. Same as BigDecimal.valueOf(amount) would give.
+     * Only an amount close to a half cent, e.g. 2.675, or a very large one goes through the BigDecimal, the rest allocate nothing.
+     */
+    public static long cents(double amount) {
+        double scaled = amount * 100;
+        if (Math.abs(scaled) < EXACT_CENTS_LIMIT) {
+            long rounded = Math.round(scaled);
+            // far enough from the half cent that neither the double nor the multiplication can be on the wrong side of it
+            if (0.5 - Math.abs(scaled - rounded) > HALF_CENT_MARGIN)
+                return rounded;
+        }
+        return BigDecimal.valueOf(amount).setScale(CENTS, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /** @return percent of the amount, rounded half up to the minor unit */
+    public static long percentOf(long amount, int percent) {
+        return Math.floorDiv(amount * percent + 50, 100);
+    }
+
+    /** @return the amount less the percent of it, see percentOf */
+    public static long percentOff(long amount, int percent) {
+        return amount - percentOf(amount, percent);
+    }
+
+    /**
+     * Same text as Double.toString gives for such an amount below 10 million, without going through a double:
+     * the trailing zeros are dropped but there is always a digit after the point, e.g. 4.86, 10.5, 3.0.
+     * From 10 million up Double.toString switches to scientific notation, e.g. 1.0E7, this keeps to the plain digits, 10000000.0.
+     * @param scale CENTS or TENTHS
+     */
+    public static StringBuilder append(StringBuilder out, long amount, int scale) {
+        if (amount < 0) {
+            out.append('-');
+            amount = -amount;
+        }
+        long unit = POWERS_OF_TEN[scale];
+        out.append(amount / unit).append('.');
+        long fraction = amount % unit;
+        int digits = scale;
+        while (digits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        for (long leading = POWERS_OF_TEN[digits - 1]; leading > 1 && fraction < leading; leading /= 10)
+            out.append('0');
+        return out.append(fraction);
+    }
+
+    public static String toString(long amount, int scale) {
+        return append(new StringBuilder(24), amount, scale).toString();
+    }
+}
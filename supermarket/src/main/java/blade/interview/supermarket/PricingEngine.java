@@ -0,0 +1,62 @@
+package blade.interview.supermarket;
+
+import java.util.List;
+
+/**
+ * Prices the lines of the carts of a Catalog by the PricingRules, through a PricingTable compiled from them.
+ * Checkout reads the current table from a volatile field and never locks, unless the SKU was added to the catalog
+ * after the table was compiled, then the table is extended once for all the new SKUs.
+ * setRules() swaps the promotions at runtime: the new table is compiled aside and published in one write.
+ * Carts notice the new version and price their lines again, see Cart.
+ */
+public class PricingEngine {
+
+    private final Catalog catalog;
+    private volatile PricingTable table;
+
+    /** With the default rules, see PricingRule.defaults(). */
+    public PricingEngine(Catalog catalog) {
+        this(catalog, PricingRule.defaults());
+    }
+
+    public PricingEngine(Catalog catalog, List<PricingRule> rules) {
+        this.catalog = catalog;
+        this.table = PricingTable.compile(rules, 1, catalog);
+    }
+
+    /** @return the engine with the default rules and a catalog of its own, shared by all the carts created without one */
+    static PricingEngine shared() {
+        return Default.ENGINE;
+    }
+
+    public Catalog getCatalog() {
+        return catalog;
+    }
+
+    /** Compiles the rules for all the SKUs and swaps them in. */
+    public synchronized void setRules(List<PricingRule> rules) {
+        table = PricingTable.compile(rules, table.version() + 1, catalog);
+    }
+
+    /** @return the current table, it has every SKU of the carts */
+    public PricingTable table() {
+        return table;
+    }
+
+    /** @return the current table, it has every SKU up to the id */
+    public PricingTable table(int skuId) {
+        PricingTable current = table;
+        return skuId < current.size() ? current : extend(skuId);
+    }
+
+    private synchronized PricingTable extend(int skuId) {
+        if (skuId >= table.size())
+            table = table.extend(catalog);
+        return table;
+    }
+
+    /** The one the carts created without an engine share, made on the first such cart. */
+    private static final class Default {
+        static final PricingEngine ENGINE = new PricingEngine(new Catalog());
+    }
+}
@@ -0,0 +1,198 @@
+package blade.interview.supermarket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * A discount or a reward points rule for the SKUs of a category and/or with the organic label.
+ * Rules are loaded from properties, every rule is a group of keys with its name as the prefix:
+ * <pre>
+ * &lt;rule&gt;.when             what it's for: any, a category (MEAT, DAIRY, GREEN), organic, or a category and organic, e.g. "GREEN organic"
+ * &lt;rule&gt;.percentOff       discount on the line, see Money for the rounding
+ * &lt;rule&gt;.over             only when the line costs more than that, e.g. 5.00
+ * &lt;rule&gt;.minQuantity      only when there are at least that many on the line
+ * &lt;rule&gt;.pointsPerItem    reward points for every item on the line, e.g. 0.5
+ * &lt;rule&gt;.pointsPerLine    reward points for the line, however many there are
+ * &lt;rule&gt;.pointsMultiplier the points of the line are multiplied, e.g. 2 for double points
+ * </pre>
+ * All the rules that match a SKU apply: the points add up, the multipliers multiply, and of the discounts the line gets the largest one
+ * whose over and minQuantity it meets.
+ * PricingEngine compiles them into a table per SKU, nothing here is looked at during checkout.
+ */
+public final class PricingRule {
+
+    static final String DEFAULTS_CLASSPATH_RESOURCE_PATH = "/pricing.properties";
+    static final String ANY = "any";
+    static final String ORGANIC = "organic";
+    private static final String[] CATEGORIES = {"MEAT", "DAIRY", "GREEN"}; // by the Item category codes
+    private static final String[] KEYS = {"when", "percentOff", "over", "minQuantity", "pointsPerItem", "pointsPerLine", "pointsMultiplier"};
+
+    private final String _name;
+    private final Integer _categoryCode; // null for any
+    private final boolean _organicOnly;
+    private final int _percentOff;
+    private final long _overCents;
+    private final int _minQuantity;
+    private final long _pointsPerItemTenths;
+    private final long _pointsPerLineTenths;
+    private final int _pointsMultiplier;
+
+    PricingRule(String name, Integer categoryCode, boolean organicOnly, int percentOff, long overCents, int minQuantity,
+                long pointsPerItemTenths, long pointsPerLineTenths, int pointsMultiplier) {
+        _name = name;
+        _categoryCode = categoryCode;
+        _organicOnly = organicOnly;
+        _percentOff = percentOff;
+        _overCents = overCents;
+        _minQuantity = minQuantity;
+        _pointsPerItemTenths = pointsPerItemTenths;
+        _pointsPerLineTenths = pointsPerLineTenths;
+        _pointsMultiplier = pointsMultiplier;
+    }
+
+    /**
+     * @return the rules in /pricing.properties on the classpath: the green bulk discount, the points per category, double points for organic.
+     * Read once, the list is immutable and shared.
+     */
+    public static List<PricingRule> defaults() {
+        return Defaults.RULES;
+    }
+
+    private static List<PricingRule> loadDefaults() {
+        try (InputStream inputStream = PricingRule.class.getResourceAsStream(DEFAULTS_CLASSPATH_RESOURCE_PATH)) {
+            if (null == inputStream)
+                throw new IllegalStateException(DEFAULTS_CLASSPATH_RESOURCE_PATH + " is missing from the classpath");
+            Properties properties = new Properties();
+            properties.load(inputStream);
+            return load(properties);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + DEFAULTS_CLASSPATH_RESOURCE_PATH, e);
+        }
+    }
+
+    /**
+     * @return the rules in the order of their names
+     * @throws IllegalArgumentException listing everything that's wrong, e.g. an unknown key or a value that doesn't parse
+     */
+    public static List<PricingRule> load(Properties properties) {
+        List<String> problems = new ArrayList<>();
+        TreeSet<String> names = new TreeSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            int dot = key.lastIndexOf('.');
+            if (dot < 1 || !isKnownKey(key.substring(dot + 1)))
+                problems.add("unknown key " + key);
+            else
+                names.add(key.substring(0, dot));
+        }
+        List<PricingRule> rules = new ArrayList<>();
+        for (String name : names) {
+            try {
+                rules.add(parse(name, properties));
+            } catch (IllegalArgumentException e) {
+                problems.add(name + ": " + e.getMessage());
+            }
+        }
+        if (!problems.isEmpty())
+            throw new IllegalArgumentException("Invalid pricing rules: " + String.join("; ", problems));
+        return Collections.unmodifiableList(rules);
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    boolean matches(Sku sku) {
+        return (null == _categoryCode || _categoryCode.equals(sku.getCategoryCode())) && (!_organicOnly || sku.isOrganic());
+    }
+
+    int getPercentOff() {
+        return _percentOff;
+    }
+
+    long getOverCents() {
+        return _overCents;
+    }
+
+    int getMinQuantity() {
+        return _minQuantity;
+    }
+
+    long getPointsPerItemTenths() {
+        return _pointsPerItemTenths;
+    }
+
+    long getPointsPerLineTenths() {
+        return _pointsPerLineTenths;
+    }
+
+    int getPointsMultiplier() {
+        return _pointsMultiplier;
+    }
+
+    @Override
+    public String toString() {
+        return _name;
+    }
+
+    private static PricingRule parse(String name, Properties properties) {
+        String when = properties.getProperty(name + ".when", ANY).trim();
+        Integer categoryCode = null;
+        boolean organicOnly = false;
+        for (String condition : when.split("\\s+")) {
+            int category = indexOf(CATEGORIES, condition.toUpperCase(Locale.ROOT));
+            if (category >= 0 && null == categoryCode)
+                categoryCode = category;
+            else if (ORGANIC.equalsIgnoreCase(condition))
+                organicOnly = true;
+            else if (!ANY.equalsIgnoreCase(condition))
+                throw new IllegalArgumentException("when=" + when + " has to be any, a category, organic or a category and organic");
+        }
+        int percentOff = (int) number(name, properties, "percentOff", 0, 0);
+        if (percentOff > 100)
+            throw new IllegalArgumentException("percentOff=" + percentOff + " can't be over 100");
+        return new PricingRule(name, categoryCode, organicOnly, percentOff,
+                number(name, properties, "over", Money.CENTS, 0),
+                (int) number(name, properties, "minQuantity", 0, 0),
+                number(name, properties, "pointsPerItem", Money.TENTHS, 0),
+                number(name, properties, "pointsPerLine", Money.TENTHS, 0),
+                (int) number(name, properties, "pointsMultiplier", 0, 1));
+    }
+
+    /** @return the value in minor units of the scale, e.g. 5.00 is 500 cents */
+    private static long number(String name, Properties properties, String key, int scale, long defaultValue) {
+        String value = properties.getProperty(name + "." + key);
+        if (null == value)
+            return defaultValue;
+        try {
+            long number = new BigDecimal(value.trim()).movePointRight(scale).longValueExact();
+            if (number < 0)
+                throw new IllegalArgumentException(key + "=" + value + " can't be negative");
+            return number;
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException(key + "=" + value + " is not a number with at most " + scale + " decimals");
+        }
+    }
+
+    private static boolean isKnownKey(String key) {
+        return indexOf(KEYS, key) >= 0;
+    }
+
+    private static int indexOf(String[] values, String value) {
+        for (int i = 0; i < values.length; i++)
+            if (values[i].equals(value))
+                return i;
+        return -1;
+    }
+
+    /** Loaded on the first call to defaults(), by the class initialization. */
+    private static final class Defaults {
+        static final List<PricingRule> RULES = loadDefaults();
+    }
+}
@@ -0,0 +1,134 @@
+package blade.interview.supermarket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The PricingRules compiled into one entry per SKU id, in flat arrays: pricing a line is a few array reads and a multiplication,
+ * whatever the rules are. The discounts of a SKU are a short array, largest first, the line gets the first one it qualifies for.
+ * Immutable, PricingEngine swaps whole tables.
+ * Tables of the same rules have the same version, a larger one only has more SKUs.
+ */
+public final class PricingTable {
+
+    private static final Discount[] NO_DISCOUNTS = {};
+    private final List<PricingRule> rules;
+    private final long version;
+    private final int size;
+    private final long[] priceCents;
+    private final Discount[][] discounts;
+    private final long[] pointsPerItemTenths;
+    private final long[] pointsPerLineTenths;
+    private final int[] pointsMultiplier;
+
+    private PricingTable(List<PricingRule> rules, long version, int size, PricingTable compiled) {
+        this.rules = rules;
+        this.version = version;
+        this.size = size;
+        this.priceCents = new long[size];
+        this.discounts = new Discount[size][];
+        this.pointsPerItemTenths = new long[size];
+        this.pointsPerLineTenths = new long[size];
+        this.pointsMultiplier = new int[size];
+        if (null != compiled) {
+            System.arraycopy(compiled.priceCents, 0, priceCents, 0, compiled.size);
+            System.arraycopy(compiled.discounts, 0, discounts, 0, compiled.size);
+            System.arraycopy(compiled.pointsPerItemTenths, 0, pointsPerItemTenths, 0, compiled.size);
+            System.arraycopy(compiled.pointsPerLineTenths, 0, pointsPerLineTenths, 0, compiled.size);
+            System.arraycopy(compiled.pointsMultiplier, 0, pointsMultiplier, 0, compiled.size);
+        }
+    }
+
+    /** @return the table of all the SKUs in the catalog */
+    static PricingTable compile(List<PricingRule> rules, long version, Catalog catalog) {
+        PricingTable table = new PricingTable(rules, version, catalog.size(), null);
+        table.compileFrom(0, catalog);
+        return table;
+    }
+
+    /** @return same rules, the SKUs added to the catalog since compiled too */
+    PricingTable extend(Catalog catalog) {
+        PricingTable table = new PricingTable(rules, version, catalog.size(), this);
+        table.compileFrom(size, catalog);
+        return table;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<PricingRule> rules() {
+        return rules;
+    }
+
+    public long linePriceCents(int skuId, int count) {
+        long price = priceCents[skuId] * count;
+        for (Discount discount : discounts[skuId]) {
+            if (price > discount.overCents && count >= discount.minQuantity)
+                return Money.percentOff(price, discount.percentOff);
+        }
+        return price;
+    }
+
+    public long linePointsTenths(int skuId, int count) {
+        if (count == 0)
+            return 0;
+        return (pointsPerItemTenths[skuId] * count + pointsPerLineTenths[skuId]) * pointsMultiplier[skuId];
+    }
+
+    private void compileFrom(int firstSkuId, Catalog catalog) {
+        Arrays.fill(pointsMultiplier, firstSkuId, size, 1);
+        for (int skuId = firstSkuId; skuId < size; skuId++) {
+            Sku sku = catalog.get(skuId);
+            priceCents[skuId] = sku.getPriceCents();
+            discounts[skuId] = NO_DISCOUNTS;
+            for (PricingRule rule : rules) {
+                if (!rule.matches(sku))
+                    continue;
+                if (rule.getPercentOff() > 0)
+                    discounts[skuId] = Discount.add(discounts[skuId], rule);
+                pointsPerItemTenths[skuId] += rule.getPointsPerItemTenths();
+                pointsPerLineTenths[skuId] += rule.getPointsPerLineTenths();
+                pointsMultiplier[skuId] *= rule.getPointsMultiplier();
+            }
+        }
+    }
+
+    /** A discount tier of a SKU, the line gets it when it costs more than overCents and has at least minQuantity items. */
+    private static final class Discount {
+        final int percentOff;
+        final long overCents;
+        final int minQuantity;
+
+        private Discount(PricingRule rule) {
+            percentOff = rule.getPercentOff();
+            overCents = rule.getOverCents();
+            minQuantity = rule.getMinQuantity();
+        }
+
+        /** @return the tiers with the rule's one too, largest first. A tier that's never better than another one is left out. */
+        static Discount[] add(Discount[] tiers, PricingRule rule) {
+            Discount discount = new Discount(rule);
+            List<Discount> added = new ArrayList<>(tiers.length + 1);
+            for (Discount tier : tiers) {
+                if (tier.covers(discount))
+                    return tiers;
+                if (!discount.covers(tier))
+                    added.add(tier);
+            }
+            added.add(discount);
+            added.sort((a, b) -> Integer.compare(b.percentOff, a.percentOff));
+            return added.toArray(NO_DISCOUNTS);
+        }
+
+        /** @return whether this one is at least as large wherever the other one applies */
+        private boolean covers(Discount other) {
+            return percentOff >= other.percentOff && overCents <= other.overCents && minQuantity <= other.minQuantity;
+        }
+    }
+}
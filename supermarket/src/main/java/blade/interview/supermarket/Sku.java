@@ -0,0 +1,87 @@
+package blade.interview.supermarket;
+
+import java.util.Objects;
+
+/**
+ * Immutable snapshot of an Item, interned by the Catalog, so there is one instance per distinct item and it has a dense int id.
+ * The price is in cents, see Money.
+ * Equal when the name, category, price and organic label are, the id doesn't count. The Catalog looks them up by the fields, see matches().
+ */
+public final class Sku {
+
+    private final int _id;
+    private final String _name;
+    private final Integer _categoryCode;
+    private final long _priceCents;
+    private final boolean _organic;
+    private final int _hash;
+
+    Sku(int id, String name, Integer categoryCode, long priceCents, boolean organic) {
+        _id = id;
+        _name = name;
+        _categoryCode = categoryCode;
+        _priceCents = priceCents;
+        _organic = organic;
+        _hash = hash(name, categoryCode, priceCents, organic);
+    }
+
+    /** @return the hash of a Sku with these fields, same as Objects.hash would give but without boxing them into an array */
+    static int hash(String name, Integer categoryCode, long priceCents, boolean organic) {
+        int hash = 1;
+        hash = 31 * hash + Objects.hashCode(name);
+        hash = 31 * hash + Objects.hashCode(categoryCode);
+        hash = 31 * hash + Long.hashCode(priceCents);
+        return 31 * hash + Boolean.hashCode(organic);
+    }
+
+    /** @return whether this is the Sku of these fields, the id doesn't count */
+    boolean matches(String name, Integer categoryCode, long priceCents, boolean organic, int hash) {
+        return _hash == hash &&
+            _priceCents == priceCents &&
+            _organic == organic &&
+            Objects.equals(_name, name) &&
+            Objects.equals(_categoryCode, categoryCode);
+    }
+
+    public int getId() {
+        return _id;
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public Integer getCategoryCode() {
+        return _categoryCode;
+    }
+
+    public long getPriceCents() {
+        return _priceCents;
+    }
+
+    public boolean isOrganic() {
+        return _organic;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Sku sku = (Sku) o;
+        return matches(sku._name, sku._categoryCode, sku._priceCents, sku._organic, sku._hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return _hash;
+    }
+
+    @Override
+    public String toString() {
+        return _id + " " + _name;
+    }
+}
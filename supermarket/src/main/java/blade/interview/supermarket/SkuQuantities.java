@@ -0,0 +1,109 @@
+package blade.interview.supermarket;
+
+import java.util.Arrays;
+
+/**
+ * Quantity per SKU id in the order the SKUs were added, in int arrays only, so adding and counting allocates nothing
+ * once the arrays have grown to the size of the cart.
+ * The lines are two parallel arrays, positions 0 to size() - 1. An open addressing table (linear probing) finds the position of a SKU.
+ * Removing a line shifts the ones after it and rebuilds the table, it's O(lines), adding is O(1).
+ * Not thread-safe.
+ */
+public class SkuQuantities {
+
+    private static final int EMPTY = 0; // the table holds position + 1
+    private int[] skus;
+    private int[] quantities;
+    private int[] table;
+    private int size;
+
+    public SkuQuantities() {
+        this(8);
+    }
+
+    public SkuQuantities(int expectedLines) {
+        skus = new int[Math.max(expectedLines, 1)];
+        quantities = new int[skus.length];
+        table = new int[tableSize(skus.length)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** @return position of the SKU, -1 if it's not there */
+    public int positionOf(int sku) {
+        int mask = table.length - 1;
+        for (int slot = mix(sku) & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int position = table[slot] - 1;
+            if (skus[position] == sku)
+                return position;
+        }
+        return -1;
+    }
+
+    /** @return 0 if it's not there */
+    public int get(int sku) {
+        int position = positionOf(sku);
+        return position < 0 ? 0 : quantities[position];
+    }
+
+    public int skuAt(int position) {
+        return skus[position];
+    }
+
+    public int quantityAt(int position) {
+        return quantities[position];
+    }
+
+    /** @return position of the new line, at the end */
+    public int add(int sku, int quantity) {
+        if (size == skus.length) {
+            skus = Arrays.copyOf(skus, 2 * size);
+            quantities = Arrays.copyOf(quantities, 2 * size);
+            if (table.length < tableSize(skus.length))
+                rebuildTable(tableSize(skus.length));
+        }
+        skus[size] = sku;
+        quantities[size] = quantity;
+        insert(sku, size);
+        return size++;
+    }
+
+    public void setQuantityAt(int position, int quantity) {
+        quantities[position] = quantity;
+    }
+
+    /** The lines after it move one up. */
+    public void removeAt(int position) {
+        System.arraycopy(skus, position + 1, skus, position, size - position - 1);
+        System.arraycopy(quantities, position + 1, quantities, position, size - position - 1);
+        size--;
+        rebuildTable(table.length);
+    }
+
+    private void insert(int sku, int position) {
+        int mask = table.length - 1;
+        int slot = mix(sku) & mask;
+        while (table[slot] != EMPTY)
+            slot = (slot + 1) & mask;
+        table[slot] = position + 1;
+    }
+
+    private void rebuildTable(int tableSize) {
+        table = new int[tableSize];
+        for (int position = 0; position < size; position++)
+            insert(skus[position], position);
+    }
+
+    /** At most half full, a power of two. */
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) * 2;
+    }
+
+    /** Dense ids would all go into neighbouring slots, spread them. */
+    private static int mix(int sku) {
+        int h = sku * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,107 @@
+package blade.interview.supermarket;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Contention benchmark of CartStore.addItem: 1, 2, 4... threads up to the number of cores scan into the same few carts,
+ * while the reader threads, the displays, take snapshots of the same carts as fast as they can.
+ * Prints the scans and the snapshot reads per second, e.g. run it from the IDE or with java -cp target/classes:target/test-classes.
+ * Args: carts (16), SKUs (200), seconds per thread count (2), most threads (the number of cores), readers (1).
+ */
+public class CartStoreBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int carts = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int skus = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long nanos = (args.length > 2 ? Long.parseLong(args[2]) : 2) * 1_000_000_000L;
+        int maxThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int readers = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        run(1, readers, carts, skus, nanos); // warm up
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double[] perSecond = run(threads, readers, carts, skus, nanos);
+            System.out.printf("%2d threads, %d readers, %d carts: %,12.0f addItem/s %,12.0f snapshot/s%n",
+                threads, readers, carts, perSecond[0], perSecond[1]);
+        }
+    }
+
+    /** @return addItem/s and snapshot/s */
+    private static double[] run(int threads, int readers, int carts, int skus, long nanos) throws InterruptedException {
+        CartStore store = new CartStore();
+        int[] skuIds = new int[skus];
+        for (int sku = 0; sku < skus; sku++)
+            skuIds[sku] = store.getCatalog().intern(new Item("Item " + sku, sku % 3, 1 + sku % 10, sku % 4 == 0)).getId();
+        String[] ids = new String[carts];
+        for (int cart = 0; cart < carts; cart++)
+            store.open(ids[cart] = Integer.toString(cart));
+
+        CountDownLatch start = new CountDownLatch(1);
+        long[] scans = new long[threads + readers];
+        Thread[] workers = new Thread[threads + readers];
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long end = System.nanoTime() + nanos;
+                long count = 0;
+                // a cart is checked out after 50 scans or so, so they don't grow all the time
+                while ((count & 1023) != 0 || System.nanoTime() < end) {
+                    String id = ids[random.nextInt(carts)];
+                    try {
+                        if (random.nextInt(50) == 0)
+                            store.checkout(id);
+                        else
+                            store.addItem(id, skuIds[random.nextInt(skus)]);
+                    } catch (IllegalArgumentException e) {
+                        store.open(id); // checked out, the next scan goes into a new cart
+                    } catch (IllegalStateException e) {
+                        // checked out by another thread meanwhile
+                    }
+                    count++;
+                }
+                scans[worker] = count;
+            });
+            workers[t].start();
+        }
+        for (int r = threads; r < threads + readers; r++) {
+            int reader = r;
+            workers[r] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long end = System.nanoTime() + nanos;
+                long count = 0;
+                long checksum = 0;
+                while ((count & 1023) != 0 || System.nanoTime() < end) {
+                    try {
+                        checksum += store.snapshot(ids[random.nextInt(carts)]).getTotalPriceCents();
+                    } catch (IllegalArgumentException e) {
+                        // checked out, opened again by the next scan
+                    }
+                    count++;
+                }
+                scans[reader] = count + (checksum == 42 ? 1 : 0); // so the reads aren't optimized away
+            });
+            workers[r].start();
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        double[] total = new double[2];
+        for (int t = 0; t < threads + readers; t++) {
+            workers[t].join();
+            total[t < threads ? 0 : 1] += scans[t];
+        }
+        long elapsed = System.nanoTime() - started;
+        total[0] = total[0] * 1e9 / elapsed;
+        total[1] = total[1] * 1e9 / elapsed;
+        return total;
+    }
+}
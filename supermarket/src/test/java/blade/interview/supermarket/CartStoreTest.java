@@ -0,0 +1,157 @@
+package blade.interview.supermarket;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CartStoreTest {
+
+    @Test
+    public void testSameReceiptAsCart() {
+        Item[] items = {
+            new Item("Fresh milk", Item.DAIRY, 2.5),
+            new Item("Lettuce", Item.GREEN, 2.7),
+            new Item("Pork chop", Item.MEAT, 3.5),
+            new Item("Lettuce", Item.GREEN, 2.7),
+            new Item("Broccoli", Item.GREEN, 3, true),
+        };
+        Cart cart = new Cart("7");
+        CartStore store = new CartStore();
+        store.open("7");
+        for (Item item : items) {
+            cart.addItem(item);
+            store.addItem("7", item);
+        }
+        assertEquals(cart.getReceipt(), store.getReceipt("7"));
+        assertEquals(5, store.getItemCount());
+
+        CartSnapshot checkedOut = store.checkout("7");
+        assertEquals(cart.getTotalPriceCents(), checkedOut.getTotalPriceCents());
+        assertEquals(cart.getTotalPriceCents(), store.getRevenueCents());
+        assertEquals(0, store.getItemCount());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testCheckedOut() {
+        CartStore store = new CartStore();
+        store.open("1");
+        store.addItem("1", new Item("Lettuce", Item.GREEN, 2.7));
+        store.checkout("1");
+        try {
+            store.addItem("1", new Item("Lettuce", Item.GREEN, 2.7));
+            fail("The cart is closed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("No open cart 1", e.getMessage());
+        }
+        assertEquals(0, store.open("1").lines());
+        assertEquals(1, store.getCheckouts());
+    }
+
+    /**
+     * Every scan publishes the snapshot the readers get, the earlier ones stay as they were though they share the lines.
+     * After the rules are swapped it's priced again the same as checkout prices the cart.
+     */
+    @Test
+    public void testSnapshotPublishedByScan() {
+        PricingEngine pricing = new PricingEngine(new Catalog());
+        CartStore store = new CartStore(pricing);
+        store.open("1");
+        Item milk = new Item("Fresh milk", Item.DAIRY, 2.5);
+        Item lettuce = new Item("Lettuce", Item.GREEN, 2.7);
+        CartSnapshot one = store.addItem("1", milk);
+        CartSnapshot two = store.addItem("1", lettuce);
+        CartSnapshot snapshot = store.addItem("1", milk);
+        assertSame(snapshot, store.snapshot("1"));
+        store.removeItem("1", lettuce);
+        store.addItem("1", new Item("Pork chop", Item.MEAT, 3.5));
+        assertEquals(1, one.lines());
+        assertEquals(1, one.quantityAt(0));
+        assertEquals(2, two.lines());
+        assertEquals("Lettuce", two.skuAt(1).getName());
+        assertEquals(520, two.getTotalPriceCents());
+        assertEquals(2, snapshot.quantityAt(0));
+        assertEquals(770, snapshot.getTotalPriceCents());
+        assertEquals(850, store.snapshot("1").getTotalPriceCents());
+
+        Properties promotion = new Properties();
+        promotion.setProperty("dairyDeal.when", "DAIRY");
+        promotion.setProperty("dairyDeal.percentOff", "20");
+        pricing.setRules(PricingRule.load(promotion));
+        CartSnapshot repriced = store.snapshot("1");
+        assertEquals(750, repriced.getTotalPriceCents());
+        assertSame("Kept for the next readers", repriced, store.snapshot("1"));
+        assertEquals(repriced.getReceipt(), store.checkout("1").getReceipt());
+    }
+
+    /** Terminals scan into the same carts while displays read them, every snapshot adds up and nothing is lost. */
+    @Test
+    public void testConcurrentScans() throws Exception {
+        CartStore store = new CartStore();
+        int[] skuIds = {
+            store.getCatalog().intern(new Item("Fresh milk", Item.DAIRY, 2.5)).getId(),
+            store.getCatalog().intern(new Item("Lettuce", Item.GREEN, 2.7)).getId(),
+            store.getCatalog().intern(new Item("Pork chop", Item.MEAT, 3.5, true)).getId(),
+        };
+        String[] ids = {"a", "b", "c"};
+        for (String id : ids)
+            store.open(id);
+        int terminals = 4;
+        int scans = 20000;
+        AtomicBoolean scanning = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(terminals + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < terminals; t++) {
+                int terminal = t;
+                futures.add(executor.submit(() -> {
+                    for (int scan = 0; scan < scans; scan++)
+                        store.addItem(ids[(scan + terminal) % ids.length], skuIds[scan % skuIds.length]);
+                }));
+            }
+            Future<Integer> display = executor.submit((Callable<Integer>) () -> {
+                int reads = 0;
+                while (scanning.get() || reads == 0) {
+                    CartSnapshot snapshot = store.snapshot(ids[reads++ % ids.length]);
+                    long total = 0;
+                    for (int line = 0; line < snapshot.lines(); line++)
+                        total += snapshot.linePriceCentsAt(line);
+                    assertEquals(snapshot.getReceipt(), total, snapshot.getTotalPriceCents());
+                }
+                return reads;
+            });
+            for (Future<?> future : futures)
+                future.get(30, TimeUnit.SECONDS);
+            scanning.set(false);
+            assertTrue(display.get(30, TimeUnit.SECONDS) > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(terminals * scans, store.getItemCount());
+        long revenue = 0;
+        for (String id : ids) {
+            Cart cart = new Cart(id, new PricingEngine(store.getCatalog()));
+            CartSnapshot snapshot = store.snapshot(id);
+            for (int line = 0; line < snapshot.lines(); line++)
+                cart.setQuantity(snapshot.skuAt(line).getId(), snapshot.quantityAt(line));
+            assertEquals(cart.getReceipt(), snapshot.getReceipt());
+            revenue += store.checkout(id).getTotalPriceCents();
+        }
+        assertEquals(revenue, store.getRevenueCents());
+        assertEquals(0, store.getItemCount());
+    }
+}
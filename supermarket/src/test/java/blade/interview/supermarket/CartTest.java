@@ -2,7 +2,11 @@ package blade.interview.supermarket;
 
 import org.junit.Test;
 
+import java.io.StringWriter;
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class CartTest {
 
@@ -28,4 +32,139 @@ public class CartTest {
             "You earned 6.5 points";
         assertEquals(expected, cart.getReceipt());
     }
+
+    @Test
+    public void testRunningTotals() {
+        Cart cart = new Cart("1");
+        Item milk = new Item("Fresh milk", Item.DAIRY, 2.5);
+        Item lettuce = new Item("Lettuce", Item.GREEN, 2.7);
+        cart.addItem(milk);
+        cart.addItem(lettuce);
+        cart.addItem(lettuce);
+        assertEquals(736, cart.getTotalPriceCents());
+        assertEquals(35, cart.getTotalPointsTenths());
+
+        cart.setQuantity(lettuce, 1);
+        assertEquals(1, cart.getQuantity(lettuce));
+        assertEquals(520, cart.getTotalPriceCents());
+        cart.removeItem(milk);
+        assertEquals(0, cart.getQuantity(milk));
+        assertEquals(270, cart.getTotalPriceCents());
+        assertEquals(15, cart.getTotalPointsTenths());
+        cart.removeItem(lettuce);
+        assertEquals(0, cart.getTotalPriceCents());
+    }
+
+    @Test
+    public void testReceiptAfterChanges() throws Exception {
+        Cart cart = new Cart("1");
+        Item milk = new Item("Fresh milk", Item.DAIRY, 2.5);
+        Item lettuce = new Item("Lettuce", Item.GREEN, 2.7);
+        Item pork = new Item("Pork chop", Item.MEAT, 3.5);
+        cart.addItem(milk);
+        cart.addItem(lettuce);
+        cart.addItem(pork);
+        cart.getReceipt();
+        cart.addItem(lettuce);
+        cart.removeItem(milk);
+        cart.addItem(milk);
+        cart.setId("2");
+
+        String expected = "Receipt ID 2\n" +
+            "\t2 Lettuce\t4.86\n" +
+            "\t1 Pork chop\t3.5\n" +
+            "\t1 Fresh milk\t2.5\n" +
+            "Total price: $10.86\n" +
+            "You earned 4.5 points";
+        assertEquals(expected, cart.getReceipt());
+        StringWriter out = new StringWriter();
+        cart.writeReceipt(out);
+        assertEquals(expected, out.toString());
+    }
+
+    /** Lines changed, removed and added anywhere between the reads, the kept receipt is the same as one rendered from scratch. */
+    @Test
+    public void testReceiptAfterRandomChanges() {
+        Cart cart = new Cart("1");
+        int[] skuIds = new int[20];
+        for (int i = 0; i < skuIds.length; i++)
+            skuIds[i] = cart.getCatalog().intern(new Item("Item " + i, i % 3, 1 + i % 7 * 1.5, i % 5 == 0)).getId();
+        Random random = new Random(5);
+        for (int change = 0; change < 5000; change++) {
+            int skuId = skuIds[random.nextInt(skuIds.length)];
+            if (random.nextInt(4) == 0)
+                cart.setQuantity(skuId, random.nextInt(3));
+            else
+                cart.addItem(skuId);
+            if (random.nextInt(3) == 0)
+                assertEquals(cart.snapshot().getReceipt(), cart.getReceipt());
+        }
+        assertEquals(cart.snapshot().getReceipt(), cart.getReceipt());
+    }
+
+    @Test
+    public void testItemChangedAfterAdding() {
+        Cart cart = new Cart("1");
+        Item milk = new Item("Fresh milk", Item.DAIRY, 2.5);
+        cart.addItem(milk);
+        milk.setPrice(3.0);
+        cart.addItem(milk);
+        cart.addItem(new Item("Fresh milk", Item.DAIRY, 2.5));
+
+        String expected = "Receipt ID 1\n" +
+            "\t2 Fresh milk\t5.0\n" +
+            "\t1 Fresh milk\t3.0\n" +
+            "Total price: $8.0\n" +
+            "You earned 1.5 points";
+        assertEquals(expected, cart.getReceipt());
+    }
+
+    @Test
+    public void testSharedCatalog() {
+        Catalog catalog = new Catalog();
+        PricingEngine pricing = new PricingEngine(catalog);
+        Cart first = new Cart("1", pricing);
+        Cart second = new Cart("2", pricing);
+        first.addItem(new Item("Lettuce", Item.GREEN, 2.7));
+        second.addItem(new Item("Pork chop", Item.MEAT, 3.5));
+        second.addItem(new Item("Lettuce", Item.GREEN, 2.7));
+        assertEquals(2, catalog.size());
+        int lettuce = catalog.intern(new Item("Lettuce", Item.GREEN, 2.7)).getId();
+        second.addItem(lettuce);
+        assertEquals(2, second.getQuantity(new Item("Lettuce", Item.GREEN, 2.7)));
+        assertEquals(1, first.getQuantity(new Item("Lettuce", Item.GREEN, 2.7)));
+    }
+
+    /** The carts created without an engine don't load and compile the default rules each, they share them. */
+    @Test
+    public void testDefaultEngineShared() {
+        assertSame(new Cart("1").getCatalog(), new Cart("2").getCatalog());
+        assertSame(PricingRule.defaults(), PricingRule.defaults());
+    }
+
+    /** Enough items to grow the catalog's table a few times, each one still found by its fields. */
+    @Test
+    public void testCatalogGrows() {
+        Catalog catalog = new Catalog();
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i, catalog.intern(new Item("Item " + i, i % 3, 1 + i % 10, i % 4 == 0)).getId());
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i, catalog.intern(new Item("Item " + i, i % 3, 1 + i % 10, i % 4 == 0)).getId());
+        assertEquals(1000, catalog.size());
+        assertEquals(1000, catalog.intern(new Item("Item 0", 0, 1, false)).getId());
+    }
+
+    /** 10% of $5.55 is 55.5 cents, rounded half up, so the line is $4.99. */
+    @Test
+    public void testGreenDiscountRounding() {
+        Cart cart = new Cart("1");
+        cart.addItem(new Item("Kale", Item.GREEN, 1.85));
+        cart.addItem(new Item("Kale", Item.GREEN, 1.85));
+        cart.addItem(new Item("Kale", Item.GREEN, 1.85));
+        assertEquals(499, cart.getTotalPriceCents());
+        assertEquals("Receipt ID 1\n" +
+            "\t3 Kale\t4.99\n" +
+            "Total price: $4.99\n" +
+            "You earned 4.5 points", cart.getReceipt());
+    }
 }
@@ -0,0 +1,63 @@
+package blade.interview.supermarket;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class MoneyTest {
+
+    @Test
+    public void testCents() {
+        assertEquals(270, Money.cents(2.7));
+        assertEquals(300, Money.cents(3));
+        assertEquals(268, Money.cents(2.675));
+        assertEquals(1, Money.cents(0.005));
+    }
+
+    @Test
+    public void testPercentRoundsHalfUp() {
+        assertEquals(54, Money.percentOf(540, 10));
+        assertEquals(56, Money.percentOf(555, 10));
+        assertEquals(55, Money.percentOf(554, 10));
+        assertEquals(486, Money.percentOff(540, 10));
+        assertEquals(499, Money.percentOff(555, 10));
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("4.86", Money.toString(486, Money.CENTS));
+        assertEquals("10.5", Money.toString(1050, Money.CENTS));
+        assertEquals("3.0", Money.toString(300, Money.CENTS));
+        assertEquals("0.05", Money.toString(5, Money.CENTS));
+        assertEquals("-0.5", Money.toString(-50, Money.CENTS));
+        assertEquals("6.5", Money.toString(65, Money.TENTHS));
+        assertEquals("1.0", Money.toString(10, Money.TENTHS));
+        assertEquals("10000000.0", Money.toString(1000000000L, Money.CENTS));
+    }
+
+    /** Same text as the doubles used to give, for amounts a double holds exactly enough to print in cents. */
+    @Test
+    public void testFormatSameAsDouble() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            long cents = random.nextInt(10000000);
+            assertEquals(String.valueOf(cents / 100.0), Money.toString(cents, Money.CENTS));
+        }
+    }
+
+    /** The double arithmetic gives the same cents as the BigDecimal, half cents and all. */
+    @Test
+    public void testCentsSameAsBigDecimal() {
+        Random random = new Random(11);
+        for (int i = 0; i < 100000; i++) {
+            double amount = i % 2 == 0 ? random.nextInt(10000000) / 1000.0 : random.nextDouble() * 100000;
+            assertEquals(String.valueOf(amount), BigDecimal.valueOf(amount).setScale(Money.CENTS, RoundingMode.HALF_UP).unscaledValue().longValue(),
+                Money.cents(amount));
+        }
+        assertEquals(123456789012346L, Money.cents(1234567890123.455));
+    }
+}
@@ -0,0 +1,113 @@
+package blade.interview.supermarket;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PricingEngineTest {
+
+    @Test
+    public void testOrganicEarnsDoublePoints() {
+        Cart cart = new Cart("1");
+        cart.addItem(new Item("Fresh milk", Item.DAIRY, 2.5, true));
+        cart.addItem(new Item("Fresh milk", Item.DAIRY, 2.5, true));
+        cart.addItem(new Item("Lettuce", Item.GREEN, 2.7, true));
+        cart.addItem(new Item("Pork chop", Item.MEAT, 3.5, true));
+        cart.addItem(new Item("Pork chop", Item.MEAT, 3.5));
+
+        String expected = "Receipt ID 1\n" +
+            "\t2 Fresh milk\t5.0\n" +
+            "\t1 Lettuce\t2.7\n" +
+            "\t1 Pork chop\t3.5\n" +
+            "\t1 Pork chop\t3.5\n" +
+            "Total price: $14.7\n" +
+            "You earned 8.0 points";
+        assertEquals(expected, cart.getReceipt());
+    }
+
+    /** The cart was priced with the old rules, it's priced again with the new ones. */
+    @Test
+    public void testSwapRulesAtRuntime() {
+        PricingEngine pricing = new PricingEngine(new Catalog());
+        Cart cart = new Cart("1", pricing);
+        Item milk = new Item("Fresh milk", Item.DAIRY, 2.5);
+        cart.addItem(milk);
+        cart.addItem(milk);
+        cart.getReceipt();
+        assertEquals(500, cart.getTotalPriceCents());
+
+        Properties promotion = new Properties();
+        promotion.setProperty("dairyDeal.when", "DAIRY");
+        promotion.setProperty("dairyDeal.percentOff", "20");
+        promotion.setProperty("dairyDeal.minQuantity", "3");
+        promotion.setProperty("dairyDeal.pointsPerLine", "2");
+        pricing.setRules(PricingRule.load(promotion));
+        assertEquals(500, cart.getTotalPriceCents());
+        assertEquals(20, cart.getTotalPointsTenths());
+        cart.addItem(milk);
+
+        String expected = "Receipt ID 1\n" +
+            "\t3 Fresh milk\t6.0\n" +
+            "Total price: $6.0\n" +
+            "You earned 2.0 points";
+        assertEquals(expected, cart.getReceipt());
+    }
+
+    /** A smaller discount without a threshold still applies to the lines below the threshold of a larger one. */
+    @Test
+    public void testOverlappingDiscounts() {
+        Properties rules = new Properties();
+        rules.setProperty("anyDeal.when", "any");
+        rules.setProperty("anyDeal.percentOff", "5");
+        rules.setProperty("greenBulk.when", "GREEN");
+        rules.setProperty("greenBulk.percentOff", "10");
+        rules.setProperty("greenBulk.over", "5.00");
+        rules.setProperty("greenCase.when", "GREEN");
+        rules.setProperty("greenCase.percentOff", "20");
+        rules.setProperty("greenCase.minQuantity", "12");
+        Catalog catalog = new Catalog();
+        int broccoli = catalog.intern(new Item("Broccoli", Item.GREEN, 3)).getId();
+        int milk = catalog.intern(new Item("Fresh milk", Item.DAIRY, 3)).getId();
+        PricingEngine pricing = new PricingEngine(catalog);
+        pricing.setRules(PricingRule.load(rules));
+        PricingTable table = pricing.table();
+        assertEquals(285, table.linePriceCents(broccoli, 1));
+        assertEquals(540, table.linePriceCents(broccoli, 2));
+        assertEquals(2880, table.linePriceCents(broccoli, 12));
+        assertEquals(570, table.linePriceCents(milk, 2));
+        assertEquals(3420, table.linePriceCents(milk, 12));
+    }
+
+    @Test
+    public void testSkusAddedAfterCompiling() {
+        Catalog catalog = new Catalog();
+        catalog.intern(new Item("Broccoli", Item.GREEN, 3));
+        PricingEngine pricing = new PricingEngine(catalog);
+        assertEquals(1, pricing.table().size());
+        int lettuce = catalog.intern(new Item("Lettuce", Item.GREEN, 2.7)).getId();
+        assertEquals(486, pricing.table(lettuce).linePriceCents(lettuce, 2));
+        assertEquals(2, pricing.table().size());
+    }
+
+    @Test
+    public void testInvalidRules() {
+        Properties rules = new Properties();
+        rules.setProperty("a.when", "FISH");
+        rules.setProperty("b.percentOff", "ten");
+        rules.setProperty("c.pointsPerItem", "0.25");
+        rules.setProperty("d.discount", "10");
+        try {
+            PricingRule.load(rules);
+            fail("Should list what's wrong");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("when=FISH"));
+            assertTrue(e.getMessage(), e.getMessage().contains("percentOff=ten"));
+            assertTrue(e.getMessage(), e.getMessage().contains("pointsPerItem=0.25"));
+            assertTrue(e.getMessage(), e.getMessage().contains("unknown key d.discount"));
+        }
+    }
+}
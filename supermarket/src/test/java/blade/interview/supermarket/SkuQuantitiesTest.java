@@ -0,0 +1,63 @@
+package blade.interview.supermarket;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SkuQuantitiesTest {
+
+    @Test
+    public void testKeepsOrderOfAdding() {
+        SkuQuantities quantities = new SkuQuantities(2);
+        quantities.add(7, 1);
+        quantities.add(3, 2);
+        quantities.add(100, 5);
+        assertEquals(3, quantities.size());
+        assertEquals(7, quantities.skuAt(0));
+        assertEquals(100, quantities.skuAt(2));
+        assertEquals(2, quantities.get(3));
+        assertEquals(0, quantities.get(4));
+        assertEquals(-1, quantities.positionOf(4));
+
+        quantities.removeAt(0);
+        assertEquals(3, quantities.skuAt(0));
+        assertEquals(0, quantities.positionOf(3));
+        assertEquals(5, quantities.get(100));
+        assertEquals(-1, quantities.positionOf(7));
+    }
+
+    /** Same as a LinkedHashMap that drops the zero quantities, over random adds, changes and removals. */
+    @Test
+    public void testSameAsLinkedHashMap() {
+        Random random = new Random(1);
+        SkuQuantities quantities = new SkuQuantities();
+        Map<Integer, Integer> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            int sku = random.nextInt(300);
+            int quantity = random.nextInt(4);
+            int position = quantities.positionOf(sku);
+            if (position < 0 && quantity > 0)
+                quantities.add(sku, quantity);
+            else if (position >= 0 && quantity == 0)
+                quantities.removeAt(position);
+            else if (position >= 0)
+                quantities.setQuantityAt(position, quantity);
+            if (quantity == 0)
+                expected.remove(sku);
+            else
+                expected.put(sku, quantity);
+        }
+        assertEquals(expected.size(), quantities.size());
+        int position = 0;
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getKey(), quantities.skuAt(position));
+            assertEquals((int) entry.getValue(), quantities.quantityAt(position));
+            assertEquals(position, quantities.positionOf(entry.getKey()));
+            position++;
+        }
+    }
+}
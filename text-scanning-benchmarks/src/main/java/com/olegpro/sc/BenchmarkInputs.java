@@ -0,0 +1,127 @@
+package com.olegpro.sc;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the inputs for the benchmarks. Always the same for the same seed, so that the runs are comparable.
+ */
+public class BenchmarkInputs {
+    static final long SEED = 42;
+    static final String[] DIGIT_ROWS = {
+            " _     _  _     _  _  _  _  _ ",
+            "| |  | _| _||_||_ |_   ||_||_|",
+            "|_|  ||_  _|  | _||_|  ||_| _|"};
+    static final int DIGIT_WIDTH = 3;
+    static final int NUMBER_OF_DIGITS = 9;
+    static final int[] MIXED_NUMBERS_OF_DIGITS = {9, 12, 16};
+
+    /** @return random well formed chunk, each digit from 0 to 9 */
+    static String chunk(Random random) {
+        return chunk(random, NUMBER_OF_DIGITS);
+    }
+
+    static String chunk(Random random, int numberOfDigits) {
+        StringBuilder chunk = new StringBuilder();
+        int[] digits = new int[numberOfDigits];
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = random.nextInt(10);
+        }
+        for (int row = 0; row < DIGIT_ROWS.length; row++) {
+            if (row > 0) {
+                chunk.append('\n');
+            }
+            for (int digit : digits) {
+                chunk.append(DIGIT_ROWS[row], digit * DIGIT_WIDTH, (digit + 1) * DIGIT_WIDTH);
+            }
+        }
+        return chunk.toString();
+    }
+
+    static List<String> chunks(int numberOfChunks) {
+        Random random = new Random(SEED);
+        List<String> chunks = new ArrayList<>(numberOfChunks);
+        for (int i = 0; i < numberOfChunks; i++) {
+            chunks.add(chunk(random));
+        }
+        return chunks;
+    }
+
+    /** @return chunks of 9, 12 and 16 digits, at random */
+    static List<String> mixedWidthChunks(int numberOfChunks) {
+        Random random = new Random(SEED);
+        List<String> chunks = new ArrayList<>(numberOfChunks);
+        for (int i = 0; i < numberOfChunks; i++) {
+            chunks.add(chunk(random, MIXED_NUMBERS_OF_DIGITS[random.nextInt(MIXED_NUMBERS_OF_DIGITS.length)]));
+        }
+        return chunks;
+    }
+
+    /** Input file generated by the InputGenerator along with the number of chunks in it. */
+    static class GeneratedFile {
+        final File file;
+        final long numberOfChunks;
+
+        GeneratedFile(File file, long numberOfChunks) {
+            this.file = file;
+            this.numberOfChunks = numberOfChunks;
+        }
+    }
+
+    /**
+     * @param sizeInBytes approximate size of the file, it's rounded up to a whole chunk
+     * @return well formed temporary file, deleted on exit
+     */
+    static GeneratedFile file(long sizeInBytes) throws IOException, InitException {
+        File file = File.createTempFile("scanner-benchmark", ".txt");
+        file.deleteOnExit();
+        DigitalNumberScanner digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+        try (
+                Writer input = new BufferedWriter(new FileWriter(file), 1 << 20);
+                Writer expectedOutput = new Writer() {
+                    @Override
+                    public void write(char[] buffer, int offset, int length) {
+                    }
+
+                    @Override
+                    public void flush() {
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                }) {
+            return new GeneratedFile(file, new InputGenerator(digitalNumberScanner, SEED).generate(input, expectedOutput, sizeInBytes));
+        }
+    }
+
+    /**
+     * The second quarter of the chunks has the '_' cells replaced by a character outside of the alphabet,
+     * so these chunks take the slow String path with the fuzzy matching on, while the rest of the file is cheap.
+     * @param sizeInBytes approximate size of the file
+     * @return temporary file with skewed chunk costs, deleted on exit
+     */
+    static GeneratedFile skewedFile(long sizeInBytes) throws IOException {
+        File file = File.createTempFile("scanner-benchmark-skewed", ".txt");
+        file.deleteOnExit();
+        Random random = new Random(SEED);
+        long numberOfChunks = sizeInBytes / (chunk(random).length() + 2) + 1;
+        try (Writer input = new BufferedWriter(new FileWriter(file), 1 << 20)) {
+            for (long i = 0; i < numberOfChunks; i++) {
+                if (i > 0) {
+                    input.write("\n\n");
+                }
+                String chunk = chunk(random);
+                input.write(i >= numberOfChunks / 4 && i < numberOfChunks / 2 ? chunk.replace('_', 'x') : chunk);
+            }
+        }
+        return new GeneratedFile(file, numberOfChunks);
+    }
+}
@@ -0,0 +1,43 @@
+package com.olegpro.sc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * DigitReader.read on its own. One operation is reading all the digits of one chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigitReaderBenchmark {
+    static final int NUMBER_OF_CHUNKS = 1000;
+    private DigitReader digitReader;
+    private String[][] chunksLines;
+
+    @Setup
+    public void setup() {
+        digitReader = new DigitReader(BenchmarkInputs.DIGIT_WIDTH, BenchmarkInputs.DIGIT_ROWS.length);
+        chunksLines = BenchmarkInputs.chunks(NUMBER_OF_CHUNKS).stream().map(chunk -> chunk.split("\n")).toArray(String[][]::new);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_CHUNKS)
+    public void read(Blackhole blackhole) {
+        for (String[] lines : chunksLines) {
+            for (int digitNumber = 0; digitNumber < BenchmarkInputs.NUMBER_OF_DIGITS; digitNumber++) {
+                blackhole.consume(digitReader.read(lines, digitNumber));
+            }
+        }
+    }
+}
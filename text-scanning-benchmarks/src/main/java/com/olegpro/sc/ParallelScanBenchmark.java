@@ -0,0 +1,84 @@
+package com.olegpro.sc;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * scanFileParallel on the fixed pool against a (virtual) thread per block, with and without the artificial delay.
+ * The delay makes the recognition wait rather than compute, which is where the thread per block should pay off.
+ * On a JDK without virtual threads the thread per block falls back to platform threads, see ScanExecutors,
+ * so the virtualThreads numbers only count when it's run on Java 21+.
+ * adaptiveBlockSize compares the fixed 100 chunks per block with the AdaptiveBlockSizer.
+ * The chunks counter reports the throughput in chunks per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ParallelScanBenchmark {
+
+    @Param({"1"})
+    public int inputSizeMegabytes;
+
+    @Param({"fixedPool", "virtualThreads"})
+    public String executor;
+
+    @Param({"false", "true"})
+    public boolean delay;
+
+    @Param({"false", "true"})
+    public boolean adaptiveBlockSize;
+
+    private File inputFile;
+    private long numberOfChunks;
+    private DigitalNumberScanner digitalNumberScanner;
+    private final LongAdder outputLength = new LongAdder();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Chunks {
+        public long chunks;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InitException {
+        BenchmarkInputs.GeneratedFile generatedFile = BenchmarkInputs.file((long) inputSizeMegabytes * 1024 * 1024);
+        inputFile = generatedFile.file;
+        numberOfChunks = generatedFile.numberOfChunks;
+        digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+        digitalNumberScanner.dataOutputProvider = s -> outputLength.add(s.length());
+        digitalNumberScanner.logOutputProvider = s -> { };
+        digitalNumberScanner.virtualThreads = "virtualThreads".equals(executor);
+        digitalNumberScanner.delayArtificially = delay;
+        digitalNumberScanner.adaptiveBlockSize = adaptiveBlockSize;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        inputFile.delete();
+    }
+
+    @Benchmark
+    public long scanFileParallel(Chunks chunks) throws ScanException {
+        digitalNumberScanner.scanFileParallel(inputFile.getPath());
+        chunks.chunks += numberOfChunks;
+        return outputLength.sum();
+    }
+}
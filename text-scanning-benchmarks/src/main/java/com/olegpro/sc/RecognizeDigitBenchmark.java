@@ -0,0 +1,55 @@
+package com.olegpro.sc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * DigitalNumberScanner.recognizeDigit for the known glyphs (exact) and for corrupted ones (fuzzy).
+ * One operation is one glyph.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecognizeDigitBenchmark {
+    static final String[] KNOWN_GLYPHS = {
+            " _ | ||_|", "     |  |", " _  _||_ ", " _  _| _|", "   |_|  |",
+            " _ |_  _|", " _ |_ |_|", " _   |  |", " _ |_||_|", " _ |_| _|"};
+    /** Each one is a single cell away from a known glyph, "H" is equally far from "4" and "A". */
+    static final String[] CORRUPTED_GLYPHS = {
+            " _ | ||_ ", "   |_|| |", " _  _||  ", " _  _|  |", " _ |_   |",
+            " _ |_ |_ ", " _ | | _|", " _   |   ", " _ |_||  ", "   |_| _|"};
+
+    @Param({"exact", "fuzzy"})
+    public String match;
+
+    private DigitalNumberScanner digitalNumberScanner;
+    private String[] glyphs;
+
+    @Setup
+    public void setup() throws InitException {
+        digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+        digitalNumberScanner.fuzzyMatchingMode = "fuzzy".equals(match);
+        glyphs = "fuzzy".equals(match) ? CORRUPTED_GLYPHS : KNOWN_GLYPHS;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public void recognizeDigit(Blackhole blackhole) {
+        for (String glyph : glyphs) {
+            blackhole.consume(digitalNumberScanner.recognizeDigit(glyph));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.olegpro.sc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Scanning of a single chunk, the String based scanChunk against the byte based ByteChunkScanner,
+ * the latter with all the glyphs of the chunk encoded at once (SwarGlyphEncoder) and glyph by glyph.
+ * The widths: "fixed" checks the 9 digit chunks against chunk.numberOfDigits=9, "inferred" takes the width from each of them,
+ * "mixed" has 9, 12 and 16 digit chunks in the input, about 1.4x the glyphs per chunk.
+ * One operation is one chunk, so the score is in chunks per time unit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScanChunkBenchmark {
+    static final int NUMBER_OF_CHUNKS = 1000;
+    private DigitalNumberScanner digitalNumberScanner;
+    private ByteChunkScanner byteChunkScanner;
+    private ByteChunkScanner scalarByteChunkScanner;
+    private List<String> chunks;
+    private ByteBuffer chunksBuffer;
+    private int[] chunkStarts;
+    private int[] chunkEnds;
+    private StringBuilder output;
+
+    @Param({"fixed", "inferred", "mixed"})
+    public String widths;
+
+    @Setup
+    public void setup() throws InitException {
+        digitalNumberScanner = new DigitalNumberScanner();
+        Properties commandLine = new Properties();
+        commandLine.setProperty(ScannerConfiguration.Setting.CHUNK_NUMBER_OF_DIGITS.key, "fixed".equals(widths) ? "9" : "0");
+        digitalNumberScanner.init(ScannerConfiguration.load(new Properties(), commandLine));
+        byteChunkScanner = digitalNumberScanner.newByteChunkScanner();
+        digitalNumberScanner.swarRecognition = false;
+        scalarByteChunkScanner = digitalNumberScanner.newByteChunkScanner();
+        chunks = "mixed".equals(widths) ? BenchmarkInputs.mixedWidthChunks(NUMBER_OF_CHUNKS) : BenchmarkInputs.chunks(NUMBER_OF_CHUNKS);
+        byte[] bytes = String.join("\n\n", chunks).getBytes(ByteBufferChunker.CHUNK_CHARSET);
+        chunksBuffer = ByteBuffer.allocateDirect(bytes.length);
+        chunksBuffer.put(bytes).flip();
+        chunkStarts = new int[NUMBER_OF_CHUNKS];
+        chunkEnds = new int[NUMBER_OF_CHUNKS];
+        ByteBufferChunker chunker = new ByteBufferChunker(chunksBuffer);
+        for (int i = 0; chunker.hasNext(); i++) {
+            chunkStarts[i] = chunker.chunkStart();
+            chunkEnds[i] = chunker.chunkEnd();
+            chunker.skip();
+        }
+        output = new StringBuilder();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_CHUNKS)
+    public void scanChunk(Blackhole blackhole) throws IOException {
+        for (String chunk : chunks) {
+            digitalNumberScanner.scanChunk(chunk, blackhole::consume, blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_CHUNKS)
+    public void scanChunkBytes(Blackhole blackhole) {
+        for (int i = 0; i < NUMBER_OF_CHUNKS; i++) {
+            output.setLength(0);
+            blackhole.consume(byteChunkScanner.scan(chunksBuffer, chunkStarts[i], chunkEnds[i], output));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUMBER_OF_CHUNKS)
+    public void scanChunkBytesScalar(Blackhole blackhole) {
+        for (int i = 0; i < NUMBER_OF_CHUNKS; i++) {
+            output.setLength(0);
+            blackhole.consume(scalarByteChunkScanner.scan(chunksBuffer, chunkStarts[i], chunkEnds[i], output));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.olegpro.sc;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The parallel scanning modes on a file where a quarter of the chunks is much more expensive than the rest,
+ * see BenchmarkInputs.skewedFile. The chunks counter reports the throughput in chunks per second.
+ * The difference between the modes only shows with several cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SkewedScanBenchmark {
+
+    @Param({"16"})
+    public int inputSizeMegabytes;
+
+    private File inputFile;
+    private long numberOfChunks;
+    private DigitalNumberScanner digitalNumberScanner;
+    private final LongAdder outputLength = new LongAdder();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Chunks {
+        public long chunks;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InitException {
+        BenchmarkInputs.GeneratedFile generatedFile = BenchmarkInputs.skewedFile((long) inputSizeMegabytes * 1024 * 1024);
+        inputFile = generatedFile.file;
+        numberOfChunks = generatedFile.numberOfChunks;
+        digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+        digitalNumberScanner.dataOutputProvider = s -> outputLength.add(s.length());
+        digitalNumberScanner.logOutputProvider = s -> { };
+        digitalNumberScanner.fuzzyMatchingMode = true;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        inputFile.delete();
+    }
+
+    @Benchmark
+    public long scanFileParallel(Chunks chunks) throws ScanException {
+        digitalNumberScanner.scanFileParallel(inputFile.getPath());
+        chunks.chunks += numberOfChunks;
+        return outputLength.sum();
+    }
+
+    @Benchmark
+    public long scanFileMapped(Chunks chunks) throws ScanException {
+        digitalNumberScanner.scanFileMapped(inputFile.getPath());
+        chunks.chunks += numberOfChunks;
+        return outputLength.sum();
+    }
+
+    @Benchmark
+    public long scanFileForkJoin(Chunks chunks) throws ScanException {
+        digitalNumberScanner.scanFileForkJoin(inputFile.getPath());
+        chunks.chunks += numberOfChunks;
+        return outputLength.sum();
+    }
+}
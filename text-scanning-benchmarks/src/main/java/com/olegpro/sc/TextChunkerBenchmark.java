@@ -0,0 +1,80 @@
+package com.olegpro.sc;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Chunking of a whole file, the Scanner based TextFileChunker against ByteBufferChunker over the mapped file.
+ * The chunks counter reports the throughput in chunks per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TextChunkerBenchmark {
+
+    @Param({"1", "64", "1024"})
+    public int inputSizeMegabytes;
+
+    private File inputFile;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Chunks {
+        public long chunks;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InitException {
+        inputFile = BenchmarkInputs.file((long) inputSizeMegabytes * 1024 * 1024).file;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        inputFile.delete();
+    }
+
+    @Benchmark
+    public void textFileChunker(Chunks chunks, Blackhole blackhole) throws IOException {
+        try (TextFileChunker chunker = new TextFileChunker(inputFile.getPath())) {
+            while (chunker.hasNext()) {
+                blackhole.consume(chunker.next());
+                chunks.chunks++;
+            }
+        }
+    }
+
+    @Benchmark
+    public void byteBufferChunker(Chunks chunks, Blackhole blackhole) throws IOException {
+        try (FileChannel channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+            for (FileRegion region : new MappedFileSplitter(channel, Integer.MAX_VALUE).split(1)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, region.getStart(), region.size());
+                ByteBufferChunker chunker = new ByteBufferChunker(buffer);
+                while (chunker.hasNext()) {
+                    blackhole.consume(chunker.chunkEnd());
+                    chunker.skip();
+                    chunks.chunks++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,4 @@
+#!/bin/bash
+source ./bin/com.sh
+# output file, size, illegal glyph rate, wrong length row rate, whitespace delimiter rate
+java -cp "$CP" com.olegpro.sc.InputGenerator ./input/generated 64M 0.001 0.001 0.1
\ No newline at end of file
@@ -0,0 +1,3 @@
+#!/bin/bash
+source ./bin/com.sh
+java -cp "$CP" com.olegpro.sc.App ./input/large adaptive delay
@@ -0,0 +1,180 @@
+package com.olegpro.sc;
+
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Picks the number of chunks in a block and the prefetch depth (blocks in flight) for scanFileParallel at runtime.
+ * <ul>
+ *     <li>Block size: every completed block reports how long it took, the time per chunk is averaged (EWMA)
+ *     and the block size is set so that a block takes about targetBlockLatencyMillis.
+ *     Cheap chunks give large blocks, so there is less overhead per block, expensive ones give small blocks,
+ *     so the aggregator doesn't stall on one slow block for long. It grows at most twice per block, so one fast block can't blow it up.</li>
+ *     <li>Prefetch depth: as many blocks as fit into the memory budget, which is maxBytesInFlight
+ *     or a share of the heap headroom, whichever is smaller. If fewer than minPrefetchDepth blocks would fit,
+ *     the blocks are made smaller instead, so the threads still have a block ready. Down to minChunksInBlock,
+ *     below that the depth goes down.</li>
+ *     <li>Queue depth: the blocks read but not yet written, see watchQueue(). When fewer of them wait than there are threads,
+ *     the threads idle while the reader fills the next block, so the blocks are made smaller in proportion and reach them sooner.
+ *     When the queue is full the latency rule alone decides.</li>
+ * </ul>
+ * The bytes in flight are still capped by the InFlightBudget, the depth only decides how much of it is used.
+ * Thread safe, the blocks report from the pool threads and the reading thread asks for the sizes.
+ */
+public class AdaptiveBlockSizer {
+    /** Weight of the latest block in the average time per chunk. */
+    static final double SMOOTHING_FACTOR = 0.3;
+    /** A String takes about twice the characters it holds once its copies and the results are counted, so only this share of the headroom is used. */
+    static final int HEAP_HEADROOM_SHARE = 4;
+    /** Sizes that changed less than that are not logged. */
+    static final double LOGGED_CHANGE = 0.1;
+    private final long targetBlockLatencyNanos;
+    private final int minChunksInBlock;
+    private final int maxChunksInBlock;
+    private final int minPrefetchDepth;
+    private final int maxPrefetchDepth;
+    private final long maxBytesInFlight;
+    private final LongSupplier heapHeadroom;
+    private final Consumer<String> logOutputProvider;
+    private IntSupplier queueDepth = () -> Integer.MAX_VALUE; // unknown, never short of blocks
+    private volatile int numberOfChunksInBlock;
+    private volatile int prefetchDepth;
+    private double nanosPerChunk = -1;
+    private double bytesPerChunk = -1;
+    private double averageQueueDepth = -1;
+    private int loggedNumberOfChunksInBlock;
+    private int loggedPrefetchDepth;
+    private long numberOfBlocks;
+    private long totalBlockNanos;
+    private int smallestBlock = Integer.MAX_VALUE;
+    private int largestBlock = 0;
+    private int smallestPrefetchDepth;
+    private int largestPrefetchDepth;
+
+    /**
+     * @param initialChunksInBlock used until the first block is measured
+     * @param minPrefetchDepth usually the number of threads plus one
+     * @param maxBytesInFlight memory budget, the prefetch depth times the block size stays under it
+     */
+    public AdaptiveBlockSizer(long targetBlockLatencyMillis, int initialChunksInBlock, int minChunksInBlock, int maxChunksInBlock,
+                              int minPrefetchDepth, int maxPrefetchDepth, long maxBytesInFlight, Consumer<String> logOutputProvider) {
+        this(targetBlockLatencyMillis, initialChunksInBlock, minChunksInBlock, maxChunksInBlock,
+                minPrefetchDepth, maxPrefetchDepth, maxBytesInFlight, AdaptiveBlockSizer::heapHeadroom, logOutputProvider);
+    }
+
+    AdaptiveBlockSizer(long targetBlockLatencyMillis, int initialChunksInBlock, int minChunksInBlock, int maxChunksInBlock,
+                       int minPrefetchDepth, int maxPrefetchDepth, long maxBytesInFlight, LongSupplier heapHeadroom,
+                       Consumer<String> logOutputProvider) {
+        this.targetBlockLatencyNanos = targetBlockLatencyMillis * 1_000_000L;
+        this.minChunksInBlock = Math.max(1, minChunksInBlock);
+        this.maxChunksInBlock = Math.max(this.minChunksInBlock, maxChunksInBlock);
+        this.minPrefetchDepth = Math.max(1, minPrefetchDepth);
+        this.maxPrefetchDepth = Math.max(this.minPrefetchDepth, maxPrefetchDepth);
+        this.maxBytesInFlight = maxBytesInFlight;
+        this.heapHeadroom = heapHeadroom;
+        this.logOutputProvider = logOutputProvider;
+        this.numberOfChunksInBlock = clamp(initialChunksInBlock, this.minChunksInBlock, this.maxChunksInBlock);
+        this.prefetchDepth = this.minPrefetchDepth;
+        this.loggedNumberOfChunksInBlock = numberOfChunksInBlock;
+        this.loggedPrefetchDepth = prefetchDepth;
+        this.smallestPrefetchDepth = prefetchDepth;
+        this.largestPrefetchDepth = prefetchDepth;
+    }
+
+    /**
+     * Call before the first block is scanned.
+     * @param queueDepth number of blocks read but not yet written, e.g. ResultsAggregator.size()
+     */
+    public void watchQueue(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /** @return number of chunks the next block should have */
+    public int numberOfChunksInBlock() {
+        return numberOfChunksInBlock;
+    }
+
+    /** @return number of blocks that can be in flight, i.e. read but not yet written */
+    public int prefetchDepth() {
+        return prefetchDepth;
+    }
+
+    /**
+     * Called by every block once it's scanned.
+     * @param numberOfChunks chunks in the block
+     * @param blockSize characters in the block
+     * @param elapsedNanos time it took to scan the block
+     */
+    public synchronized void blockCompleted(int numberOfChunks, int blockSize, long elapsedNanos) {
+        if (numberOfChunks <= 0) {
+            return;
+        }
+        numberOfBlocks++;
+        totalBlockNanos += elapsedNanos;
+        smallestBlock = Math.min(smallestBlock, numberOfChunks);
+        largestBlock = Math.max(largestBlock, numberOfChunks);
+        nanosPerChunk = average(nanosPerChunk, (double) elapsedNanos / numberOfChunks);
+        bytesPerChunk = average(bytesPerChunk, (double) blockSize / numberOfChunks);
+
+        long chunks = nanosPerChunk > 0 ? (long) (targetBlockLatencyNanos / nanosPerChunk) : maxChunksInBlock;
+        chunks = Math.min(chunks, 2L * numberOfChunksInBlock);
+        // the threads wait for blocks, smaller ones are handed out sooner
+        averageQueueDepth = average(averageQueueDepth, queueDepth.getAsInt());
+        final int numberOfThreads = minPrefetchDepth - 1;
+        if (averageQueueDepth < numberOfThreads) {
+            chunks = Math.min(chunks, (long) Math.ceil(numberOfChunksInBlock * Math.max(1, averageQueueDepth) / numberOfThreads));
+        }
+        // when the memory is short, smaller blocks rather than idle threads
+        final long memoryBudget = Math.min(maxBytesInFlight, heapHeadroom.getAsLong() / HEAP_HEADROOM_SHARE);
+        chunks = Math.min(chunks, (long) (memoryBudget / (minPrefetchDepth * Math.max(1, bytesPerChunk))));
+        numberOfChunksInBlock = (int) clamp(chunks, minChunksInBlock, maxChunksInBlock);
+
+        final long blockBytes = Math.max(1, (long) (bytesPerChunk * numberOfChunksInBlock));
+        prefetchDepth = (int) clamp(memoryBudget / blockBytes, 1, maxPrefetchDepth);
+        smallestPrefetchDepth = Math.min(smallestPrefetchDepth, prefetchDepth);
+        largestPrefetchDepth = Math.max(largestPrefetchDepth, prefetchDepth);
+        logIfChanged();
+    }
+
+    /** @return what was chosen over the whole scan, for the final summary */
+    public synchronized String summary() {
+        return String.format("Adaptive block sizing: %d blocks, %.2f ms per block on average (target %d ms), "
+                        + "block size %d..%d chunks (last %d), prefetch depth %d..%d blocks (last %d) %n",
+                numberOfBlocks, numberOfBlocks == 0 ? 0.0 : totalBlockNanos / 1e6 / numberOfBlocks, targetBlockLatencyNanos / 1_000_000L,
+                numberOfBlocks == 0 ? numberOfChunksInBlock : smallestBlock, Math.max(largestBlock, numberOfChunksInBlock), numberOfChunksInBlock,
+                smallestPrefetchDepth, largestPrefetchDepth, prefetchDepth);
+    }
+
+    private void logIfChanged() {
+        if (changed(loggedNumberOfChunksInBlock, numberOfChunksInBlock) || loggedPrefetchDepth != prefetchDepth) {
+            logOutputProvider.accept(String.format("Block size set to %d chunks, prefetch depth to %d blocks (%.1f us per chunk, %.0f bytes per chunk%s) %n",
+                    numberOfChunksInBlock, prefetchDepth, nanosPerChunk / 1000, bytesPerChunk,
+                    averageQueueDepth < Integer.MAX_VALUE ? String.format(", %.1f blocks queued", averageQueueDepth) : ""));
+            loggedNumberOfChunksInBlock = numberOfChunksInBlock;
+            loggedPrefetchDepth = prefetchDepth;
+        }
+    }
+
+    private static boolean changed(int before, int after) {
+        return Math.abs(after - before) > before * LOGGED_CHANGE;
+    }
+
+    private static double average(double average, double value) {
+        return average < 0 ? value : average + SMOOTHING_FACTOR * (value - average);
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /** @return how much more the heap can grow */
+    static long heapHeadroom() {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+}
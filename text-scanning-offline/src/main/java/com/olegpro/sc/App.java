@@ -1,14 +1,32 @@
 package com.olegpro.sc;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 public class App {
+    static final String OUTPUT_FILE_ARGUMENT_PREFIX = "out=";
+    static final String DEAD_LETTER_FILE_ARGUMENT_PREFIX = "dlq=";
+    static final String CHECKPOINT_FILE_ARGUMENT_PREFIX = "checkpoint=";
+
     /**
      * This entry point expects the name of file to process as the first argument.
-     * It can be refactored to take in many files or a folder.
-     * For simplicity, leaving it to a single file for now.
+     * The numbers go to the standard output, unless there is an "out=<file>" argument.
+     * Corrupt chunks go to the log, unless there is a "dlq=<file>" argument.
+     * With "checkpoint=<file>" and "out=<file>" the scan is parallel and resumable, see DigitalNumberScanner.scanFileResumable.
+     * With "virtual" the parallel scan runs a virtual thread per block, see DigitalNumberScanner.scanFileParallel.
+     * With "adaptive" the parallel scan tunes the block size and the prefetch depth as it goes, see AdaptiveBlockSizer.
+     * With "forkjoin" the file is mapped and scanned on a work-stealing ForkJoinPool, see DigitalNumberScanner.scanFileForkJoin.
+     * With "follow" the file is scanned while it's being written, like tail -f, see DigitalNumberScanner.followFile.
+     * With "batch" the first argument is a directory, a glob or a @file list, see BatchScanner. Each file goes to its own <file>.out,
+     * next to it or in the "out=<directory>".
+     * With "digital.number.scanner.output.format=binary" the "out=<file>" gets fixed size records and an index, see BinaryOutputSink.
+     * The tuning comes from the ScannerConfiguration: "profile=<name>", "config=<file>" and any "digital.number.scanner.<key>=<value>"
+     * override the defaults, as do the flags above and "parallel", "mapped", "delay", "fuzzy".
+     * The ScanMetrics are logged every few seconds and at the end, and exposed over JMX, see the metrics settings.
      * */
     public static void main(String[] args) {
         long startTime = System.currentTimeMillis();
@@ -19,22 +37,106 @@ public class App {
             }
             String inputFilePath = args[0];
             Set<String> argsSet = Arrays.stream(args).collect(Collectors.toSet());
-            boolean parallel = argsSet.contains("parallel");
-            boolean delay = argsSet.contains("delay");
-            boolean fuzzy = argsSet.contains("fuzzy");
+            boolean batch = argsSet.contains("batch");
 
+            ScannerConfiguration configuration = ScannerConfiguration.load(System.getProperties(), ScannerConfiguration.fromArguments(args));
+            System.out.print(String.format("Configuration: %s %n", String.join(" < ", configuration.getSources())));
             DigitalNumberScanner digitalNumberScanner = new DigitalNumberScanner();
-            digitalNumberScanner.init();
-            digitalNumberScanner.delayArtificially = delay;
-            digitalNumberScanner.fuzzyMatchingMode = fuzzy;
-            if (parallel) {
-                digitalNumberScanner.scanFileParallel(inputFilePath);
-            } else {
-                digitalNumberScanner.scanFile(inputFilePath);
+            digitalNumberScanner.init(configuration);
+            if (configuration.getBoolean(ScannerConfiguration.Setting.METRICS_JMX)) {
+                digitalNumberScanner.metrics.registerMBean();
+            }
+            String outputFilePath = null;
+            String checkpointFilePath = null;
+            for (String arg : argsSet) {
+                if (arg.startsWith(OUTPUT_FILE_ARGUMENT_PREFIX)) {
+                    outputFilePath = arg.substring(OUTPUT_FILE_ARGUMENT_PREFIX.length());
+                }
+                if (arg.startsWith(CHECKPOINT_FILE_ARGUMENT_PREFIX)) {
+                    checkpointFilePath = arg.substring(CHECKPOINT_FILE_ARGUMENT_PREFIX.length());
+                }
+                if (arg.startsWith(DEAD_LETTER_FILE_ARGUMENT_PREFIX)) {
+                    digitalNumberScanner.deadLetterWriter = DeadLetterWriter.toFile(arg.substring(DEAD_LETTER_FILE_ARGUMENT_PREFIX.length()));
+                }
+            }
+            if (null != checkpointFilePath && null == outputFilePath) {
+                System.out.println("Please provide the output file with \"out=<file>\" to resume the scan into.");
+                System.exit(1);
+            }
+            if (digitalNumberScanner.outputFormat == ScannerConfiguration.OutputFormat.BINARY && null != checkpointFilePath) {
+                System.out.println("The binary output can't be resumed from a checkpoint, please use the text one.");
+                System.exit(1);
+            }
+            if (digitalNumberScanner.outputFormat == ScannerConfiguration.OutputFormat.BINARY && null == outputFilePath && !batch) {
+                System.out.println("Please provide the output file with \"out=<file>\" for the binary output.");
+                System.exit(1);
             }
+            final MetricsReporter metricsReporter = new MetricsReporter(digitalNumberScanner.metrics,
+                    configuration.getInt(ScannerConfiguration.Setting.METRICS_REPORT_INTERVAL_SECONDS), digitalNumberScanner.logOutputProvider);
+            try {
+                if (batch) {
+                    scanBatch(digitalNumberScanner, inputFilePath, outputFilePath);
+                    return;
+                }
+                if (null != outputFilePath && null == checkpointFilePath) {
+                    digitalNumberScanner.dataOutputProvider = digitalNumberScanner.newOutputSink(outputFilePath);
+                }
+                final OutputSink outputSink = digitalNumberScanner.dataOutputProvider;
+                try {
+                    if (null != checkpointFilePath) {
+                        digitalNumberScanner.scanFileResumable(inputFilePath, outputFilePath, checkpointFilePath);
+                    } else {
+                        scan(digitalNumberScanner, configuration.getEngine(), inputFilePath);
+                    }
+                } finally {
+                    try {
+                        outputSink.close();
+                    } finally {
+                        if (null != digitalNumberScanner.deadLetterWriter) { digitalNumberScanner.deadLetterWriter.close(); }
+                    }
+                }
+            } finally {
+                metricsReporter.close();
+                digitalNumberScanner.logOutputProvider.accept(digitalNumberScanner.metrics.summary());
+            }
+        } catch (InitException e) {
+            System.out.println(e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            System.out.print(String.format("Completed in %d ms. %n", System.currentTimeMillis() - startTime));
+        }
+    }
+
+    private static void scan(DigitalNumberScanner digitalNumberScanner, ScannerConfiguration.Engine engine, String inputFilePath) throws ScanException {
+        switch (engine) {
+            case FOLLOW:
+                digitalNumberScanner.followFile(inputFilePath);
+                break;
+            case FORKJOIN:
+                digitalNumberScanner.scanFileForkJoin(inputFilePath);
+                break;
+            case MAPPED:
+                digitalNumberScanner.scanFileMapped(inputFilePath);
+                break;
+            case PARALLEL:
+                digitalNumberScanner.scanFileParallel(inputFilePath);
+                break;
+            default:
+                digitalNumberScanner.scanFile(inputFilePath);
+        }
+    }
+
+    private static void scanBatch(DigitalNumberScanner digitalNumberScanner, String inputs, String outputDirectory) throws Exception {
+        List<String> inputFilePaths = BatchScanner.resolveInputFiles(inputs);
+        if (null != outputDirectory) {
+            Files.createDirectories(Paths.get(outputDirectory));
+        }
+        try (BatchScanner batchScanner = new BatchScanner(digitalNumberScanner)) {
+            int numberOfFailedFiles = batchScanner.scanFiles(inputFilePaths, inputFilePath -> BatchScanner.outputFilePath(inputFilePath, outputDirectory));
+            System.out.print(String.format("Scanned %d files, %d failed. %n", inputFilePaths.size(), numberOfFailedFiles));
+        } finally {
+            if (null != digitalNumberScanner.deadLetterWriter) { digitalNumberScanner.deadLetterWriter.close(); }
         }
-        System.out.print(String.format("Completed in %d ms. %n", System.currentTimeMillis() - startTime));
     }
 }
@@ -0,0 +1,213 @@
+package com.olegpro.sc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Scans many files with one long-lived pool, e.g. a nightly job over thousands of small files, so there is no JVM start
+ * and no pool set up per file.
+ * One thread reads the files one after another and submits their blocks of chunks to the shared pool.
+ * It doesn't wait for a file to complete before reading the next one, so the pool is kept busy across the files.
+ * Each file has its own ResultsAggregator writing its results in order to its own output.
+ * The memory held in flight is capped across all the files: a block takes as many permits from the shared budget
+ * as it has characters and gives them back once its results are written. The number of files open at the same time is capped too.
+ * A file counts as failed once, whether it couldn't be read, a block of it couldn't be scanned or written, or its output couldn't be closed.
+ */
+public class BatchScanner implements Closeable {
+    static final String OUTPUT_FILE_SUFFIX = ".out";
+    static final String FILE_LIST_PREFIX = "@";
+    static final String GLOB_CHARACTERS = "*?[{";
+    static final int DEFAULT_MAX_FILES_IN_FLIGHT = 64;
+    private final DigitalNumberScanner scanner;
+    private final ExecutorService scanningExecutor;
+    private final ExecutorService aggregatorExecutor = Executors.newCachedThreadPool();
+    private final InFlightBudget bytesInFlight;
+    private final Semaphore filesInFlight;
+
+    public BatchScanner(DigitalNumberScanner scanner) {
+        this(scanner, scanner.numberOfParallelBlocksProcessed, scanner.maxBytesInFlight, DEFAULT_MAX_FILES_IN_FLIGHT);
+    }
+
+    /**
+     * @param scanner initialized scanner, its settings (block size, fuzzy matching, dead letter file etc.) apply to all the files
+     * @param numberOfThreads size of the shared pool
+     * @param maxBytesInFlight cap on the input read but not yet written out, across all the files
+     * @param maxFilesInFlight cap on the files read but not yet completely written out, i.e. on the open outputs
+     */
+    public BatchScanner(DigitalNumberScanner scanner, int numberOfThreads, int maxBytesInFlight, int maxFilesInFlight) {
+        this.scanner = scanner;
+        this.scanningExecutor = Executors.newFixedThreadPool(numberOfThreads);
+        this.bytesInFlight = new InFlightBudget(maxBytesInFlight);
+        this.filesInFlight = new Semaphore(maxFilesInFlight);
+    }
+
+    /**
+     * @param inputFilePaths files to scan, in this order
+     * @param outputFilePathProvider output file for the input file
+     * @return number of files that failed, the rest are scanned regardless
+     * @throws ScanException if interrupted
+     */
+    public int scanFiles(List<String> inputFilePaths, Function<String, String> outputFilePathProvider) throws ScanException {
+        final Consumer<String> logOutputProvider = scanner.logOutputProvider;
+        final AtomicInteger numberOfFailedFiles = new AtomicInteger();
+        final List<CompletableFuture<Void>> files = new ArrayList<>();
+        try {
+            for (String inputFilePath : inputFilePaths) {
+                filesInFlight.acquire();
+                try {
+                    files.add(submitFile(inputFilePath, outputFilePathProvider.apply(inputFilePath), numberOfFailedFiles));
+                } catch (IOException e) {
+                    filesInFlight.release();
+                    numberOfFailedFiles.incrementAndGet();
+                    logOutputProvider.accept(String.format("Failed to open the output for %s with error: %s %n", inputFilePath, e.getMessage()));
+                }
+            }
+            CompletableFuture.allOf(files.toArray(new CompletableFuture<?>[0])).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScanException(e);
+        }
+        return numberOfFailedFiles.get();
+    }
+
+    /** Reads the whole file into blocks and submits them. The output is closed by the aggregator once it's written. */
+    private CompletableFuture<Void> submitFile(String inputFilePath, String outputFilePath, AtomicInteger numberOfFailedFiles)
+            throws IOException, InterruptedException {
+        final Consumer<String> logOutputProvider = scanner.logOutputProvider;
+        // set by the reading thread or the aggregator, whichever sees the first failure of the file
+        final AtomicBoolean failed = new AtomicBoolean();
+        final Runnable fileFailed = () -> {
+            if (failed.compareAndSet(false, true)) {
+                numberOfFailedFiles.incrementAndGet();
+            }
+        };
+        final OutputSink outputSink = scanner.newOutputSink(outputFilePath);
+        final ResultsAggregator resultsAggregator = new ResultsAggregator(outputSink, logOutputProvider, Integer.MAX_VALUE, bytesInFlight);
+        resultsAggregator.recordTo(scanner.metrics);
+        final CompletableFuture<Void> file = CompletableFuture.runAsync(resultsAggregator, aggregatorExecutor)
+                .whenComplete((result, e) -> {
+                    if (resultsAggregator.getNumberOfFailedBlocks() > 0) {
+                        fileFailed.run();
+                        logOutputProvider.accept(String.format("Failed to scan %d blocks of %s %n", resultsAggregator.getNumberOfFailedBlocks(), inputFilePath));
+                    }
+                    try {
+                        outputSink.close();
+                    } catch (IOException closeException) {
+                        fileFailed.run();
+                        logOutputProvider.accept(String.format("Failed to write %s with error: %s %n", outputFilePath, closeException.getMessage()));
+                    } finally {
+                        filesInFlight.release();
+                    }
+                });
+        TextFileChunker inputFileChunker = null;
+        try {
+            logOutputProvider.accept(String.format("Reading %s %n", inputFilePath));
+            inputFileChunker = new TextFileChunker(inputFilePath, ByteBufferChunker.CHUNK_CHARSET);
+            List<String> block = new LinkedList<>();
+            long[] chunkOffsets = new long[scanner.numberOfChunksInBlock];
+            int blockSize = 0;
+            int blockNumber = 0;
+            while (inputFileChunker.hasNext()) {
+                String chunk = inputFileChunker.next();
+                chunkOffsets[block.size()] = inputFileChunker.chunkOffset();
+                block.add(chunk);
+                blockSize += chunk.length();
+                if (block.size() == scanner.numberOfChunksInBlock) {
+                    submitBlock(resultsAggregator, block, chunkOffsets, blockNumber++, blockSize);
+                    block = new LinkedList<>();
+                    chunkOffsets = new long[scanner.numberOfChunksInBlock];
+                    blockSize = 0;
+                }
+            }
+            if (block.size() != 0) {
+                submitBlock(resultsAggregator, block, chunkOffsets, blockNumber, blockSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            fileFailed.run();
+            logOutputProvider.accept(String.format("Failed reading %s with error: %s %n", inputFilePath, e.getMessage()));
+        } finally {
+            if (null != inputFileChunker) { inputFileChunker.close(); }
+            resultsAggregator.finishPublishing();
+        }
+        return file;
+    }
+
+    /** Blocks while the budget is used up. */
+    private void submitBlock(ResultsAggregator resultsAggregator, List<String> block, long[] chunkOffsets, int blockNumber, int blockSize)
+            throws InterruptedException {
+        final int permits = bytesInFlight.acquire(blockSize);
+        final ScanBlockOfChunksTask task = new ScanBlockOfChunksTask(block, chunkOffsets, blockNumber, scanner, blockSize, null);
+        resultsAggregator.add(scanningExecutor.submit(task), blockNumber, -1, permits);
+    }
+
+    @Override
+    public void close() {
+        scanningExecutor.shutdown();
+        aggregatorExecutor.shutdown();
+        try {
+            scanningExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            aggregatorExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param inputs a directory (all the files in it, not recursive), a glob in the file name, e.g. ./input/*.txt,
+     *               a file list, e.g. @files.txt with one path per line, or just a file.
+     *               Outputs of the earlier runs (*.out) are skipped in directories and globs.
+     * @return the files, sorted for directories and globs
+     */
+    static List<String> resolveInputFiles(String inputs) throws IOException {
+        final List<String> inputFilePaths = new ArrayList<>();
+        if (inputs.startsWith(FILE_LIST_PREFIX)) {
+            for (String line : Files.readAllLines(Paths.get(inputs.substring(FILE_LIST_PREFIX.length())))) {
+                if (!line.trim().isEmpty()) {
+                    inputFilePaths.add(line.trim());
+                }
+            }
+            return inputFilePaths;
+        }
+        final Path path = Paths.get(inputs);
+        final Path fileName = path.getFileName();
+        final boolean isGlob = null != fileName && fileName.toString().chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0);
+        if (!isGlob && !Files.isDirectory(path)) {
+            inputFilePaths.add(inputs);
+            return inputFilePaths;
+        }
+        final Path directory = isGlob ? (null == path.getParent() ? Paths.get(".") : path.getParent()) : path;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, isGlob ? fileName.toString() : "*")) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file) && !file.toString().endsWith(OUTPUT_FILE_SUFFIX)) {
+                    inputFilePaths.add(file.toString());
+                }
+            }
+        }
+        Collections.sort(inputFilePaths);
+        return inputFilePaths;
+    }
+
+    /** @return output file for the input file: in the output directory if there is one, next to the input otherwise */
+    static String outputFilePath(String inputFilePath, String outputDirectory) {
+        final Path inputFile = Paths.get(inputFilePath);
+        final String outputFileName = inputFile.getFileName() + OUTPUT_FILE_SUFFIX;
+        return (null == outputDirectory ? inputFile.resolveSibling(outputFileName) : Paths.get(outputDirectory, outputFileName)).toString();
+    }
+}
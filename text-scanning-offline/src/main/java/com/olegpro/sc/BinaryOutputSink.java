@@ -0,0 +1,244 @@
+package com.olegpro.sc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes the records as fixed size binary records rather than lines, see BinaryRecord for the layout.
+ * Record N is at a known position, so BinaryRecordReader reads any of them in O(1) without going through the file.
+ * <p>
+ * The scanners put the source offset and the fuzzy flag after every record when the output format is BINARY, see annotate(),
+ * so the records come through the ResultsAggregator in order the same as the text ones, this sink packs them as they come.
+ * Alongside there is a sparse index file, &lt;file&gt;.idx: the source offset of every indexInterval-th record.
+ * It's a few KB for millions of records, so the records of a part of the input are found without touching the large file.
+ * <pre>
+ * index: int magic "DNSI", int index interval, then a long source offset per indexInterval records
+ * </pre>
+ * Not thread-safe, it's meant to be written to by one thread, e.g. the results aggregator.
+ */
+public class BinaryOutputSink implements OutputSink {
+    static final String INDEX_FILE_SUFFIX = ".idx";
+    static final int INDEX_MAGIC = 0x444E5349;
+    static final int INDEX_HEADER_SIZE = 2 * Integer.BYTES;
+    static final char ANNOTATION_SEPARATOR = '\t';
+    static final char FUZZY_MARK = 'F';
+    static final char EXACT_MARK = '-';
+    private static final int NO_NIBBLE = -1;
+    private final WritableByteChannel channel;
+    private final WritableByteChannel indexChannel;
+    private final ByteBuffer buffer;
+    private final ByteBuffer indexBuffer;
+    /** Nibble of every symbol character, NO_NIBBLE for the rest. */
+    private final int[] nibbles = new int[256];
+    private final int maxDigits;
+    private final int recordSize;
+    private final int indexInterval;
+    private long numberOfRecords = 0;
+
+    /**
+     * Writes the headers straight away.
+     * @param symbols what the digits can be, at most BinaryRecord.MAX_SYMBOLS of them, see DigitalNumberScanner.getSymbols()
+     * @param maxDigits room for that many digits in every record, at most BinaryRecord.MAX_DIGITS
+     * @param indexInterval every that many records go into the index once
+     * @param bufferSize size of the batch
+     */
+    public BinaryOutputSink(WritableByteChannel channel, WritableByteChannel indexChannel, String symbols, int maxDigits, int indexInterval,
+                            int bufferSize) {
+        if (symbols.length() > BinaryRecord.MAX_SYMBOLS || maxDigits > BinaryRecord.MAX_DIGITS) {
+            throw new IllegalArgumentException(String.format("%d symbols and %d digits don't fit into a binary record", symbols.length(), maxDigits));
+        }
+        this.channel = channel;
+        this.indexChannel = indexChannel;
+        this.maxDigits = maxDigits;
+        this.recordSize = BinaryRecord.recordSize(maxDigits);
+        this.indexInterval = indexInterval;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, BinaryRecord.HEADER_SIZE + recordSize));
+        this.indexBuffer = ByteBuffer.allocateDirect(Math.max(bufferSize / 16, INDEX_HEADER_SIZE + Long.BYTES));
+        Arrays.fill(nibbles, NO_NIBBLE);
+        byte[] symbolBytes = new byte[BinaryRecord.MAX_SYMBOLS];
+        for (int nibble = 0; nibble < symbols.length(); nibble++) {
+            final char symbol = symbols.charAt(nibble);
+            if (symbol > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException(String.format("The symbol %s isn't ASCII", symbol));
+            }
+            nibbles[symbol] = nibble;
+            symbolBytes[nibble] = (byte) symbol;
+        }
+        buffer.putInt(BinaryRecord.MAGIC)
+                .putShort(BinaryRecord.VERSION)
+                .putShort((short) recordSize)
+                .put((byte) maxDigits)
+                .put((byte) symbols.length())
+                .put(symbolBytes)
+                .putInt(indexInterval);
+        buffer.position(BinaryRecord.HEADER_SIZE);
+        indexBuffer.putInt(INDEX_MAGIC).putInt(indexInterval);
+    }
+
+    /** @return sink creating or truncating the file and its index */
+    public static BinaryOutputSink toFile(String outputFilePath, String symbols, int maxDigits, int indexInterval, int bufferSize) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(outputFilePath),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        FileChannel indexChannel = FileChannel.open(Paths.get(outputFilePath + INDEX_FILE_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new BinaryOutputSink(channel, indexChannel, symbols, maxDigits, indexInterval, bufferSize);
+    }
+
+    /**
+     * Appends what the binary record has on top of the text one, before the record separator: tab, source offset, tab, F or -.
+     * @param sourceOffset offset of the chunk in the input, DeadLetterWriter.UNKNOWN_OFFSET if it's not known
+     * @param fuzzy whether any of the digits was matched fuzzily
+     */
+    static void annotate(StringBuilder record, long sourceOffset, boolean fuzzy) {
+        record.append(ANNOTATION_SEPARATOR).append(sourceOffset).append(ANNOTATION_SEPARATOR).append(fuzzy ? FUZZY_MARK : EXACT_MARK);
+    }
+
+    /** @param records annotated records, see annotate(). Plain text records are taken too, with an unknown offset. */
+    @Override
+    public void write(CharSequence records) throws IOException {
+        int lineStart = 0;
+        for (int i = 0; i < records.length(); i++) {
+            if (records.charAt(i) == '\n') {
+                writeRecord(records, lineStart, i > lineStart && records.charAt(i - 1) == '\r' ? i - 1 : i);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < records.length()) {
+            writeRecord(records, lineStart, records.length());
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain(buffer, channel);
+        drain(indexBuffer, indexChannel);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            try {
+                channel.close();
+            } finally {
+                indexChannel.close();
+            }
+        }
+    }
+
+    /** @return the number of records written so far */
+    public long numberOfRecords() {
+        return numberOfRecords;
+    }
+
+    private void writeRecord(CharSequence records, int start, int end) throws IOException {
+        int numberEnd = start;
+        while (numberEnd < end && records.charAt(numberEnd) != ANNOTATION_SEPARATOR) {
+            numberEnd++;
+        }
+        long sourceOffset = DeadLetterWriter.UNKNOWN_OFFSET;
+        int flags = 0;
+        if (numberEnd < end) {
+            final int offsetEnd = indexOf(records, ANNOTATION_SEPARATOR, numberEnd + 1, end);
+            sourceOffset = parseLong(records, numberEnd + 1, offsetEnd);
+            if (offsetEnd + 1 < end && records.charAt(offsetEnd + 1) == FUZZY_MARK) {
+                flags |= BinaryRecord.FUZZY;
+            }
+        }
+        int digitsEnd = numberEnd;
+        if (endsWith(records, start, digitsEnd, DigitalNumberScanner.ILLEGAL_INPUT_INDICATOR)) {
+            flags |= BinaryRecord.ILLEGAL;
+            digitsEnd -= DigitalNumberScanner.ILLEGAL_INPUT_INDICATOR.length();
+        }
+        int numberOfDigits = digitsEnd - start;
+        if (numberOfDigits > maxDigits) {
+            flags |= BinaryRecord.TRUNCATED;
+            numberOfDigits = maxDigits;
+        }
+
+        if (buffer.remaining() < recordSize) {
+            drain(buffer, channel);
+        }
+        final int recordStart = buffer.position();
+        int illegalPositions = 0;
+        int packed = 0;
+        buffer.position(recordStart + BinaryRecord.DIGITS_POSITION);
+        for (int i = 0; i < (maxDigits + 1) / 2 * 2; i++) {
+            int nibble = 0;
+            if (i < numberOfDigits) {
+                final char symbol = records.charAt(start + i);
+                nibble = symbol < nibbles.length ? nibbles[symbol] : NO_NIBBLE;
+                if (nibble == NO_NIBBLE) {
+                    nibble = BinaryRecord.UNRECOGNIZED_NIBBLE;
+                    illegalPositions |= 1 << i;
+                }
+            }
+            packed = packed << 4 | nibble;
+            if (i % 2 == 1) {
+                buffer.put((byte) packed);
+                packed = 0;
+            }
+        }
+        buffer.putLong(recordStart, sourceOffset)
+                .putInt(recordStart + Long.BYTES, illegalPositions)
+                .put(recordStart + Long.BYTES + Integer.BYTES, (byte) numberOfDigits)
+                .put(recordStart + Long.BYTES + Integer.BYTES + 1, (byte) flags);
+
+        if (numberOfRecords % indexInterval == 0) {
+            if (indexBuffer.remaining() < Long.BYTES) {
+                drain(indexBuffer, indexChannel);
+            }
+            indexBuffer.putLong(sourceOffset);
+        }
+        numberOfRecords++;
+    }
+
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static int indexOf(CharSequence text, char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /** Long.parseLong without the substring, there's one per record. */
+    private static long parseLong(CharSequence text, int start, int end) throws IOException {
+        final boolean negative = start < end && text.charAt(start) == '-';
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            final int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException(String.format("Bad source offset in the record %s", text.subSequence(start, end)));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean endsWith(CharSequence text, int start, int end, String suffix) {
+        if (end - start < suffix.length()) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (text.charAt(end - suffix.length() + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,116 @@
+package com.olegpro.sc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One scanned number of the binary output, see BinaryOutputSink, and the layout of the file.
+ * <p>
+ * The file is a header followed by records of the same size, so record N is at HEADER_SIZE + N * recordSize.
+ * All the numbers are big endian, same as DataInputStream reads them.
+ * <pre>
+ * header, HEADER_SIZE bytes:
+ *   int    magic "DNSB"
+ *   short  version
+ *   short  record size
+ *   byte   max number of digits in a record
+ *   byte   number of symbols
+ *   byte[] the symbols, MAX_SYMBOLS of them, ASCII, padded with zeros
+ *   int    index interval, see BinaryOutputSink
+ * record:
+ *   long   offset of the chunk in the input, -1 if it's not known, e.g. for records written without an offset
+ *   int    illegal positions, bit i is set if digit i wasn't recognized
+ *   byte   number of digits
+ *   byte   flags: FUZZY, ILLEGAL, TRUNCATED
+ *   byte[] the digits, two in a byte, high nibble first. A nibble is the index of the symbol in the header, UNRECOGNIZED_NIBBLE for "?"
+ * </pre>
+ */
+public class BinaryRecord {
+    static final int MAGIC = 0x444E5342;
+    static final short VERSION = 1;
+    static final int MAX_SYMBOLS = 15;
+    static final int UNRECOGNIZED_NIBBLE = 0xF;
+    static final int MAX_DIGITS = Integer.SIZE;
+    static final int HEADER_SIZE = 32;
+    static final int DIGITS_POSITION = Long.BYTES + Integer.BYTES + 2;
+    /** Fuzzy matching changed at least one of the digits. */
+    static final int FUZZY = 1;
+    /** At least one digit wasn't recognized, i.e. the text record has the ILL indicator. */
+    static final int ILLEGAL = 2;
+    /** The number had more digits than fit into a record, only the first ones are there. */
+    static final int TRUNCATED = 4;
+    private final long sourceOffset;
+    private final String digits;
+    private final int illegalPositions;
+    private final int flags;
+
+    BinaryRecord(long sourceOffset, String digits, int illegalPositions, int flags) {
+        this.sourceOffset = sourceOffset;
+        this.digits = digits;
+        this.illegalPositions = illegalPositions;
+        this.flags = flags;
+    }
+
+    static int recordSize(int maxDigits) {
+        return DIGITS_POSITION + (maxDigits + 1) / 2;
+    }
+
+    /**
+     * @param buffer positioned at the record, the position is left after it
+     * @param symbols from the header
+     */
+    static BinaryRecord read(ByteBuffer buffer, char[] symbols, int maxDigits) {
+        final long sourceOffset = buffer.getLong();
+        final int illegalPositions = buffer.getInt();
+        final int numberOfDigits = buffer.get();
+        final int flags = buffer.get();
+        final char[] digits = new char[numberOfDigits];
+        int packed = 0;
+        for (int i = 0; i < (maxDigits + 1) / 2 * 2; i++) {
+            if (i % 2 == 0) {
+                packed = buffer.get();
+            }
+            final int nibble = i % 2 == 0 ? (packed >>> 4) & 0xF : packed & 0xF;
+            if (i < numberOfDigits) {
+                digits[i] = nibble == UNRECOGNIZED_NIBBLE ? DigitalNumberScanner.UNRECOGNIZED_SYMBOL_SIGN.charAt(0) : symbols[nibble];
+            }
+        }
+        return new BinaryRecord(sourceOffset, new String(digits), illegalPositions, flags);
+    }
+
+    /** @return offset of the chunk in the input, -1 if it's not known */
+    public long getSourceOffset() {
+        return sourceOffset;
+    }
+
+    /** @return the number with "?" for the digits that weren't recognized */
+    public String getDigits() {
+        return digits;
+    }
+
+    /** @return bit i is set if digit i wasn't recognized */
+    public int getIllegalPositions() {
+        return illegalPositions;
+    }
+
+    public boolean isFuzzy() {
+        return (flags & FUZZY) != 0;
+    }
+
+    public boolean isIllegal() {
+        return (flags & ILLEGAL) != 0;
+    }
+
+    public boolean isTruncated() {
+        return (flags & TRUNCATED) != 0;
+    }
+
+    /** @return the same line the text output has, without the record separator */
+    public String toText() {
+        return isIllegal() ? digits + DigitalNumberScanner.ILLEGAL_INPUT_INDICATOR : digits;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s at %d%s", toText(), sourceOffset, isFuzzy() ? " (fuzzy)" : "");
+    }
+}
@@ -0,0 +1,155 @@
+package com.olegpro.sc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Reads the output of the BinaryOutputSink back. The file is memory-mapped, in regions of up to 2G of whole records,
+ * so read(n) is a position computation and streaming the records is a pass over the mapped pages.
+ * A trailing partial record, e.g. from a scan that was killed, is left out.
+ * Thread-safe once opened.
+ */
+public class BinaryRecordReader implements Closeable {
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final int recordsPerRegion;
+    private final char[] symbols;
+    private final int maxDigits;
+    private final int recordSize;
+    private final int indexInterval;
+    private final long numberOfRecords;
+    /** Source offset of every indexInterval-th record, null if there is no index file. */
+    private final long[] index;
+
+    private BinaryRecordReader(FileChannel channel, ByteBuffer header, long[] index) throws IOException {
+        this.channel = channel;
+        this.recordSize = header.getShort(6);
+        this.maxDigits = header.get(8);
+        this.symbols = new char[header.get(9)];
+        for (int nibble = 0; nibble < symbols.length; nibble++) {
+            symbols[nibble] = (char) header.get(10 + nibble);
+        }
+        this.indexInterval = header.getInt(10 + BinaryRecord.MAX_SYMBOLS);
+        this.numberOfRecords = (channel.size() - BinaryRecord.HEADER_SIZE) / recordSize;
+        this.recordsPerRegion = Integer.MAX_VALUE / recordSize;
+        this.regions = new MappedByteBuffer[(int) ((numberOfRecords + recordsPerRegion - 1) / recordsPerRegion)];
+        for (int region = 0; region < regions.length; region++) {
+            final long firstRecord = (long) region * recordsPerRegion;
+            final long regionRecords = Math.min(recordsPerRegion, numberOfRecords - firstRecord);
+            regions[region] = channel.map(FileChannel.MapMode.READ_ONLY, BinaryRecord.HEADER_SIZE + firstRecord * recordSize, regionRecords * recordSize);
+        }
+        this.index = index;
+    }
+
+    /**
+     * Takes the index from &lt;file&gt;.idx if it's there.
+     * @throws IOException if it's not a binary output file or it's of another version
+     */
+    public static BinaryRecordReader open(String path) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(BinaryRecord.HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    break;
+                }
+            }
+            if (header.hasRemaining() || header.getInt(0) != BinaryRecord.MAGIC) {
+                throw new IOException(String.format("%s is not a binary output file", path));
+            }
+            if (header.getShort(4) != BinaryRecord.VERSION) {
+                throw new IOException(String.format("%s is of version %d, only %d can be read", path, header.getShort(4), BinaryRecord.VERSION));
+            }
+            return new BinaryRecordReader(channel, header, readIndex(Paths.get(path + BinaryOutputSink.INDEX_FILE_SUFFIX)));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long numberOfRecords() {
+        return numberOfRecords;
+    }
+
+    /** @return the symbols the digits can be, in the order of the nibbles */
+    public String symbols() {
+        return new String(symbols);
+    }
+
+    /**
+     * @param recordNumber from 0, in the order of the input
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public BinaryRecord read(long recordNumber) {
+        if (recordNumber < 0 || recordNumber >= numberOfRecords) {
+            throw new IndexOutOfBoundsException(String.format("Record %d, there are %d", recordNumber, numberOfRecords));
+        }
+        // duplicate() keeps the position per call, the mapping is shared
+        final ByteBuffer region = regions[(int) (recordNumber / recordsPerRegion)].duplicate();
+        region.position((int) (recordNumber % recordsPerRegion) * recordSize);
+        return BinaryRecord.read(region, symbols, maxDigits);
+    }
+
+    /** @return all the records in order, read as the stream goes */
+    public Stream<BinaryRecord> records() {
+        return LongStream.range(0, numberOfRecords).mapToObj(this::read);
+    }
+
+    /**
+     * The index narrows it down to indexInterval records, the rest is a binary search over them.
+     * @return number of the first record of a chunk at the source offset or after it, numberOfRecords() if there is none
+     */
+    public long findRecord(long sourceOffset) {
+        long low = 0;
+        long high = numberOfRecords;
+        if (null != index) {
+            int entry = -1;
+            for (int bit = Integer.highestOneBit(Math.max(index.length, 1)); bit > 0; bit >>>= 1) {
+                if (entry + bit < index.length && index[entry + bit] < sourceOffset) {
+                    entry += bit;
+                }
+            }
+            // every record before entry * indexInterval is before the offset, the first one of entry + 1 isn't
+            low = Math.max(0, (long) entry * indexInterval);
+            high = Math.min(numberOfRecords, (long) (entry + 1) * indexInterval);
+        }
+        while (low < high) {
+            final long middle = (low + high) >>> 1;
+            if (read(middle).getSourceOffset() < sourceOffset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** @return null if there is no index */
+    private static long[] readIndex(Path indexPath) throws IOException {
+        if (!Files.exists(indexPath)) {
+            return null;
+        }
+        final ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+        if (index.remaining() < BinaryOutputSink.INDEX_HEADER_SIZE || index.getInt() != BinaryOutputSink.INDEX_MAGIC) {
+            throw new IOException(String.format("%s is not an index of a binary output file", indexPath));
+        }
+        index.getInt();
+        final long[] entries = new long[index.remaining() / Long.BYTES];
+        index.asLongBuffer().get(entries);
+        return entries;
+    }
+}
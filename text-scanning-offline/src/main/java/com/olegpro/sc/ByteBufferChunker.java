@@ -0,0 +1,132 @@
+package com.olegpro.sc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ * Byte level equivalent of {@link TextChunker}.
+ * Breaks the buffer by the same rule as TextChunker.CHUNK_DELIMITER_REGEXP_PATTERN:
+ * a new line, followed by any amount of whitespace, followed by a new line.
+ * Works directly on the (memory-mapped) buffer, so there is no Scanner and no single reader thread involved.
+ */
+public class ByteBufferChunker {
+    /** The input is plain ASCII, this charset maps every byte to exactly one char. */
+    static final Charset CHUNK_CHARSET = StandardCharsets.ISO_8859_1;
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+    private int chunkStart = -1;
+    private int chunkEnd = -1;
+
+    public ByteBufferChunker(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    public boolean hasNext() {
+        if (chunkStart < 0) {
+            advance();
+        }
+        return chunkStart < chunkEnd;
+    }
+
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String chunk = toString(buffer, chunkStart, chunkEnd);
+        chunkStart = -1;
+        return chunk;
+    }
+
+    /** Position of the first byte of the chunk next() would return. Only valid after hasNext() returned true. */
+    public int chunkStart() {
+        return chunkStart;
+    }
+
+    /** Position right after the last byte of the chunk next() would return. Only valid after hasNext() returned true. */
+    public int chunkEnd() {
+        return chunkEnd;
+    }
+
+    /** Moves past the chunk without turning it into a String. Use chunkStart() and chunkEnd() to work on its bytes. */
+    public void skip() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        chunkStart = -1;
+    }
+
+    static String toString(ByteBuffer buffer, int start, int end) {
+        byte[] chunk = new byte[end - start];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = buffer.get(start + i);
+        }
+        return new String(chunk, CHUNK_CHARSET);
+    }
+
+    /** Skips the delimiter at the current position (if any) and finds the boundaries of the next chunk. */
+    private void advance() {
+        if (position < limit && buffer.get(position) == '\n') {
+            int delimiterEnd = delimiterEnd(buffer, position, limit);
+            if (delimiterEnd >= 0) {
+                position = delimiterEnd;
+            }
+        }
+        chunkStart = position;
+        while (position < limit) {
+            if (buffer.get(position) == '\n' && delimiterEnd(buffer, position, limit) >= 0) {
+                break;
+            }
+            position++;
+        }
+        chunkEnd = position;
+    }
+
+    /**
+     * @param buffer buffer to look at
+     * @param newLinePosition position of the new line character the delimiter would start with
+     * @param limit position to stop looking at
+     * @return position right after the last new line of the delimiter or -1 if there is no delimiter at this position.
+     * As the regular expression is greedy, the delimiter spans up to the last new line in the whitespace run.
+     */
+    static int delimiterEnd(ByteBuffer buffer, int newLinePosition, int limit) {
+        int lastNewLine = -1;
+        for (int i = newLinePosition + 1; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n') {
+                lastNewLine = i;
+            } else if (!isWhitespace(b)) {
+                break;
+            }
+        }
+        return lastNewLine < 0 ? -1 : lastNewLine + 1;
+    }
+
+    /**
+     * @param buffer buffer to look at
+     * @param position where to start looking
+     * @param limit position to stop looking at
+     * @return position right after the first complete delimiter found at or after the given position, or the limit.
+     * Same as MappedFileSplitter.nextChunkStart, but within a buffer that's already mapped.
+     */
+    static int nextChunkStart(ByteBuffer buffer, int position, int limit) {
+        for (int i = position; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                int delimiterEnd = delimiterEnd(buffer, i, limit);
+                if (delimiterEnd >= 0) {
+                    return delimiterEnd;
+                }
+            }
+        }
+        return limit;
+    }
+
+    /** Same set of characters as \s in java.util.regex. */
+    static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+}
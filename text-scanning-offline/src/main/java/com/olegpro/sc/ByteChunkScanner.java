@@ -0,0 +1,227 @@
+package com.olegpro.sc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Scans a chunk directly from the bytes of the input, without splitting it into strings.
+ * The rows are located once, then every digit glyph is encoded from fixed offsets and looked up in the GlyphClassifier table.
+ * If the number of digits isn't fixed, the length of the first row gives it for the chunk, there's nothing to set up per chunk.
+ * With a SwarGlyphEncoder all the glyphs of the chunk are encoded at once, eight bytes at a time,
+ * glyph by glyph only if the chunk has characters outside of the alphabet or there is no encoder.
+ * Recognized characters are appended straight to the output, so there is no allocation per digit.
+ * Holds reusable state, so it's meant to be used by one thread, e.g. one instance per task.
+ * Produces exactly the same output as DigitalNumberScanner.scanChunk(String...), the source offset included with the BINARY output format.
+ * Corrupt chunks are reported back to the caller along with the rejection reason,
+ * anything unusual (e.g. stray carriage returns) is reported back to be scanned the old way.
+ */
+public class ByteChunkScanner {
+    static final String RECORD_SEPARATOR = String.format("%n");
+    private final DigitalNumberScanner scanner;
+    private final int digitWidth;
+    private final int digitHeight;
+    private final GlyphClassifier glyphClassifier;
+    private final SwarGlyphEncoder glyphEncoder;
+    private final int[] rowStarts;
+    // grow to the widest chunk seen
+    private int[] codes;
+    private long[] columnWords;
+    private int numberOfRows;
+    /** Every row has to be as long as this, -1 if the first row isn't made of whole glyphs. */
+    private int rowLength;
+    private int wrongLengthRow;
+    /** Text of the wrong length row, only taken for the corrupt chunks. */
+    private String wrongLengthRowText;
+    private boolean unusual;
+    /** A glyph of the chunk being scanned was matched fuzzily. */
+    private boolean fuzzyInChunk;
+    // counted here and added to the ScanMetrics once per region. Only the rare glyphs are counted one by one,
+    // the exact ones are what's left of the scanned chunks. The ones that went to the String path are counted by it.
+    private long scannedGlyphs;
+    private long fuzzyGlyphs;
+    private long unrecognizedGlyphs;
+    private long stringPathGlyphs;
+
+    /**
+     * @param numberOfDigitsInAChunk 0 takes it from the first row of every chunk
+     * @param glyphEncoder null encodes glyph by glyph
+     */
+    public ByteChunkScanner(DigitalNumberScanner scanner, int digitWidth, int digitHeight, int numberOfDigitsInAChunk,
+                            GlyphClassifier glyphClassifier, SwarGlyphEncoder glyphEncoder) {
+        this.scanner = scanner;
+        this.digitWidth = digitWidth;
+        this.digitHeight = digitHeight;
+        this.glyphClassifier = glyphClassifier;
+        this.glyphEncoder = glyphEncoder;
+        this.rowStarts = new int[digitHeight];
+        allocateCodes(Math.max(1, numberOfDigitsInAChunk));
+    }
+
+    /**
+     * @param buffer input
+     * @param start position of the first byte of the chunk
+     * @param end position right after the last byte of the chunk
+     * @param output where the recognized number followed by the record separator is appended
+     * @return false if the chunk isn't a well formed digital number. Nothing is written to the output in that case.
+     */
+    public boolean scan(ByteBuffer buffer, int start, int end, StringBuilder output) {
+        return scan(buffer, start, end, DeadLetterWriter.UNKNOWN_OFFSET, output);
+    }
+
+    /**
+     * Same as scan(buffer, start, end, output).
+     * @param sourceOffset offset of the chunk in the input, it only goes into the record with the BINARY output format
+     */
+    public boolean scan(ByteBuffer buffer, int start, int end, long sourceOffset, StringBuilder output) {
+        if (!locateRows(buffer, start, end)) {
+            return false;
+        }
+        fuzzyInChunk = false;
+        final int numberOfDigits = rowLength / digitWidth;
+        if (codes.length < numberOfDigits) {
+            allocateCodes(numberOfDigits);
+        }
+        final boolean encoded = null != glyphEncoder && glyphEncoder.encode(buffer, rowStarts, numberOfDigits, columnWords, codes);
+        boolean hadIllegalSymbols = false;
+        for (int digitNumber = 0; digitNumber < numberOfDigits; digitNumber++) {
+            char symbol = encoded ? classify(codes[digitNumber]) : recognize(buffer, digitNumber * digitWidth);
+            hadIllegalSymbols |= symbol == DigitalNumberScanner.UNRECOGNIZED_SYMBOL_SIGN.charAt(0);
+            output.append(symbol);
+        }
+        if (hadIllegalSymbols) {
+            output.append(DigitalNumberScanner.ILLEGAL_INPUT_INDICATOR);
+        }
+        if (scanner.outputFormat == ScannerConfiguration.OutputFormat.BINARY) {
+            BinaryOutputSink.annotate(output, sourceOffset, fuzzyInChunk);
+        }
+        output.append(RECORD_SEPARATOR);
+        scannedGlyphs += numberOfDigits;
+        return true;
+    }
+
+    private void allocateCodes(int numberOfDigits) {
+        codes = new int[numberOfDigits];
+        columnWords = null == glyphEncoder ? null : glyphEncoder.newColumnWords(numberOfDigits);
+    }
+
+    DigitalNumberScanner scanner() {
+        return scanner;
+    }
+
+    /** Adds the glyphs recognized since the last call to the metrics. */
+    void recordGlyphs(ScanMetrics metrics) {
+        final long exactGlyphs = scannedGlyphs - fuzzyGlyphs - unrecognizedGlyphs - stringPathGlyphs;
+        metrics.glyphsRecognized(exactGlyphs, fuzzyGlyphs, unrecognizedGlyphs);
+        scannedGlyphs = 0;
+        fuzzyGlyphs = 0;
+        unrecognizedGlyphs = 0;
+        stringPathGlyphs = 0;
+    }
+
+    /**
+     * @return why the last scan() returned false: the same reason the String path gives.
+     * Null if the chunk has something unusual, e.g. stray carriage returns, and has to go through the String path to tell.
+     */
+    public String rejectionReason() {
+        if (unusual) {
+            return null;
+        }
+        if (numberOfRows != digitHeight) {
+            return scanner.incorrectNumberOfLinesReason(numberOfRows);
+        }
+        return wrongLengthRow < 0 ? null : scanner.incorrectLineLengthReason(wrongLengthRowText, rowLength);
+    }
+
+    /**
+     * Fills in rowStarts and rowLength. Only accepts exactly digitHeight rows of the expected length, separated by \n or \r\n.
+     * A single trailing new line is allowed, same as String.split drops the trailing empty string.
+     * Goes through the whole chunk either way, so that the rejection reason is the same as the String path gives.
+     */
+    private boolean locateRows(ByteBuffer buffer, int start, int end) {
+        numberOfRows = 0;
+        wrongLengthRow = -1;
+        unusual = false;
+        int lineStart = start;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n') {
+                int lineEnd = (i > lineStart && buffer.get(i - 1) == '\r') ? i - 1 : i;
+                addRow(buffer, lineStart, lineEnd - lineStart);
+                lineStart = i + 1;
+            } else if (b == '\r' && (i + 1 == end || buffer.get(i + 1) != '\n')) {
+                unusual = true;
+                return false;
+            }
+        }
+        if (lineStart < end) {
+            addRow(buffer, lineStart, end - lineStart);
+        }
+        return numberOfRows == digitHeight && wrongLengthRow < 0;
+    }
+
+    private void addRow(ByteBuffer buffer, int rowStart, int length) {
+        if (numberOfRows == 0) {
+            rowLength = scanner.expectedLineLength(length);
+        }
+        if (numberOfRows < digitHeight) {
+            rowStarts[numberOfRows] = rowStart;
+        }
+        if (length != rowLength && wrongLengthRow < 0) {
+            wrongLengthRow = numberOfRows;
+            wrongLengthRowText = ByteBufferChunker.toString(buffer, rowStart, rowStart + length);
+        }
+        numberOfRows++;
+    }
+
+    private char recognize(ByteBuffer buffer, int offset) {
+        final int base = glyphClassifier.base();
+        int code = 0;
+        for (int row = 0; row < digitHeight && code >= 0; row++) {
+            final int rowOffset = rowStarts[row] + offset;
+            for (int column = 0; column < digitWidth; column++) {
+                final int cellValue = glyphClassifier.cellValue(buffer.get(rowOffset + column));
+                if (cellValue < 0) {
+                    code = -1;
+                    break;
+                }
+                code = code * base + cellValue;
+            }
+        }
+        if (code >= 0) {
+            return classify(code);
+        }
+        // Rare path, characters outside of the alphabet. It's fine to allocate here.
+        stringPathGlyphs++;
+        final char symbol = scanner.recognizeDigit(glyphToString(buffer, offset)).charAt(0);
+        // a glyph with characters outside of the alphabet can only be recognized fuzzily
+        fuzzyInChunk |= symbol != DigitalNumberScanner.UNRECOGNIZED_SYMBOL_SIGN.charAt(0);
+        return symbol;
+    }
+
+    private char classify(int code) {
+        scanner.delayArtificially();
+        final char symbol = glyphClassifier.classify(code);
+        return symbol == GlyphClassifier.UNRECOGNIZED ? recognizeUnknown(code) : symbol;
+    }
+
+    /** The glyph isn't one of the known ones, the fuzzy match if it's on. */
+    private char recognizeUnknown(int code) {
+        final char symbol = scanner.fuzzyMatchingMode ? glyphClassifier.nearestSymbol(code) : GlyphClassifier.UNRECOGNIZED;
+        if (symbol == GlyphClassifier.UNRECOGNIZED) {
+            unrecognizedGlyphs++;
+            return DigitalNumberScanner.UNRECOGNIZED_SYMBOL_SIGN.charAt(0);
+        }
+        fuzzyGlyphs++;
+        fuzzyInChunk = true;
+        return symbol;
+    }
+
+    private String glyphToString(ByteBuffer buffer, int offset) {
+        char[] glyph = new char[digitWidth * digitHeight];
+        for (int row = 0; row < digitHeight; row++) {
+            for (int column = 0; column < digitWidth; column++) {
+                glyph[row * digitWidth + column] = (char) (buffer.get(rowStarts[row] + offset + column) & 0xFF);
+            }
+        }
+        return new String(glyph);
+    }
+}
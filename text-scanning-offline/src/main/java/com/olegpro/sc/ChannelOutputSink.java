@@ -0,0 +1,125 @@
+package com.olegpro.sc;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Encodes the records straight into a direct ByteBuffer and writes it to the channel in large batches,
+ * i.e. when the buffer is full, on flush(), or after every record if flushOnRecord is set.
+ * Unlike System.out there is no lock and no flush per print.
+ * Not thread-safe, it's meant to be written to by one thread, e.g. the results aggregator.
+ */
+public class ChannelOutputSink implements OutputSink {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder;
+    private final boolean flushOnRecord;
+    private final boolean closeChannel;
+
+    /**
+     * @param channel where the bytes go
+     * @param bufferSize size of the batch
+     * @param flushOnRecord write every record out as soon as it's added, for when the output is followed live
+     * @param closeChannel whether close() closes the channel, e.g. not for the standard output
+     */
+    public ChannelOutputSink(WritableByteChannel channel, int bufferSize, boolean flushOnRecord, boolean closeChannel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.flushOnRecord = flushOnRecord;
+        this.closeChannel = closeChannel;
+    }
+
+    /** @return sink that creates or truncates the file */
+    public static ChannelOutputSink toFile(String outputFilePath) throws IOException {
+        return toFile(outputFilePath, 0, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param resumeOffset the file is truncated to this size and appended to, e.g. when resuming from a checkpoint. Zero is the same as toFile(path).
+     * @return sink that appends to the file from the offset
+     * @throws IOException if the file is shorter than the offset, i.e. the output the offset refers to is lost
+     */
+    public static ChannelOutputSink toFile(String outputFilePath, long resumeOffset) throws IOException {
+        return toFile(outputFilePath, resumeOffset, DEFAULT_BUFFER_SIZE);
+    }
+
+    /** Same as toFile(path, resumeOffset), with the buffer size from the configuration. */
+    public static ChannelOutputSink toFile(String outputFilePath, long resumeOffset, int bufferSize) throws IOException {
+        if (resumeOffset == 0) {
+            FileChannel channel = FileChannel.open(Paths.get(outputFilePath),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            return new ChannelOutputSink(channel, bufferSize, false, true);
+        }
+        FileChannel channel = FileChannel.open(Paths.get(outputFilePath), StandardOpenOption.WRITE);
+        if (channel.size() < resumeOffset) {
+            channel.close();
+            throw new IOException(String.format("%s is shorter than the offset %d to resume from", outputFilePath, resumeOffset));
+        }
+        channel.truncate(resumeOffset);
+        channel.position(resumeOffset);
+        return new ChannelOutputSink(channel, bufferSize, false, true);
+    }
+
+    /** @return sink writing to the standard output, bypassing System.out. Closing it doesn't close the standard output. */
+    public static ChannelOutputSink toStandardOutput() {
+        return new ChannelOutputSink(Channels.newChannel(new FileOutputStream(FileDescriptor.out)), DEFAULT_BUFFER_SIZE, false, false);
+    }
+
+    @Override
+    public void write(CharSequence records) throws IOException {
+        CharBuffer input = CharBuffer.wrap(records);
+        while (true) {
+            CoderResult result = encoder.encode(input, buffer, false);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                break;
+            }
+        }
+        if (flushOnRecord) {
+            drain();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (closeChannel) {
+                channel.close();
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,128 @@
+package com.olegpro.sc;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Dead letter file (a-la DLQ) for the corrupt chunks, UC3 in the README.
+ * The chunks are written as they were in the input, separated by empty lines, so the file can be corrected and re-processed as it is.
+ * Alongside there is an index file with one line per chunk: position in the dead letter file, offset in the input, length and the rejection reason.
+ * When the input is a file channel, e.g. in the memory-mapped mode, the bytes are transferred from it directly, without going through Strings.
+ * Tasks write concurrently, so the chunks are in the order they were rejected in, the input offset tells where they came from.
+ */
+public class DeadLetterWriter implements Closeable {
+    static final String INDEX_FILE_SUFFIX = ".index";
+    /** For the chunks that don't come from a file, e.g. scanChunk(String) called directly. */
+    static final long UNKNOWN_OFFSET = -1;
+    private static final int COPY_BUFFER_SIZE = 8192;
+    private static final byte[] CHUNK_DELIMITER = "\n\n".getBytes(ByteBufferChunker.CHUNK_CHARSET);
+    private final FileChannel deadLetterChannel;
+    private final Writer indexWriter;
+    private long numberOfChunks = 0;
+
+    public DeadLetterWriter(FileChannel deadLetterChannel, Writer indexWriter) {
+        this.deadLetterChannel = deadLetterChannel;
+        this.indexWriter = indexWriter;
+    }
+
+    /** @return writer creating or truncating the dead letter file and its index */
+    public static DeadLetterWriter toFile(String deadLetterFilePath) throws IOException {
+        FileChannel deadLetterChannel = FileChannel.open(Paths.get(deadLetterFilePath),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        FileChannel indexChannel = FileChannel.open(Paths.get(deadLetterFilePath + INDEX_FILE_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new DeadLetterWriter(deadLetterChannel, new BufferedWriter(Channels.newWriter(indexChannel, ByteBufferChunker.CHUNK_CHARSET.name())));
+    }
+
+    /**
+     * Copies the chunk straight from the input channel.
+     * @param input the input file
+     * @param offset position of the chunk in the input
+     * @param length length of the chunk in bytes
+     * @param rejectionReason why it can't be scanned
+     */
+    public synchronized void write(FileChannel input, long offset, long length, String rejectionReason) throws IOException {
+        final long position = startChunk();
+        long transferred = 0;
+        while (transferred < length) {
+            final long count = input.transferTo(offset + transferred, length - transferred, deadLetterChannel);
+            if (count == 0) {
+                // nothing transferred, e.g. the input was truncated, transferTo would return 0 forever
+                copy(input, offset + transferred, length - transferred);
+                break;
+            }
+            transferred += count;
+        }
+        writeIndex(position, offset, length, rejectionReason);
+    }
+
+    /**
+     * @param chunk the chunk as read by the Scanner
+     * @param offset position of the chunk in the input or UNKNOWN_OFFSET
+     * @param rejectionReason why it can't be scanned
+     */
+    public synchronized void write(String chunk, long offset, String rejectionReason) throws IOException {
+        final long position = startChunk();
+        final ByteBuffer bytes = ByteBuffer.wrap(chunk.getBytes(ByteBufferChunker.CHUNK_CHARSET));
+        final long length = bytes.remaining();
+        writeFully(bytes);
+        writeIndex(position, offset, length, rejectionReason);
+    }
+
+    public synchronized long getNumberOfChunks() {
+        return numberOfChunks;
+    }
+
+    /** @return position of the chunk in the dead letter file */
+    private long startChunk() throws IOException {
+        if (numberOfChunks > 0) {
+            writeFully(ByteBuffer.wrap(CHUNK_DELIMITER));
+        }
+        numberOfChunks++;
+        return deadLetterChannel.position();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            deadLetterChannel.write(bytes);
+        }
+    }
+
+    /** Same as transferTo, by reading and writing. */
+    private void copy(FileChannel input, long offset, long length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, COPY_BUFFER_SIZE));
+        long copied = 0;
+        while (copied < length) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), length - copied));
+            final int read = input.read(buffer, offset + copied);
+            if (read < 0) {
+                throw new EOFException(String.format("The input ends at %d, before the end of the chunk at %d", offset + copied, offset + length));
+            }
+            buffer.flip();
+            writeFully(buffer);
+            copied += read;
+        }
+    }
+
+    private void writeIndex(long position, long offset, long length, String rejectionReason) throws IOException {
+        indexWriter.write(String.format("%d\t%d\t%d\t%s%n", position, offset, length, rejectionReason));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            indexWriter.close();
+        } finally {
+            deadLetterChannel.close();
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package com.olegpro.sc;
 
-import org.apache.commons.lang3.StringUtils;
-
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
@@ -16,7 +19,7 @@ import java.util.function.Consumer;
  * It's the main class. It loads the property file and the map of known digits, initializes the application.
  * Servers as the entry point.
  * Takes the file to be processed as a command line argument.
- * Currently only supports single file. Can be easily extended to multiple files.
+ * Scans one file per scanFile() call, App with "batch" scans many files through a BatchScanner, with these settings and one pool for all of them.
  */
 public class DigitalNumberScanner {
     static final String DIGITS_MAP_FILE_CLASSPATH_RESOURCE_PATH = "/digits";
@@ -25,51 +28,106 @@ public class DigitalNumberScanner {
     static final String LINE_DELIMITER_REGEXP = "\\r?\\n";
     static final String UNRECOGNIZED_SYMBOL_SIGN = "?";
     public static final String ILLEGAL_INPUT_INDICATOR = "ILL";
-    public static final int SYMBOL_RECOGNITION_ARTIFICIAL_SLOWDOWN_MICROSECONDS = 1;
+    // 0 until inferred from the digits map in initDigitsMap()
     private int digitWidth;
     private int digitHeight;
-    private int numberOfDigitsInAChunk;
     private int numberOfDigitsInDigitsMap;
+    /** 0 takes it from the first line of every chunk, see expectedLineLength(). */
+    private int numberOfDigitsInAChunk;
     private int chunkLineLength;
-    private int numberOfChunksInBlock = 100;// TODO to property file
-    private int numberOfPreFetchBlocks = 15;// TODO to property file
-    private int numberOfParallelBlocksProcessed = 5;// TODO to property file
+    // the settings below come from the ScannerConfiguration in init(), tests set them directly
+    int numberOfChunksInBlock;
+    int numberOfPreFetchBlocks;
+    int numberOfParallelBlocksProcessed;
+    long maxMappedRegionSize;
+    int numberOfBlocksBetweenCheckpoints;
+    int maxBytesInFlight;
+    int forkJoinLeafSize;
+    int numberOfForkJoinThreads;
+    long targetBlockLatencyMillis;
+    int minChunksInBlock;
+    int maxChunksInBlock;
+    int maxPrefetchDepth;
+    int outputBufferSize;
+    int recognitionDelayMicroseconds;
+    long followPollIntervalMillis;
+    long followIdleTimeoutMillis;
+    int binaryMaxDigits;
+    int binaryIndexInterval;
 
 
     private DigitReader digitReader;
     private Map<String, String> digitsMap;
-    Consumer<String> dataOutputProvider = System.out::print;
+    private GlyphClassifier glyphClassifier;
+    /** Null if the glyphs don't fit it, see SwarGlyphEncoder.create. */
+    private SwarGlyphEncoder glyphEncoder;
+    OutputSink dataOutputProvider = ChannelOutputSink.toStandardOutput();
     Consumer<String> logOutputProvider = System.out::print;
+    /** Shared by all the threads and all the scans of this scanner. */
+    ScanMetrics metrics = new ScanMetrics();
+    /** Corrupt chunks go here instead of the log when it's set. */
+    DeadLetterWriter deadLetterWriter = null;
     boolean fuzzyMatchingMode = false;
+    /** ByteChunkScanner encodes the whole chunk at once with the SwarGlyphEncoder, rather than glyph by glyph. */
+    boolean swarRecognition = true;
+    /** scanFileParallel runs a virtual thread per block, limited by maxBytesInFlight rather than by numberOfParallelBlocksProcessed. */
+    boolean virtualThreads = false;
+    /** scanFileParallel tunes the block size and the prefetch depth from the measured block latency, see AdaptiveBlockSizer. */
+    boolean adaptiveBlockSize = false;
     boolean delayArtificially = false;
+    /** With BINARY every record carries the source offset and the fuzzy flag for the BinaryOutputSink, see BinaryOutputSink.annotate. */
+    ScannerConfiguration.OutputFormat outputFormat = ScannerConfiguration.OutputFormat.TEXT;
 
     /**
-     * Reads in the application properties as well as the digit symbol definitions.
+     * Reads in the application properties with the defaults only, as well as the digit symbol definitions.
      * @throws Exception and wraps any specific exception occurring during the initialization into it.
      */
     void init() throws InitException {
-        initProperties();
+        init(ScannerConfiguration.defaults());
+    }
+
+    /**
+     * Same as init(), with the settings layered and validated by the ScannerConfiguration.
+     * @throws Exception and wraps any specific exception occurring during the initialization into it.
+     */
+    void init(ScannerConfiguration configuration) throws InitException {
+        initProperties(configuration);
         initDigitsMap();
     }
 
-    private void initProperties() throws InitException {
-        try (
-                final InputStream propertiesFileInputStream =
-                        this.getClass().getResourceAsStream(APP_PROPERTIES_CLASSPATH_RESOURCE_PATH)) {
-            final Properties properties = new Properties();
-            properties.load(propertiesFileInputStream);
-            digitWidth = Integer.valueOf(properties.getProperty("digital.number.scanner.digit.width"));
-            digitHeight = Integer.valueOf(properties.getProperty("digital.number.scanner.digit.height"));
-            numberOfDigitsInDigitsMap = Integer.valueOf(properties.getProperty("digital.number.scanner.map.numberOfDigits"));
-            numberOfDigitsInAChunk = Integer.valueOf(properties.getProperty("digital.number.scanner.chunk.numberOfDigits"));
-            chunkLineLength = numberOfDigitsInAChunk * digitWidth;
-            digitReader = new DigitReader(digitWidth, digitHeight);
-        } catch (Exception e) {
-            throw new InitException(e);
-        }
+    private void initProperties(ScannerConfiguration configuration) {
+        digitWidth = configuration.getInt(ScannerConfiguration.Setting.DIGIT_WIDTH);
+        digitHeight = configuration.getInt(ScannerConfiguration.Setting.DIGIT_HEIGHT);
+        numberOfDigitsInDigitsMap = configuration.getInt(ScannerConfiguration.Setting.MAP_NUMBER_OF_DIGITS);
+        numberOfDigitsInAChunk = configuration.getInt(ScannerConfiguration.Setting.CHUNK_NUMBER_OF_DIGITS);
+        numberOfChunksInBlock = configuration.getInt(ScannerConfiguration.Setting.BLOCK_NUMBER_OF_CHUNKS);
+        numberOfPreFetchBlocks = configuration.getInt(ScannerConfiguration.Setting.BLOCK_NUMBER_OF_PRE_FETCH_BLOCKS);
+        numberOfParallelBlocksProcessed = configuration.getInt(ScannerConfiguration.Setting.PARALLEL_NUMBER_OF_THREADS);
+        virtualThreads = configuration.getBoolean(ScannerConfiguration.Setting.PARALLEL_VIRTUAL_THREADS);
+        adaptiveBlockSize = configuration.getBoolean(ScannerConfiguration.Setting.BLOCK_ADAPTIVE);
+        targetBlockLatencyMillis = configuration.getInt(ScannerConfiguration.Setting.BLOCK_ADAPTIVE_TARGET_LATENCY_MILLIS);
+        minChunksInBlock = configuration.getInt(ScannerConfiguration.Setting.BLOCK_ADAPTIVE_MIN_NUMBER_OF_CHUNKS);
+        maxChunksInBlock = configuration.getInt(ScannerConfiguration.Setting.BLOCK_ADAPTIVE_MAX_NUMBER_OF_CHUNKS);
+        maxPrefetchDepth = configuration.getInt(ScannerConfiguration.Setting.BLOCK_ADAPTIVE_MAX_PRE_FETCH_BLOCKS);
+        maxBytesInFlight = configuration.getInt(ScannerConfiguration.Setting.IN_FLIGHT_MAX_SIZE);
+        numberOfBlocksBetweenCheckpoints = configuration.getInt(ScannerConfiguration.Setting.CHECKPOINT_NUMBER_OF_BLOCKS_BETWEEN);
+        maxMappedRegionSize = configuration.getInt(ScannerConfiguration.Setting.MAPPED_MAX_REGION_SIZE);
+        forkJoinLeafSize = configuration.getInt(ScannerConfiguration.Setting.FORKJOIN_LEAF_SIZE);
+        numberOfForkJoinThreads = configuration.getInt(ScannerConfiguration.Setting.FORKJOIN_NUMBER_OF_THREADS);
+        outputBufferSize = configuration.getInt(ScannerConfiguration.Setting.OUTPUT_BUFFER_SIZE);
+        outputFormat = configuration.getOutputFormat();
+        binaryMaxDigits = configuration.getInt(ScannerConfiguration.Setting.OUTPUT_BINARY_MAX_DIGITS);
+        binaryIndexInterval = configuration.getInt(ScannerConfiguration.Setting.OUTPUT_BINARY_INDEX_INTERVAL);
+        fuzzyMatchingMode = configuration.getBoolean(ScannerConfiguration.Setting.RECOGNITION_FUZZY);
+        swarRecognition = configuration.getBoolean(ScannerConfiguration.Setting.RECOGNITION_SWAR);
+        delayArtificially = configuration.getBoolean(ScannerConfiguration.Setting.RECOGNITION_DELAY);
+        recognitionDelayMicroseconds = configuration.getInt(ScannerConfiguration.Setting.RECOGNITION_DELAY_MICROSECONDS);
+        followPollIntervalMillis = configuration.getInt(ScannerConfiguration.Setting.FOLLOW_POLL_INTERVAL_MILLIS);
+        followIdleTimeoutMillis = TimeUnit.SECONDS.toMillis(configuration.getInt(ScannerConfiguration.Setting.FOLLOW_IDLE_TIMEOUT_SECONDS));
     }
 
     /** It will open the file, chunk it and process each chunk independently. Even if the chunk fails to process, others would still be attempted.
+     *  The input is read as ISO_8859_1, same as in the mapped mode, so that the offsets of the chunks are in bytes.
      * @param inputFilePath
      * @throws ScanException
      */
@@ -77,16 +135,18 @@ public class DigitalNumberScanner {
         TextFileChunker inputFileChunker = null;
         try {
             logOutputProvider.accept(String.format("Reading %s %n", inputFilePath));
-            inputFileChunker = new TextFileChunker(inputFilePath);
+            inputFileChunker = new TextFileChunker(inputFilePath, ByteBufferChunker.CHUNK_CHARSET);
             while (inputFileChunker.hasNext()) {
                 try {
                     String chunk = inputFileChunker.next();
-                    scanChunk(chunk);
+                    metrics.chunksScanned(1, chunk.length());
+                    scanChunk(chunk, inputFileChunker.chunkOffset());
                 } catch (Exception e) {
                     // this is what would go into log for investigation and manual correction later.
                     logOutputProvider.accept("Failed processing one chunk but proceeding with others. Error" + e.getStackTrace());
                 }
              }
+            dataOutputProvider.flush();
         } catch (Exception e) {
             throw new ScanException(e);
         }
@@ -98,42 +158,108 @@ public class DigitalNumberScanner {
     /** It will open the file, read it sequentially, break down into blocks of chunks and process them in parallel.
      *  Each chunk in a block is then processed sequentially inside of a separate process.
      *  Even if the chunk fails to process, others would still be attempted.
-     *  It ensures that no more than certain amount of blocks are loaded into memory at every point in time.
+     *  It ensures that no more than certain amount of blocks are loaded into memory at every point in time:
+     *  the results queue is bounded and the reading blocks while it's full.
      *  Maximum queue size should be larger than the thread pool size so that there are blocks pre-fetched and ready to be processed.
      *  Results are aggregated and written to output in the sequential order in a separate thread.
+     *  With virtualThreads every block gets its own virtual thread instead of waiting for one of the pool threads,
+     *  and the reading blocks while maxBytesInFlight are read but not yet written, instead of on the queue size.
+     *  It pays off when the recognition waits rather than computes, e.g. with delayArtificially.
+     *  With adaptiveBlockSize numberOfChunksInBlock is only the starting point, the block size and the number of blocks in flight
+     *  follow the measured block latency, the depth of the results queue and the heap headroom, never going over maxBytesInFlight.
+     *  See AdaptiveBlockSizer.
      * @param inputFilePath
      * @throws ScanException
      */
     public void scanFileParallel(String inputFilePath) throws ScanException {
+        scanFileParallel(inputFilePath, this.dataOutputProvider, null, ScanCheckpoint.START);
+    }
+
+    /** Same as scanFileParallel, but saves a checkpoint every numberOfBlocksBetweenCheckpoints blocks, see ScanCheckpoint.
+     *  If the checkpoint file is already there, the scan is resumed from it: the input is read from the checkpoint offset,
+     *  the output is truncated to the checkpoint offset and appended to. Running it again after it completed changes nothing.
+     *  The input is read as ISO_8859_1, same as in the mapped mode, so that the offsets are in bytes.
+     * @param inputFilePath
+     * @param outputFilePath has to be a file, so that it can be appended to
+     * @param checkpointFilePath where the checkpoints go
+     * @throws ScanException
+     */
+    public void scanFileResumable(String inputFilePath, String outputFilePath, String checkpointFilePath) throws ScanException {
+        final ScanCheckpoint resumeFrom;
+        try {
+            resumeFrom = ScanCheckpoint.loadOrStart(checkpointFilePath);
+        } catch (IOException e) {
+            throw new ScanException(e);
+        }
+        if (resumeFrom != ScanCheckpoint.START) {
+            logOutputProvider.accept(String.format("Resuming from the checkpoint: %s %n", resumeFrom));
+        }
+        try (OutputSink outputSink = ChannelOutputSink.toFile(outputFilePath, resumeFrom.getOutputOffset(), outputBufferSize)) {
+            scanFileParallel(inputFilePath, outputSink, checkpointFilePath, resumeFrom);
+        } catch (IOException e) {
+            throw new ScanException(e);
+        }
+    }
+
+    private void scanFileParallel(String inputFilePath, OutputSink dataOutputProvider, String checkpointFilePath, ScanCheckpoint resumeFrom) throws ScanException {
         TextFileChunker inputFileChunker = null;
 
         try {
             logOutputProvider.accept(String.format("Reading %s %n", inputFilePath));
-            inputFileChunker = new TextFileChunker(inputFilePath);
+            inputFileChunker = new TextFileChunker(inputFilePath, ByteBufferChunker.CHUNK_CHARSET, resumeFrom.getInputOffset());
             List<String> block = new LinkedList<>();
-            int blockNumber = 0;
-            ExecutorService scanningExecutor = Executors.newFixedThreadPool(numberOfParallelBlocksProcessed);
-            ResultsAggregator resultsAggregator = new ResultsAggregator(this.dataOutputProvider, this.logOutputProvider);
+            int blockSize = 0;
+            int blockNumber = resumeFrom.getBlockNumber() + 1;
+            final AdaptiveBlockSizer blockSizer = adaptiveBlockSize ? newAdaptiveBlockSizer() : null;
+            int numberOfChunksInThisBlock = null == blockSizer ? numberOfChunksInBlock : blockSizer.numberOfChunksInBlock();
+            long[] chunkOffsets = new long[numberOfChunksInThisBlock];
+            final ExecutorService scanningExecutor = virtualThreads
+                    ? ScanExecutors.newVirtualThreadPerTaskExecutor(logOutputProvider)
+                    : Executors.newFixedThreadPool(numberOfParallelBlocksProcessed);
+            final InFlightBudget inFlightBudget;
+            final ResultsAggregator resultsAggregator;
+            if (virtualThreads || null != blockSizer) {
+                inFlightBudget = new InFlightBudget(maxBytesInFlight, null == blockSizer ? InFlightBudget.UNLIMITED_BLOCKS : blockSizer.prefetchDepth());
+                resultsAggregator = new ResultsAggregator(dataOutputProvider, this.logOutputProvider, Integer.MAX_VALUE, inFlightBudget);
+            } else {
+                inFlightBudget = null;
+                resultsAggregator = new ResultsAggregator(dataOutputProvider, this.logOutputProvider, numberOfPreFetchBlocks);
+            }
+            resultsAggregator.recordTo(metrics);
+            if (null != blockSizer) {
+                blockSizer.watchQueue(resultsAggregator::size);
+            }
+            if (null != checkpointFilePath) {
+                resultsAggregator.checkpointTo(checkpointFilePath, numberOfBlocksBetweenCheckpoints, resumeFrom);
+            }
             Thread resultsAggregatorThread = new Thread(resultsAggregator);
             resultsAggregatorThread.start();
 
             while (inputFileChunker.hasNext()) {
-                if (resultsAggregator.size() >= numberOfPreFetchBlocks) {
-                    logOutputProvider.accept(String.format("Waiting for the queue to clear before scheduling more tasks. %n") );
-                    TimeUnit.MILLISECONDS.sleep(1);
-                    continue;
-                }
                 try {
                     String chunk = inputFileChunker.next();
+                    chunkOffsets[block.size()] = inputFileChunker.chunkOffset();
                     block.add(chunk);
-                    if (block.size() == numberOfChunksInBlock) {
-                        ScanBlockOfChunksTask scanBlockOfChunksTask = new ScanBlockOfChunksTask(block, blockNumber, this);
-                        // submit the task and add to results
-                        resultsAggregator.add(scanningExecutor.submit(scanBlockOfChunksTask));
+                    blockSize += chunk.length();
+                    if (block.size() >= numberOfChunksInThisBlock) {
+                        ScanBlockOfChunksTask scanBlockOfChunksTask = new ScanBlockOfChunksTask(block, chunkOffsets, blockNumber, this, blockSize, blockSizer);
+                        if (null != blockSizer) {
+                            inFlightBudget.setMaxBlocksInFlight(blockSizer.prefetchDepth());
+                        }
+                        final int permits = null == inFlightBudget ? 0 : inFlightBudget.acquire(blockSize);
+                        // submit the task and add to results, this blocks while there are too many blocks in flight
+                        resultsAggregator.add(scanningExecutor.submit(scanBlockOfChunksTask), blockNumber, inputFileChunker.position(), permits);
                         // starting the new block
                         block = new LinkedList<>();
+                        blockSize = 0;
                         blockNumber++;
+                        if (null != blockSizer) {
+                            numberOfChunksInThisBlock = blockSizer.numberOfChunksInBlock();
+                        }
+                        chunkOffsets = new long[numberOfChunksInThisBlock];
                     }
+                } catch (InterruptedException e) {
+                    throw e;
                 } catch (Exception e) {
                     // this is what would go into log for investigation and manual correction later.
                     logOutputProvider.accept("Failed processing one chunk but proceeding with others. Error" + e.getStackTrace());
@@ -141,13 +267,18 @@ public class DigitalNumberScanner {
             }
             // submitting the last task
             if (block.size() != 0) {
-                ScanBlockOfChunksTask scanBlockOfChunksTask = new ScanBlockOfChunksTask(block, blockNumber, this);
-                resultsAggregator.add(scanningExecutor.submit(scanBlockOfChunksTask));
+                ScanBlockOfChunksTask scanBlockOfChunksTask = new ScanBlockOfChunksTask(block, chunkOffsets, blockNumber, this, blockSize, blockSizer);
+                final int permits = null == inFlightBudget ? 0 : inFlightBudget.acquire(blockSize);
+                resultsAggregator.add(scanningExecutor.submit(scanBlockOfChunksTask), blockNumber, inputFileChunker.position(), permits);
             }
-            resultsAggregator.finishedPublishing = true;
+            resultsAggregator.finishPublishing();
             scanningExecutor.shutdown();
             resultsAggregatorThread.join();
             scanningExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            dataOutputProvider.flush();
+            if (null != blockSizer) {
+                logOutputProvider.accept(blockSizer.summary());
+            }
         } catch (Exception e) {
             throw new ScanException(e);
         }
@@ -156,34 +287,144 @@ public class DigitalNumberScanner {
         }
     }
 
-    void scanChunk(String chunk) {
+    /** The threads need a block each and one more ready to go. */
+    AdaptiveBlockSizer newAdaptiveBlockSizer() {
+        final int numberOfThreads = virtualThreads ? Runtime.getRuntime().availableProcessors() : numberOfParallelBlocksProcessed;
+        return new AdaptiveBlockSizer(targetBlockLatencyMillis, numberOfChunksInBlock, minChunksInBlock, maxChunksInBlock,
+                numberOfThreads + 1, maxPrefetchDepth, maxBytesInFlight, logOutputProvider);
+    }
+
+    /** Scans the file while it's still being written, chunk by chunk as they are completed, see FileFollower.
+     *  Stops once nothing was appended for followIdleTimeoutMillis, with 0 it follows until the thread is interrupted.
+     *  The output is the same as scanFile gives for the file as it is when the following stops.
+     * @param inputFilePath
+     * @throws ScanException
+     */
+    public void followFile(String inputFilePath) throws ScanException {
+        logOutputProvider.accept(String.format("Following %s %n", inputFilePath));
+        try (FileFollower fileFollower = new FileFollower(inputFilePath, this, dataOutputProvider)) {
+            fileFollower.follow(followPollIntervalMillis, followIdleTimeoutMillis);
+        } catch (IOException e) {
+            throw new ScanException(e);
+        }
+    }
+
+    /** Same as scanFileParallel, but the main thread doesn't read the file.
+     *  The file is memory-mapped and split into regions at chunk boundaries, each region is chunked and scanned by its own task.
+     *  The file is split into at least as many regions as there are parallel threads, more if the regions would exceed maxMappedRegionSize.
+     *  Results are aggregated and written to output in the sequential order in a separate thread.
+     * @param inputFilePath
+     * @throws ScanException
+     */
+    public void scanFileMapped(String inputFilePath) throws ScanException {
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFilePath), StandardOpenOption.READ)) {
+            logOutputProvider.accept(String.format("Reading %s %n", inputFilePath));
+            List<FileRegion> regions = new MappedFileSplitter(channel, maxMappedRegionSize).split(numberOfParallelBlocksProcessed);
+            ExecutorService scanningExecutor = Executors.newFixedThreadPool(numberOfParallelBlocksProcessed);
+            ResultsAggregator resultsAggregator = new ResultsAggregator(this.dataOutputProvider, this.logOutputProvider, numberOfPreFetchBlocks);
+            resultsAggregator.recordTo(metrics);
+            Thread resultsAggregatorThread = new Thread(resultsAggregator);
+            resultsAggregatorThread.start();
+
+            for (int regionNumber = 0; regionNumber < regions.size(); regionNumber++) {
+                ScanFileRegionTask scanFileRegionTask = new ScanFileRegionTask(channel, regions.get(regionNumber), regionNumber, this);
+                resultsAggregator.add(scanningExecutor.submit(scanFileRegionTask));
+            }
+            resultsAggregator.finishPublishing();
+            scanningExecutor.shutdown();
+            resultsAggregatorThread.join();
+            scanningExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            dataOutputProvider.flush();
+        } catch (Exception e) {
+            throw new ScanException(e);
+        }
+    }
+
+    /** Same as scanFileMapped, but every region is split further on a ForkJoinPool, see ScanRegionRecursiveTask.
+     *  Pays off when the cost of the chunks is skewed, e.g. a part of the file full of corrupt chunks matched fuzzily:
+     *  the idle workers steal the rest of the expensive part rather than wait for the results of the next region in order.
+     *  Results are aggregated and written to output in the sequential order in a separate thread.
+     * @param inputFilePath
+     * @throws ScanException
+     */
+    public void scanFileForkJoin(String inputFilePath) throws ScanException {
+        ForkJoinPool scanningPool = null;
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFilePath), StandardOpenOption.READ)) {
+            logOutputProvider.accept(String.format("Reading %s %n", inputFilePath));
+            List<FileRegion> regions = new MappedFileSplitter(channel, maxMappedRegionSize).split(1);
+            scanningPool = new ForkJoinPool(numberOfForkJoinThreads);
+            ResultsAggregator resultsAggregator = new ResultsAggregator(this.dataOutputProvider, this.logOutputProvider, numberOfPreFetchBlocks);
+            resultsAggregator.recordTo(metrics);
+            Thread resultsAggregatorThread = new Thread(resultsAggregator);
+            resultsAggregatorThread.start();
+
+            for (int regionNumber = 0; regionNumber < regions.size(); regionNumber++) {
+                final FileRegion region = regions.get(regionNumber);
+                final int number = regionNumber;
+                resultsAggregator.add(scanningPool.submit(ForkJoinTask.adapt(
+                        () -> ScanRegionRecursiveTask.scanRegion(channel, region, number, forkJoinLeafSize, this))));
+            }
+            resultsAggregator.finishPublishing();
+            resultsAggregatorThread.join();
+            dataOutputProvider.flush();
+        } catch (Exception e) {
+            throw new ScanException(e);
+        } finally {
+            if (null != scanningPool) { scanningPool.shutdown(); }
+        }
+    }
+
+    void scanChunk(String chunk) throws IOException {
         scanChunk(chunk, this.dataOutputProvider, this.logOutputProvider);
     }
 
-    /** Added this method signature to support parallel processing where the data output has to be buffered independently for parallel processes. */
-    void scanChunk(String chunk, Consumer<String> dataOutputProvider, Consumer<String> logOutputProvider) {
+    /** @param offset position of the chunk in the input */
+    void scanChunk(String chunk, long offset) throws IOException {
+        scanChunk(chunk, offset, this.dataOutputProvider, this.logOutputProvider);
+    }
+
+    /** Added this method signature to support parallel processing where the data output has to be buffered independently for parallel processes.
+     *  The record is assembled first and written to the sink in one go. */
+    void scanChunk(String chunk, OutputSink dataOutputProvider, Consumer<String> logOutputProvider) throws IOException {
+        scanChunk(chunk, DeadLetterWriter.UNKNOWN_OFFSET, dataOutputProvider, logOutputProvider);
+    }
+
+    /** Same as scanChunk(chunk, dataOutputProvider, logOutputProvider), for when the offset of the chunk in the input is known.
+     *  It only goes into the record with the BINARY output format. */
+    void scanChunk(String chunk, long offset, OutputSink dataOutputProvider, Consumer<String> logOutputProvider) throws IOException {
         String[] lines = Arrays.stream(chunk.split(LINE_DELIMITER_REGEXP)).map(s -> s.replace("\r", "")).toArray(String[]::new);
 
-        if (!validateChunkLines(lines)) {
-            logOutputProvider.accept(String.format("Cannot read the chunk %n%s%n", chunk));
+        final String rejectionReason = rejectionReason(lines);
+        if (null != rejectionReason) {
+            rejectChunk(chunk, offset, rejectionReason, logOutputProvider);
             return;
         }
+        final boolean annotated = outputFormat == ScannerConfiguration.OutputFormat.BINARY;
+        final int numberOfDigits = lines[0].length() / digitWidth;
+        StringBuilder record = new StringBuilder(numberOfDigits + ILLEGAL_INPUT_INDICATOR.length() + ByteChunkScanner.RECORD_SEPARATOR.length());
         boolean hadIllegalSymbols = false;
-        for (int digitNumber = 0; digitNumber < numberOfDigitsInAChunk; digitNumber++) {
+        boolean hadFuzzySymbols = false;
+        for (int digitNumber = 0; digitNumber < numberOfDigits; digitNumber++) {
             String digit = digitReader.read(lines, digitNumber);
             String output = recognizeDigit(digit);
             // This operation is excessive. Can be optimized if done only in case the unrecognized characters.
             hadIllegalSymbols |= (UNRECOGNIZED_SYMBOL_SIGN.equals(output));
-            // Output as soon as possible.
-            dataOutputProvider.accept(output);
+            // only looked up again when it goes into the record
+            hadFuzzySymbols |= annotated && fuzzyMatchingMode && !UNRECOGNIZED_SYMBOL_SIGN.equals(output) && !isKnownGlyph(digit);
+            record.append(output);
         }
         if (hadIllegalSymbols) {
-            dataOutputProvider.accept(ILLEGAL_INPUT_INDICATOR);
+            record.append(ILLEGAL_INPUT_INDICATOR);
+        }
+        if (annotated) {
+            BinaryOutputSink.annotate(record, offset, hadFuzzySymbols);
         }
-        dataOutputProvider.accept(String.format("%n"));
+        record.append(ByteChunkScanner.RECORD_SEPARATOR);
+        dataOutputProvider.write(record);
     }
 
     /** Always check for exact match first. If this didn't work - try a fuzzy match if it's enabled.
+     * Both the exact and the fuzzy match go through the glyph classifier tables, see GlyphClassifier for the fuzzy tie-break rule.
      * @param digit
      * @return
      */
@@ -191,27 +432,73 @@ public class DigitalNumberScanner {
         //TODO Here we are artificially slowing down the process to simulate a complex processing that benefits from parallel execution.
         delayArtificially();
 
-        if (digitsMap.containsKey(digit)) {
-            return digitsMap.get(digit);
+        final int code = glyphClassifier.encode(digit);
+        final String exactMatchSymbol = code < 0 ? null : glyphClassifier.classifyToString(code);
+        if (null != exactMatchSymbol) {
+            metrics.exactGlyph();
+            return exactMatchSymbol;
         } else if (fuzzyMatchingMode) {
-            Map<Integer, String> symbolByDistanceMap = new HashMap<>();
-            for (String symbol : digitsMap.keySet()) {
-                int distance = StringUtils.getLevenshteinDistance(symbol, digit);
-                symbolByDistanceMap.put(Integer.valueOf(distance), symbol);
-            }
-            Integer minDistance =  symbolByDistanceMap.keySet().stream().min(Integer::compareTo).get();
-            String fuzzyMatchSymbol = symbolByDistanceMap.get(minDistance);
-            if (digitsMap.containsKey(fuzzyMatchSymbol)) {
-                return digitsMap.get(fuzzyMatchSymbol);
+            final String fuzzyMatchSymbol = glyphClassifier.nearestSymbolToString(digit);
+            if (null != fuzzyMatchSymbol) {
+                metrics.fuzzyGlyph();
+                return fuzzyMatchSymbol;
             }
         }
+        metrics.unrecognizedGlyph();
         return UNRECOGNIZED_SYMBOL_SIGN;
     }
 
-    private void delayArtificially() {
+    /** @return true if the glyph is one of the digits map, i.e. it's recognized without the fuzzy matching */
+    boolean isKnownGlyph(String digit) {
+        final int code = glyphClassifier.encode(digit);
+        return code >= 0 && null != glyphClassifier.classifyToString(code);
+    }
+
+    GlyphClassifier getGlyphClassifier() {
+        return glyphClassifier;
+    }
+
+    /** @return known glyphs and their symbols, in the order of the digits file */
+    Map<String, String> getDigitsMap() {
+        return Collections.unmodifiableMap(digitsMap);
+    }
+
+    int getDigitWidth() {
+        return digitWidth;
+    }
+
+    int getDigitHeight() {
+        return digitHeight;
+    }
+
+    /** @return every symbol of the digits map once, in the order of the digits file */
+    String getSymbols() {
+        return String.join("", new LinkedHashSet<>(digitsMap.values()));
+    }
+
+    /** @return sink creating or truncating the file, text or binary as the output format says */
+    OutputSink newOutputSink(String outputFilePath) throws IOException {
+        if (outputFormat == ScannerConfiguration.OutputFormat.BINARY) {
+            return BinaryOutputSink.toFile(outputFilePath, getSymbols(), binaryMaxDigits, binaryIndexInterval, outputBufferSize);
+        }
+        return ChannelOutputSink.toFile(outputFilePath, 0, outputBufferSize);
+    }
+
+    /** @return 0 if every chunk can have its own number of digits */
+    int getNumberOfDigitsInAChunk() {
+        return numberOfDigitsInAChunk;
+    }
+
+    /** @return a new scanner working on the bytes of the input. It holds reusable state, so create one per thread. */
+    ByteChunkScanner newByteChunkScanner() {
+        return new ByteChunkScanner(this, digitWidth, digitHeight, numberOfDigitsInAChunk, glyphClassifier,
+                swarRecognition ? glyphEncoder : null);
+    }
+
+    void delayArtificially() {
         if (delayArtificially) {
             try {
-                TimeUnit.MICROSECONDS.sleep(SYMBOL_RECOGNITION_ARTIFICIAL_SLOWDOWN_MICROSECONDS);
+                TimeUnit.MICROSECONDS.sleep(recognitionDelayMicroseconds);
             } catch (InterruptedException e) {
                 logOutputProvider.accept(String.format("Failed to delay recognizeDigit with error %s %n", e.getMessage()));
             }
@@ -222,7 +509,8 @@ public class DigitalNumberScanner {
      * @throws InitException when initialisation fails.
      */
     private void initDigitsMap() throws InitException {
-        digitsMap = new HashMap<String, String>();
+        // ordered, so that the fuzzy matching tie-break follows the order of the digits file
+        digitsMap = new LinkedHashMap<String, String>();
         TextFileChunker inputFileChunker = null;
         InputStream digitsValMapFileInputStream = null;
         try {
@@ -235,6 +523,7 @@ public class DigitalNumberScanner {
             String symbols = reader.readLine();
             if (inputFileChunker.hasNext()) {
                 String[] lines = inputFileChunker.next().split(LINE_DELIMITER_REGEXP);
+                inferGlyphSize(lines, symbols);
                 for (int digitNumber = 0; digitNumber < numberOfDigitsInDigitsMap; digitNumber++) {
                     String digit = digitReader.read(lines, digitNumber);
                     digitsMap.put(digit, String.valueOf(symbols.charAt(digitNumber)));
@@ -243,6 +532,12 @@ public class DigitalNumberScanner {
             else {
                 throw new InitException("Failed reading digits map");
             }
+            glyphClassifier = new GlyphClassifier(digitsMap, digitWidth * digitHeight);
+            glyphEncoder = SwarGlyphEncoder.create(glyphClassifier, digitWidth, digitHeight);
+            if (outputFormat == ScannerConfiguration.OutputFormat.BINARY && getSymbols().length() > BinaryRecord.MAX_SYMBOLS) {
+                throw new InitException(String.format("The binary output has room for %d symbols, the digits map has %d",
+                        BinaryRecord.MAX_SYMBOLS, getSymbols().length()));
+            }
         }
         catch (Exception e) {
             throw new InitException(e);
@@ -259,19 +554,96 @@ public class DigitalNumberScanner {
         }
     }
 
+    /**
+     * Fills in what's not set in the configuration: the height is the number of lines of the digits map,
+     * the number of glyphs is the number of symbols, the width is what the glyphs take of a line.
+     */
+    private void inferGlyphSize(String[] lines, String symbols) throws InitException {
+        if (digitHeight == 0) {
+            digitHeight = lines.length;
+        }
+        if (numberOfDigitsInDigitsMap == 0) {
+            numberOfDigitsInDigitsMap = null == symbols ? 0 : symbols.length();
+        }
+        if (digitWidth == 0) {
+            for (String line : lines) {
+                if (numberOfDigitsInDigitsMap == 0 || line.length() != lines[0].length() || line.length() % numberOfDigitsInDigitsMap != 0) {
+                    throw new InitException(String.format("Can't infer the digit width: %d symbols, lines of %d and %d characters in the digits map",
+                            numberOfDigitsInDigitsMap, lines[0].length(), line.length()));
+                }
+            }
+            digitWidth = lines[0].length() / numberOfDigitsInDigitsMap;
+        }
+        chunkLineLength = numberOfDigitsInAChunk * digitWidth;
+        digitReader = new DigitReader(digitWidth, digitHeight);
+    }
+
     boolean validateChunkLines(String[] lines) {
+        final String rejectionReason = rejectionReason(lines);
+        if (null != rejectionReason) {
+            logOutputProvider.accept(String.format("%s%n", rejectionReason));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param lines lines of the chunk
+     * @return why the chunk can't be scanned or null if it's fine. ByteChunkScanner gives the same reasons for the same chunks.
+     */
+    String rejectionReason(String[] lines) {
         if (lines == null) { throw new IllegalArgumentException("Lines argument is null"); }
         if (digitHeight != lines.length) {
-            logOutputProvider.accept(String.format("Incorrect number of lines in chunk. Expected %d, found %d.%n", digitHeight, lines.length));
-            return false;
+            return incorrectNumberOfLinesReason(lines.length);
         }
-        for (String line : lines) {
-            if (chunkLineLength != line.length()) {
-                logOutputProvider.accept(String.format("Line %s has incorrect length. Expected %d, found %d.%n", line, chunkLineLength, line.length()));
-                return false;
+        final int lineLength = expectedLineLength(lines[0].length());
+        for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
+            if (lineLength != lines[lineNumber].length()) {
+                return incorrectLineLengthReason(lines[lineNumber], lineLength);
             }
         }
-        return true;
+        return null;
+    }
+
+    /**
+     * With a fixed number of digits in a chunk every line has the same length.
+     * Otherwise the first line tells how many digits there are, as long as it's made of whole glyphs. It's just a check, so it costs nothing per chunk.
+     * @return length all the lines of the chunk have to have, -1 if the first line can't be a line of glyphs
+     */
+    int expectedLineLength(int firstLineLength) {
+        if (numberOfDigitsInAChunk > 0) {
+            return chunkLineLength;
+        }
+        return firstLineLength > 0 && firstLineLength % digitWidth == 0 ? firstLineLength : -1;
+    }
+
+    String incorrectNumberOfLinesReason(int numberOfLines) {
+        return String.format("Incorrect number of lines in chunk. Expected %d, found %d.", digitHeight, numberOfLines);
+    }
+
+    /** @param line the first line of the chunk that has a wrong length, as it is in the input */
+    String incorrectLineLengthReason(String line, int expectedLineLength) {
+        if (expectedLineLength < 0) {
+            return String.format("Line %s has incorrect length. Expected a multiple of %d, found %d.", line, digitWidth, line.length());
+        }
+        return String.format("Line %s has incorrect length. Expected %d, found %d.", line, expectedLineLength, line.length());
+    }
+
+    /**
+     * Corrupt chunks go to the dead letter file if there is one, to the log otherwise.
+     * @param chunk the chunk as read
+     * @param offset position of the chunk in the input or DeadLetterWriter.UNKNOWN_OFFSET
+     * @param rejectionReason why it can't be scanned
+     */
+    void rejectChunk(String chunk, long offset, String rejectionReason, Consumer<String> logOutputProvider) throws IOException {
+        metrics.invalidChunk();
+        if (null != deadLetterWriter) {
+            deadLetterWriter.write(chunk, offset, rejectionReason);
+            logOutputProvider.accept(String.format("Chunk at %d sent to the dead letter file: %s%n", offset, rejectionReason));
+        } else {
+            logOutputProvider.accept(String.format("%s%n", rejectionReason));
+            logOutputProvider.accept(String.format("Cannot read the chunk %n%s%n", chunk));
+        }
     }
 
 }
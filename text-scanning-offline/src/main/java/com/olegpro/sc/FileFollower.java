@@ -0,0 +1,176 @@
+package com.olegpro.sc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans a file that is still being written, like tail -f.
+ * The file is kept open, only the bytes appended since the last poll are read, nothing is read twice.
+ * A chunk is scanned as soon as the delimiter after it is complete, i.e. a new line, any whitespace and another new line.
+ * The trailing chunk is held back until then, it may still be partial. Its bytes are kept from the end of the previous chunk,
+ * delimiter included, so that the greedy delimiter is worked out again with the new bytes, same as in one go.
+ * The appended bytes are read a buffer at a time, however many there are, e.g. when it starts following a large file.
+ * When following stops, the held back chunk is scanned as the last chunk of the file, so the output is the same as scanFile's.
+ * The numbers are flushed to the output after every poll, so they show up as soon as the chunks are complete.
+ * The WatchService wakes it up when the directory changes, the poll interval is the fallback, e.g. on file systems it doesn't work on.
+ */
+public class FileFollower implements Closeable {
+    static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    /** The buffer only grows for a chunk longer than it, up to this. */
+    static final int MAX_BUFFER_SIZE = 64 * 1024 * 1024;
+    private final Path inputFile;
+    private final FileChannel channel;
+    private final DigitalNumberScanner scanner;
+    private final OutputSink dataOutputProvider;
+    private final ByteChunkScanner chunkScanner;
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    /** Offset in the file of the first pending byte. */
+    private long pendingOffset = 0;
+
+    public FileFollower(String inputFilePath, DigitalNumberScanner scanner, OutputSink dataOutputProvider) throws IOException {
+        this.inputFile = Paths.get(inputFilePath);
+        this.channel = FileChannel.open(inputFile, StandardOpenOption.READ);
+        this.scanner = scanner;
+        this.dataOutputProvider = dataOutputProvider;
+        this.chunkScanner = scanner.newByteChunkScanner();
+    }
+
+    /**
+     * Polls until no bytes were appended for idleTimeoutMillis, or until the thread is interrupted, then scans the held back chunk.
+     * @param pollIntervalMillis longest wait between the polls
+     * @param idleTimeoutMillis 0 follows until interrupted
+     */
+    public void follow(long pollIntervalMillis, long idleTimeoutMillis) throws IOException {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            inputFile.toAbsolutePath().getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+            long lastGrowthTime = System.nanoTime();
+            while (!Thread.currentThread().isInterrupted()) {
+                if (poll()) {
+                    lastGrowthTime = System.nanoTime();
+                } else if (idleTimeoutMillis > 0 && System.nanoTime() - lastGrowthTime >= TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis)) {
+                    scanner.logOutputProvider.accept(String.format("Nothing appended to %s for %d ms, stopped following %n", inputFile, idleTimeoutMillis));
+                    break;
+                }
+                final WatchKey watchKey = watchService.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                if (null != watchKey) {
+                    // any change in the directory is a reason to look, the size tells if it was this file
+                    watchKey.pollEvents();
+                    watchKey.reset();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finish();
+    }
+
+    /**
+     * Reads the bytes appended since the last poll and scans the chunks completed by them.
+     * @return false if nothing was appended
+     */
+    public boolean poll() throws IOException {
+        final long size = channel.size();
+        final long readPosition = pendingOffset + pending.position();
+        if (size < readPosition) {
+            scanner.logOutputProvider.accept(String.format("%s got shorter, it was truncated or replaced. Following it from the start %n", inputFile));
+            pending.clear();
+            pendingOffset = 0;
+            return true;
+        }
+        if (size == readPosition) {
+            return false;
+        }
+        while (pendingOffset + pending.position() < size && read()) {
+            scanCompleteChunks(completeChunksEnd());
+        }
+        return true;
+    }
+
+    /** Scans whatever is held back as the last chunk of the file. */
+    public void finish() throws IOException {
+        scanCompleteChunks(pending.position());
+    }
+
+    /** @return offset in the file right after the last chunk scanned */
+    public long position() {
+        return pendingOffset;
+    }
+
+    int bufferSize() {
+        return pending.capacity();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads at most what fits into the free space of the buffer, so a large backlog goes through it in buffer sized passes.
+     * @return false if the end of the file was reached before the buffer got any bytes
+     */
+    private boolean read() throws IOException {
+        if (!pending.hasRemaining()) {
+            grow();
+        }
+        return channel.read(pending, pendingOffset + pending.position()) > 0;
+    }
+
+    /** Only a single chunk, still incomplete, fills the buffer, the complete ones were scanned and compacted away. */
+    private void grow() throws IOException {
+        if (pending.capacity() >= MAX_BUFFER_SIZE) {
+            throw new IOException(String.format("The chunk at %d of %s is longer than %d bytes, that's not a digital number",
+                    pendingOffset, inputFile, MAX_BUFFER_SIZE));
+        }
+        final ByteBuffer larger = ByteBuffer.allocate((int) Math.min(2L * pending.capacity(), MAX_BUFFER_SIZE));
+        pending.flip();
+        larger.put(pending);
+        pending = larger;
+    }
+
+    /** @return position in the pending bytes right after the last chunk followed by a complete delimiter, 0 if there is none */
+    private int completeChunksEnd() {
+        final ByteBuffer view = pending.duplicate();
+        view.flip();
+        final ByteBufferChunker chunker = new ByteBufferChunker(view);
+        int end = 0;
+        while (chunker.hasNext()) {
+            // a chunk that ends before the limit ends at a delimiter, the one that ends at the limit may not be complete
+            if (chunker.chunkEnd() < view.limit()) {
+                end = chunker.chunkEnd();
+            }
+            chunker.skip();
+        }
+        return end;
+    }
+
+    /** Scans the pending bytes up to the end, writes and flushes the numbers, keeps the rest for the next poll. */
+    private void scanCompleteChunks(int end) throws IOException {
+        if (end == 0) {
+            return;
+        }
+        final ByteBuffer completeChunks = pending.duplicate();
+        completeChunks.position(0);
+        completeChunks.limit(end);
+        final StringBuilder data = new StringBuilder();
+        ScanFileRegionTask.scanMappedChunks(channel, completeChunks, pendingOffset, chunkScanner, data, scanner.logOutputProvider);
+        dataOutputProvider.write(data);
+        dataOutputProvider.flush();
+        // the delimiter after the last chunk stays, it may still grow
+        pending.flip();
+        pending.position(end);
+        pending.compact();
+        pendingOffset += end;
+    }
+}
@@ -0,0 +1,31 @@
+package com.olegpro.sc;
+
+/**
+ * Range of bytes [start, end) of the input file. Always starts at the beginning of a chunk and ends after a complete chunk.
+ */
+public class FileRegion {
+    private final long start;
+    private final long end;
+
+    public FileRegion(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long size() {
+        return end - start;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%d, %d)", start, end);
+    }
+}
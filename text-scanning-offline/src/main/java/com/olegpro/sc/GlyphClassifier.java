@@ -0,0 +1,228 @@
+package com.olegpro.sc;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Recognizes a glyph by its code rather than by a String key.
+ * The alphabet is the set of characters the known glyphs are drawn with, for the default digits it's ' ', '_' and '|'.
+ * Each cell of the glyph is one digit in base alphabet size, so the 3x3 digits encode into 3^9 = 19683 codes.
+ * The symbol for every code is precomputed into a flat table, so a lookup is a single array access.
+ * Works for whatever glyphs are loaded at init, e.g. the "A" extension, as long as the table stays reasonably small.
+ * <p>
+ * For the fuzzy matching mode the nearest known glyph (by Levenshtein distance) is also precomputed for every code,
+ * on the first fuzzy lookup, so a scanner with fuzzy matching off never goes through all the codes.
+ * Ties are broken deterministically: the glyph that comes first in the digits map wins,
+ * i.e. the one further left in the /digits resource.
+ */
+public class GlyphClassifier {
+    static final char UNRECOGNIZED = 0;
+    static final int MAX_TABLE_SIZE = 1 << 20;
+    private final int[] cellValues = new int[128];
+    private final int base;
+    private final int glyphSize;
+    private final char[] alphabetCharacters;
+    private final char[] symbols;
+    private final String[] symbolStrings;
+    private final List<String> knownGlyphs;
+    private final List<String> knownSymbols;
+    private volatile NearestGlyphs nearestGlyphs; // null until the first fuzzy lookup
+
+    /**
+     * @param digitsMap glyph to symbol map as loaded from the resources. Its iteration order is the tie-break order for fuzzy matching.
+     * @param glyphSize number of cells in a glyph, i.e. width times height
+     * @throws InitException if the glyphs don't fit the table
+     */
+    public GlyphClassifier(Map<String, String> digitsMap, int glyphSize) throws InitException {
+        TreeSet<Character> alphabet = new TreeSet<>();
+        for (String glyph : digitsMap.keySet()) {
+            if (glyph.length() != glyphSize) {
+                throw new InitException(String.format("Glyph \"%s\" should be %d characters long", glyph, glyphSize));
+            }
+            for (char c : glyph.toCharArray()) {
+                if (c >= cellValues.length) {
+                    throw new InitException(String.format("Glyph \"%s\" has a non-ASCII character", glyph));
+                }
+                alphabet.add(c);
+            }
+        }
+        Arrays.fill(cellValues, -1);
+        alphabetCharacters = new char[alphabet.size()];
+        int value = 0;
+        for (char c : alphabet) {
+            alphabetCharacters[value] = c;
+            cellValues[c] = value++;
+        }
+        this.base = Math.max(1, alphabet.size());
+        this.glyphSize = glyphSize;
+        final double tableSize = Math.pow(base, glyphSize);
+        if (tableSize > MAX_TABLE_SIZE) {
+            throw new InitException(String.format("Too many possible glyphs: %d characters in %d cells", base, glyphSize));
+        }
+        this.symbols = new char[(int) tableSize];
+        this.symbolStrings = new String[(int) tableSize];
+        this.knownGlyphs = new ArrayList<>(digitsMap.keySet());
+        this.knownSymbols = new ArrayList<>(digitsMap.values());
+        for (int i = 0; i < knownGlyphs.size(); i++) {
+            final int code = encode(knownGlyphs.get(i));
+            symbols[code] = knownSymbols.get(i).charAt(0);
+            symbolStrings[code] = knownSymbols.get(i);
+        }
+    }
+
+    /** @return true once a fuzzy lookup built the nearest glyph table */
+    boolean hasNearestGlyphs() {
+        return null != nearestGlyphs;
+    }
+
+    /** @return the nearest glyph table, built by the first caller, the scanning threads wait for it only then */
+    private NearestGlyphs nearestGlyphs() {
+        NearestGlyphs nearest = nearestGlyphs;
+        if (null == nearest) {
+            synchronized (this) {
+                nearest = nearestGlyphs;
+                if (null == nearest) {
+                    nearest = initNearestGlyphs();
+                    nearestGlyphs = nearest;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /** Goes through every possible code once, so that fuzzy matching at scan time is a single array access. */
+    private NearestGlyphs initNearestGlyphs() {
+        final NearestGlyphs nearestGlyphs = new NearestGlyphs(symbols.length);
+        if (knownGlyphs.isEmpty()) {
+            return nearestGlyphs;
+        }
+        for (int code = 0; code < symbols.length; code++) {
+            final String glyph = decode(code);
+            final int nearest = nearestGlyph(glyph);
+            nearestGlyphs.glyphs[code] = nearest;
+            nearestGlyphs.symbols[code] = knownSymbols.get(nearest).charAt(0);
+            nearestGlyphs.distances[code] = (byte) StringUtils.getLevenshteinDistance(knownGlyphs.get(nearest), glyph);
+        }
+        return nearestGlyphs;
+    }
+
+    /** @return index of the known glyph with the smallest distance, the first one wins a tie. */
+    private int nearestGlyph(CharSequence glyph) {
+        int nearest = 0;
+        int minDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < knownGlyphs.size(); i++) {
+            final int distance = StringUtils.getLevenshteinDistance(knownGlyphs.get(i), glyph);
+            if (distance < minDistance) {
+                minDistance = distance;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    String decode(int code) {
+        char[] glyph = new char[glyphSize];
+        for (int i = glyphSize - 1; i >= 0; i--) {
+            glyph[i] = alphabetCharacters[code % base];
+            code /= base;
+        }
+        return new String(glyph);
+    }
+
+    /**
+     * @param c character of a glyph cell
+     * @return value of the cell or -1 if the character isn't in the alphabet, in which case no known glyph can match.
+     */
+    public int cellValue(int c) {
+        return c >= 0 && c < cellValues.length ? cellValues[c] : -1;
+    }
+
+    public int base() {
+        return base;
+    }
+
+    /** @return number of characters the glyphs are drawn with */
+    int alphabetSize() {
+        return alphabetCharacters.length;
+    }
+
+    /** @return the character of the cell value, the opposite of cellValue() */
+    char alphabetCharacter(int cellValue) {
+        return alphabetCharacters[cellValue];
+    }
+
+    /** @return number of possible codes, every code is between 0 and this value. */
+    public int numberOfCodes() {
+        return symbols.length;
+    }
+
+    /**
+     * @param glyph glyph as read by DigitReader
+     * @return the code or -1 if it has characters outside of the alphabet or has the wrong size.
+     */
+    public int encode(CharSequence glyph) {
+        if (glyph.length() != glyphSize) {
+            return -1;
+        }
+        int code = 0;
+        for (int i = 0; i < glyphSize; i++) {
+            final int cellValue = cellValue(glyph.charAt(i));
+            if (cellValue < 0) {
+                return -1;
+            }
+            code = code * base + cellValue;
+        }
+        return code;
+    }
+
+    /** @return the symbol or UNRECOGNIZED */
+    public char classify(int code) {
+        return symbols[code];
+    }
+
+    /** @return the symbol or null if the glyph is not known. Strings are shared, so there's no allocation. */
+    public String classifyToString(int code) {
+        return symbolStrings[code];
+    }
+
+    /** @return the symbol of the nearest known glyph, same as classify for the known ones. UNRECOGNIZED if there are no glyphs at all. */
+    public char nearestSymbol(int code) {
+        return nearestGlyphs().symbols[code];
+    }
+
+    /** @return Levenshtein distance to the nearest known glyph, zero for the known ones. */
+    public int nearestDistance(int code) {
+        return nearestGlyphs().distances[code];
+    }
+
+    /**
+     * Fuzzy match by the String. It's a table lookup unless the glyph can't be encoded, e.g. has characters outside of the alphabet.
+     * Those are not precomputed, but follow the same tie-break rule.
+     * @return the symbol of the nearest known glyph or null if there are no glyphs at all.
+     */
+    public String nearestSymbolToString(String glyph) {
+        if (knownGlyphs.isEmpty()) {
+            return null;
+        }
+        final int code = encode(glyph);
+        return knownSymbols.get(code >= 0 ? nearestGlyphs().glyphs[code] : nearestGlyph(glyph));
+    }
+
+    /** Index, symbol and distance of the nearest known glyph by code. */
+    private static class NearestGlyphs {
+        final int[] glyphs;
+        final char[] symbols;
+        final byte[] distances;
+
+        NearestGlyphs(int numberOfCodes) {
+            this.glyphs = new int[numberOfCodes];
+            this.symbols = new char[numberOfCodes];
+            this.distances = new byte[numberOfCodes];
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.olegpro.sc;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the amount of input read but not yet written out, in characters (bytes for the ASCII input).
+ * The reading thread acquires the size of a block before submitting it, the ResultsAggregator releases it once the block is written.
+ * Unlike a fixed thread count it limits the memory, not the concurrency, so it fits a thread per task.
+ * Optionally it also caps the number of blocks in flight, i.e. the prefetch depth. That cap can be changed on the fly,
+ * e.g. by the AdaptiveBlockSizer, the bytes cap can't: it's the memory budget and is never exceeded.
+ */
+public class InFlightBudget {
+    /** No cap on the number of blocks, only on the bytes. */
+    static final int UNLIMITED_BLOCKS = Integer.MAX_VALUE / 2;
+    private final int maxBytesInFlight;
+    private final Semaphore bytesInFlight;
+    private final ResizableSemaphore blocksInFlight;
+    private int maxBlocksInFlight;
+
+    public InFlightBudget(int maxBytesInFlight) {
+        this(maxBytesInFlight, UNLIMITED_BLOCKS);
+    }
+
+    public InFlightBudget(int maxBytesInFlight, int maxBlocksInFlight) {
+        this.maxBytesInFlight = maxBytesInFlight;
+        this.bytesInFlight = new Semaphore(maxBytesInFlight);
+        this.maxBlocksInFlight = Math.max(1, maxBlocksInFlight);
+        this.blocksInFlight = new ResizableSemaphore(this.maxBlocksInFlight);
+    }
+
+    /**
+     * Blocks while the budget is used up. A block larger than the whole budget takes all of it, so it can't wait forever.
+     * @return permits to release once the block is written
+     */
+    public int acquire(int blockSize) throws InterruptedException {
+        final int permits = Math.max(1, Math.min(blockSize, maxBytesInFlight));
+        blocksInFlight.acquire();
+        try {
+            bytesInFlight.acquire(permits);
+        } catch (InterruptedException e) {
+            blocksInFlight.release();
+            throw e;
+        }
+        return permits;
+    }
+
+    public void release(int permits) {
+        bytesInFlight.release(permits);
+        blocksInFlight.release();
+    }
+
+    /** @return bytes that can be acquired without blocking */
+    public int available() {
+        return bytesInFlight.availablePermits();
+    }
+
+    public synchronized int getMaxBlocksInFlight() {
+        return maxBlocksInFlight;
+    }
+
+    /**
+     * Blocks already in flight are not affected. When the cap goes down, the next acquire() waits until enough of them are written.
+     */
+    public synchronized void setMaxBlocksInFlight(int maxBlocksInFlight) {
+        final int newMaxBlocksInFlight = Math.max(1, maxBlocksInFlight);
+        final int difference = newMaxBlocksInFlight - this.maxBlocksInFlight;
+        if (difference > 0) {
+            blocksInFlight.release(difference);
+        } else if (difference < 0) {
+            blocksInFlight.reducePermits(-difference);
+        }
+        this.maxBlocksInFlight = newMaxBlocksInFlight;
+    }
+
+    /** reducePermits is protected in Semaphore, it can take the permits below zero without waiting. */
+    private static class ResizableSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.olegpro.sc;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Generates digital number files of any size, drawn with the same glyphs the scanner loads from the resources.
+ * Writes chunk by chunk, so nothing but the current chunk is ever held in memory and the size is only limited by the disk.
+ * Can corrupt the input the same ways we see in production:
+ * <ul>
+ *     <li>illegal glyphs, i.e. a known glyph with one cell changed so that it's not known any more,</li>
+ *     <li>rows of a wrong length, as in the multipleChunksWithCorruptedChunk sample,</li>
+ *     <li>delimiter lines with whitespace characters in them.</li>
+ * </ul>
+ * Along with the input it writes the expected output of the scanner (with fuzzy matching off), so the results can be verified.
+ */
+public class InputGenerator {
+    static final String EXPECTED_OUTPUT_FILE_SUFFIX = ".expected";
+    static final String WHITESPACE_DELIMITER_CHARACTERS = " \t";
+    static final int DEFAULT_NUMBER_OF_DIGITS = 9;
+    private final List<String> glyphs = new ArrayList<>();
+    private final List<String> symbols = new ArrayList<>();
+    private final char[] alphabet;
+    private final GlyphClassifier glyphClassifier;
+    private final int digitWidth;
+    private final int digitHeight;
+    private final Random random;
+    /** Probability of each glyph to be illegal. */
+    double illegalGlyphRate = 0;
+    /** Probability of each chunk to have a row of a wrong length. */
+    double wrongLengthRowRate = 0;
+    /** Probability of each delimiter line to have whitespace characters in it. */
+    double whitespaceDelimiterRate = 0;
+    /** Every chunk gets one of these numbers of digits, at random. Mixed widths only scan with chunk.numberOfDigits=0. */
+    int[] numbersOfDigits;
+
+    /**
+     * @param scanner initialized scanner to take the glyphs and the sizes from
+     * @param seed same seed gives the same file
+     */
+    public InputGenerator(DigitalNumberScanner scanner, long seed) {
+        for (Map.Entry<String, String> entry : scanner.getDigitsMap().entrySet()) {
+            glyphs.add(entry.getKey());
+            symbols.add(entry.getValue());
+        }
+        TreeSet<Character> alphabetCharacters = new TreeSet<>();
+        for (String glyph : glyphs) {
+            for (char c : glyph.toCharArray()) {
+                alphabetCharacters.add(c);
+            }
+        }
+        this.alphabet = new char[alphabetCharacters.size()];
+        int i = 0;
+        for (char c : alphabetCharacters) {
+            alphabet[i++] = c;
+        }
+        this.glyphClassifier = scanner.getGlyphClassifier();
+        this.digitWidth = scanner.getDigitWidth();
+        this.digitHeight = scanner.getDigitHeight();
+        this.numbersOfDigits = new int[]{scanner.getNumberOfDigitsInAChunk() > 0 ? scanner.getNumberOfDigitsInAChunk() : DEFAULT_NUMBER_OF_DIGITS};
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param input where the digital numbers go
+     * @param expectedOutput where the expected scanner output goes, one line per well formed chunk
+     * @param sizeInBytes size of the input to generate. It's rounded up to a whole chunk.
+     * @return number of chunks written
+     */
+    public long generate(Writer input, Writer expectedOutput, long sizeInBytes) throws IOException {
+        final StringBuilder chunk = new StringBuilder();
+        final StringBuilder number = new StringBuilder();
+        long written = 0;
+        long numberOfChunks = 0;
+        while (written < sizeInBytes) {
+            chunk.setLength(0);
+            number.setLength(0);
+            if (numberOfChunks > 0) {
+                appendDelimiter(chunk);
+            }
+            // a single width doesn't take a random number, so the same seed gives the same file as before
+            final int numberOfDigits = numbersOfDigits.length == 1 ? numbersOfDigits[0] : numbersOfDigits[random.nextInt(numbersOfDigits.length)];
+            final String[] digitGlyphs = new String[numberOfDigits];
+            boolean hadIllegalSymbols = false;
+            for (int digitNumber = 0; digitNumber < numberOfDigits; digitNumber++) {
+                final int glyph = random.nextInt(glyphs.size());
+                if (random.nextDouble() < illegalGlyphRate) {
+                    digitGlyphs[digitNumber] = illegalGlyph(glyphs.get(glyph));
+                    number.append(DigitalNumberScanner.UNRECOGNIZED_SYMBOL_SIGN);
+                    hadIllegalSymbols = true;
+                } else {
+                    digitGlyphs[digitNumber] = glyphs.get(glyph);
+                    number.append(symbols.get(glyph));
+                }
+            }
+            final int wrongLengthRow = random.nextDouble() < wrongLengthRowRate ? random.nextInt(digitHeight) : -1;
+            final int firstRowStart = chunk.length();
+            for (int row = 0; row < digitHeight; row++) {
+                if (row > 0) {
+                    chunk.append('\n');
+                }
+                for (String digitGlyph : digitGlyphs) {
+                    chunk.append(digitGlyph, row * digitWidth, (row + 1) * digitWidth);
+                }
+                if (row == wrongLengthRow) {
+                    if (random.nextBoolean()) {
+                        chunk.setLength(chunk.length() - 1);
+                    } else {
+                        chunk.append(alphabet[random.nextInt(alphabet.length)]);
+                    }
+                }
+            }
+            input.write(chunk.toString());
+            // A blank first row after a delimiter is taken as a part of the delimiter, so the scanner rejects such chunk.
+            final boolean swallowedFirstRow = numberOfChunks > 0 && isBlank(chunk, firstRowStart, firstRowStart + numberOfDigits * digitWidth);
+            if (wrongLengthRow < 0 && !swallowedFirstRow) {
+                if (hadIllegalSymbols) {
+                    number.append(DigitalNumberScanner.ILLEGAL_INPUT_INDICATOR);
+                }
+                number.append(ByteChunkScanner.RECORD_SEPARATOR);
+                expectedOutput.write(number.toString());
+            }
+            written += chunk.length();
+            numberOfChunks++;
+        }
+        return numberOfChunks;
+    }
+
+    private static boolean isBlank(CharSequence chunk, int start, int end) {
+        for (int i = start; i < end && i < chunk.length(); i++) {
+            if (!Character.isWhitespace(chunk.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendDelimiter(StringBuilder chunk) {
+        chunk.append('\n');
+        if (random.nextDouble() < whitespaceDelimiterRate) {
+            final int length = 1 + random.nextInt(4);
+            for (int i = 0; i < length; i++) {
+                chunk.append(WHITESPACE_DELIMITER_CHARACTERS.charAt(random.nextInt(WHITESPACE_DELIMITER_CHARACTERS.length())));
+            }
+        }
+        chunk.append('\n');
+    }
+
+    /** @return the glyph with one cell changed, so that it doesn't match any of the known glyphs. */
+    private String illegalGlyph(String glyph) {
+        final char[] cells = glyph.toCharArray();
+        while (true) {
+            final int cell = random.nextInt(cells.length);
+            final char original = cells[cell];
+            cells[cell] = alphabet[random.nextInt(alphabet.length)];
+            final int code = glyphClassifier.encode(new String(cells));
+            if (code >= 0 && glyphClassifier.classify(code) == GlyphClassifier.UNRECOGNIZED) {
+                return new String(cells);
+            }
+            cells[cell] = original;
+        }
+    }
+
+    /**
+     * Entry point for the generation from the command line.
+     * Arguments are: output file, size (e.g. 500K, 64M, 100G), then optionally the illegal glyph rate,
+     * the wrong length row rate, the whitespace delimiter rate, the seed and the numbers of digits to mix, e.g. 9,12,16.
+     * The expected output is written next to the output file, with the .expected suffix.
+     */
+    public static void main(String[] args) {
+        try {
+            if (null == args || args.length < 2) {
+                System.out.println("Please provide the name of the file and the size, e.g. ./input/generated 64M [illegalGlyphRate wrongLengthRowRate whitespaceDelimiterRate seed numbersOfDigits]");
+                System.exit(1);
+            }
+            DigitalNumberScanner digitalNumberScanner = new DigitalNumberScanner();
+            digitalNumberScanner.init();
+            InputGenerator inputGenerator = new InputGenerator(digitalNumberScanner, args.length > 5 ? Long.parseLong(args[5]) : 42);
+            inputGenerator.illegalGlyphRate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+            inputGenerator.wrongLengthRowRate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+            inputGenerator.whitespaceDelimiterRate = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+            if (args.length > 6) {
+                inputGenerator.numbersOfDigits = Arrays.stream(args[6].split(",")).mapToInt(Integer::parseInt).toArray();
+            }
+            try (
+                    Writer input = new BufferedWriter(new FileWriter(args[0]), 1 << 20);
+                    Writer expectedOutput = new BufferedWriter(new FileWriter(args[0] + EXPECTED_OUTPUT_FILE_SUFFIX), 1 << 20)) {
+                long numberOfChunks = inputGenerator.generate(input, expectedOutput, parseSize(args[1]));
+                System.out.print(String.format("Generated %d chunks into %s %n", numberOfChunks, args[0]));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** @return number of bytes for sizes like 1024, 500K, 64M or 100G */
+    static long parseSize(String size) {
+        final String units = "KMG";
+        final char unit = Character.toUpperCase(size.charAt(size.length() - 1));
+        final int power = units.indexOf(unit) + 1;
+        final long number = Long.parseLong(power > 0 ? size.substring(0, size.length() - 1) : size);
+        return number << (10 * power);
+    }
+}
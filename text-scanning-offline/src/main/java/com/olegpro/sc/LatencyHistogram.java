@@ -0,0 +1,99 @@
+package com.olegpro.sc;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram in the HdrHistogram style: log-linear buckets, i.e. 16 linear buckets per power of two,
+ * so any value from 1 ns to 2^63 ns is recorded with about 6% precision in under a thousand buckets.
+ * Every bucket is a LongAdder, so recording from many threads at the same time doesn't contend on one counter.
+ * The percentiles are read from a snapshot of the buckets taken while recording goes on, so they're approximate, which is fine for monitoring.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int NUMBER_OF_BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    private final LongAdder[] buckets = new LongAdder[NUMBER_OF_BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        final long value = Math.max(0, nanos);
+        buckets[bucket(value)].increment();
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMillis() {
+        final long numberOfValues = count.sum();
+        return numberOfValues == 0 ? 0 : totalNanos.sum() / 1e6 / numberOfValues;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * @param percentile e.g. 99.9
+     * @return the highest value of the bucket the percentile falls into, 0 if nothing was recorded
+     */
+    public double getPercentileMillis(double percentile) {
+        final long[] snapshot = new long[buckets.length];
+        long numberOfValues = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            snapshot[i] = buckets[i].sum();
+            numberOfValues += snapshot[i];
+        }
+        if (numberOfValues == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * numberOfValues));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), maxNanos.get()) / 1e6;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /** @return "p50 1.2 p90 3.4 p99 5.6 max 7.8 ms" */
+    public String summary() {
+        return String.format("p50 %.2f p90 %.2f p99 %.2f max %.2f ms",
+                getPercentileMillis(50), getPercentileMillis(90), getPercentileMillis(99), getMaxMillis());
+    }
+
+    /** Values below SUB_BUCKETS get a bucket each, above that each power of two is split into SUB_BUCKETS buckets. */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        final int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        final long lowestValue = (long) (SUB_BUCKETS + subBucket) << shift;
+        return lowestValue + (1L << shift) - 1;
+    }
+}
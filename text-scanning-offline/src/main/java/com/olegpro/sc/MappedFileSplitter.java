@@ -0,0 +1,104 @@
+package com.olegpro.sc;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the file into regions that can be chunked and scanned independently, each by its own thread.
+ * The nominal split points are evenly spaced and then moved forward to the end of the next chunk delimiter,
+ * so that no chunk is ever cut in two.
+ * This is the "start reading the file in parallel at various points" approach from the README.
+ */
+public class MappedFileSplitter {
+    static final int BOUNDARY_SEARCH_WINDOW = 4 * 1024;
+    private final FileChannel channel;
+    private final long maxRegionSize;
+
+    /**
+     * @param channel file to split
+     * @param maxRegionSize the largest region to aim for. A single mapping can't exceed 2 GB,
+     *                      and it also limits how much output is buffered per region.
+     */
+    public MappedFileSplitter(FileChannel channel, long maxRegionSize) {
+        if (maxRegionSize <= 0 || maxRegionSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Region size should be between 1 and " + Integer.MAX_VALUE);
+        }
+        this.channel = channel;
+        this.maxRegionSize = maxRegionSize;
+    }
+
+    /**
+     * @param numberOfRegions minimum number of regions to split into. Will be more if the file is too large for maxRegionSize.
+     * @return ordered list of regions covering the whole file.
+     * Can return fewer regions than requested when the file has fewer chunks.
+     */
+    public List<FileRegion> split(int numberOfRegions) throws IOException {
+        final long size = channel.size();
+        final long regionCount = Math.max(Math.max(1, numberOfRegions), (size + maxRegionSize - 1) / maxRegionSize);
+        final long nominalRegionSize = Math.max(1, size / regionCount);
+        List<FileRegion> regions = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + nominalRegionSize);
+            if (end < size) {
+                end = nextChunkStart(end, size);
+            }
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Could not find a chunk delimiter between %d and %d", start, end));
+            }
+            regions.add(new FileRegion(start, end));
+            start = end;
+        }
+        return regions;
+    }
+
+    /**
+     * @param position where to start looking
+     * @param size size of the file
+     * @return position right after the first complete delimiter found at or after the given position, or the file size.
+     * It doesn't tell whether the position is inside a delimiter, it takes the first new line at or after it that is followed by
+     * whitespace with another new line, and returns right after the last new line of that run, same as the greedy regexp.
+     * If the position is in the middle of a delimiter with two or more of its new lines left, that's the end of the same delimiter.
+     * If only its last new line is left, the chunk follows it, so that new line is passed over and the split moves on
+     * to the end of the next delimiter, one chunk later. Either way the region after the split starts with a chunk,
+     * and the first region of a file that starts with a delimiter is fine too: ByteBufferChunker skips a delimiter at the start.
+     */
+    long nextChunkStart(long position, long size) throws IOException {
+        long windowSize = BOUNDARY_SEARCH_WINDOW;
+        while (true) {
+            final long windowEnd = Math.min(size, position + windowSize);
+            final boolean lastWindow = windowEnd == size;
+            final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowEnd - position);
+            final int limit = window.limit();
+            boolean windowTooSmall = false;
+            for (int i = 0; i < limit && !windowTooSmall; i++) {
+                if (window.get(i) != '\n') {
+                    continue;
+                }
+                int lastNewLine = -1;
+                int j = i + 1;
+                while (j < limit && ByteBufferChunker.isWhitespace(window.get(j))) {
+                    if (window.get(j) == '\n') {
+                        lastNewLine = j;
+                    }
+                    j++;
+                }
+                if (j == limit && !lastWindow) {
+                    // the whitespace run may continue past the window, so we can't tell where the delimiter ends yet
+                    windowTooSmall = true;
+                } else if (lastNewLine >= 0) {
+                    return position + lastNewLine + 1;
+                } else {
+                    i = j - 1;
+                }
+            }
+            if (!windowTooSmall && lastWindow) {
+                return size;
+            }
+            windowSize *= 2;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.olegpro.sc;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Logs a summary line of the ScanMetrics every few seconds, on a daemon thread, with the rates over the last interval.
+ * Closing it stops the reporting, nothing is logged on close.
+ */
+public class MetricsReporter implements Closeable {
+    private final ScanMetrics metrics;
+    private final Consumer<String> logOutputProvider;
+    private final ScheduledExecutorService scheduler;
+    private long lastChunks;
+    private long lastBytes;
+    private long lastNanos;
+
+    /**
+     * @param intervalSeconds 0 doesn't report at all
+     */
+    public MetricsReporter(ScanMetrics metrics, long intervalSeconds, Consumer<String> logOutputProvider) {
+        this.metrics = metrics;
+        this.logOutputProvider = logOutputProvider;
+        this.lastChunks = metrics.getChunks();
+        this.lastBytes = metrics.getBytes();
+        this.lastNanos = System.nanoTime();
+        if (intervalSeconds <= 0) {
+            this.scheduler = null;
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Also called by the scheduler. */
+    synchronized void report() {
+        final long chunks = metrics.getChunks();
+        final long bytes = metrics.getBytes();
+        final long nanos = System.nanoTime();
+        final double seconds = Math.max(1e-9, (nanos - lastNanos) / 1e9);
+        logOutputProvider.accept(String.format("Last %.0f s: %.0f chunks/s, %.2f MB/s. %s",
+                seconds, (chunks - lastChunks) / seconds, (bytes - lastBytes) / seconds / (1024 * 1024), metrics.summary()));
+        lastChunks = chunks;
+        lastBytes = bytes;
+        lastNanos = nanos;
+    }
+
+    @Override
+    public void close() {
+        if (null != scheduler) {
+            scheduler.shutdownNow();
+        }
+    }
+}
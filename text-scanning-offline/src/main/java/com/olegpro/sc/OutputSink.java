@@ -0,0 +1,28 @@
+package com.olegpro.sc;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Where the scanned numbers go. Takes whole records, or a whole block of records at once, never single digits.
+ * It's a functional interface, so anything with an append(CharSequence) fits, e.g. StringBuilder::append in tests.
+ * Implementations can buffer, so flush() has to be called once the scanning is done.
+ */
+@FunctionalInterface
+public interface OutputSink extends Flushable, Closeable {
+
+    /**
+     * @param records one or more complete records, each followed by the record separator
+     */
+    void write(CharSequence records) throws IOException;
+
+    @Override
+    default void flush() throws IOException {
+    }
+
+    @Override
+    default void close() throws IOException {
+        flush();
+    }
+}
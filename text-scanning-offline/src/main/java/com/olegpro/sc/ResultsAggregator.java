@@ -1,58 +1,238 @@
 package com.olegpro.sc;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.function.Consumer;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
-
 /**
+ * Writes the results of the blocks out in the order they were added.
+ * The queue is bounded, so the producer blocks in add() while it's full, which is what limits the amount of blocks in memory.
+ * The aggregator blocks on the next result in order and writes it as soon as it's ready. There is no polling on either side.
  * I decided not to add the "implements Deque<>" as it would add too much noise.</>
+ * With an in-flight budget, e.g. in the batch mode, the permits of every block are released once it's written,
+ * which is what limits the memory across many files scanned at the same time.
+ * With checkpointTo() it also saves a ScanCheckpoint every few blocks, after the output is flushed, so that the scan can be resumed.
+ * Once a block fails the checkpoint stays right before it, so that resuming scans the failed block again, and the reason is logged.
+ * With recordTo() it counts the blocks in flight, the waits on the full queue and how long it waits for the next block in order.
  */
 public class ResultsAggregator implements Runnable {
-    public static final int TIMEOUT_MILLISECONDS = 1;
-    LinkedList<Future<String>> resultsQueue = new LinkedList<>();
-    Consumer<String> dataOutputProvider;
+    /** Marks the end of the results, added by finishPublishing(). */
+    private static final PendingResult END_OF_RESULTS = new PendingResult(CompletableFuture.completedFuture(null), -1, -1, 0);
+    private final BlockingQueue<PendingResult> resultsQueue;
+    private final InFlightBudget inFlightBudget;
+    OutputSink dataOutputProvider;
     Consumer<String> logOutputProvider;
-    boolean finishedPublishing = false;
+    private String checkpointFilePath = null;
+    private int numberOfBlocksBetweenCheckpoints;
+    private long outputOffset = 0;
+    private ScanCheckpoint pendingCheckpoint = null;
+    private ScanCheckpoint lastCheckpoint = null;
+    private ScanCheckpoint resumedFrom = ScanCheckpoint.START;
+    private int blocksSinceLastCheckpoint = 0;
+    private int failedBlockNumber = -1;
+    private int numberOfFailedBlocks = 0;
+    private ScanMetrics metrics = null;
+
+    public ResultsAggregator(OutputSink dataOutputProvider, Consumer<String> logOutputProvider) {
+        this(dataOutputProvider, logOutputProvider, Integer.MAX_VALUE);
+    }
 
-    public ResultsAggregator(Consumer<String> dataOutputProvider, Consumer<String> logOutputProvider) {
+    /**
+     * @param capacity maximum number of results waiting in the queue, the end of results marker counts as one.
+     *                 There can be one more result in flight, the one the aggregator is currently waiting for.
+     */
+    public ResultsAggregator(OutputSink dataOutputProvider, Consumer<String> logOutputProvider, int capacity) {
+        this(dataOutputProvider, logOutputProvider, capacity, null);
+    }
+
+    /**
+     * @param inFlightBudget can be shared between aggregators, the permits each block was added with are released once it's written
+     */
+    public ResultsAggregator(OutputSink dataOutputProvider, Consumer<String> logOutputProvider, int capacity, InFlightBudget inFlightBudget) {
         this.dataOutputProvider = dataOutputProvider;
         this.logOutputProvider = logOutputProvider;
+        this.resultsQueue = new LinkedBlockingQueue<>(capacity);
+        this.inFlightBudget = inFlightBudget;
+    }
+
+    /**
+     * Blocks while the queue is full.
+     * @param result future result of the next block in order
+     */
+    public void add(Future<String> result) throws InterruptedException {
+        add(result, -1, -1);
+    }
+
+    /**
+     * Blocks while the queue is full.
+     * @param result future result of the next block in order
+     * @param blockNumber number of the block, goes into the checkpoint
+     * @param inputOffset input offset right after the last chunk of the block, goes into the checkpoint
+     */
+    public void add(Future<String> result, int blockNumber, long inputOffset) throws InterruptedException {
+        add(result, blockNumber, inputOffset, 0);
+    }
+
+    /**
+     * Blocks while the queue is full.
+     * @param result future result of the next block in order
+     * @param blockNumber number of the block, goes into the checkpoint
+     * @param inputOffset input offset right after the last chunk of the block, goes into the checkpoint
+     * @param permits permits of the in-flight budget the block holds, they are released once it's written
+     */
+    public void add(Future<String> result, int blockNumber, long inputOffset, int permits) throws InterruptedException {
+        final PendingResult pendingResult = new PendingResult(result, blockNumber, inputOffset, permits);
+        if (null != metrics) {
+            metrics.blockSubmitted();
+        }
+        if (!resultsQueue.offer(pendingResult)) {
+            logOutputProvider.accept(String.format("Waiting for the queue to clear before scheduling more tasks. %n"));
+            if (null != metrics) {
+                metrics.queueFull();
+            }
+            resultsQueue.put(pendingResult);
+        }
+    }
+
+    /**
+     * Turns the checkpoints on. Call before the aggregator is started.
+     * @param checkpointFilePath where the checkpoints are saved
+     * @param numberOfBlocksBetweenCheckpoints the output is flushed for every checkpoint, so it shouldn't be every block
+     * @param resumedFrom checkpoint the scan is resumed from, the output offsets continue from it
+     */
+    public void checkpointTo(String checkpointFilePath, int numberOfBlocksBetweenCheckpoints, ScanCheckpoint resumedFrom) {
+        this.checkpointFilePath = checkpointFilePath;
+        this.numberOfBlocksBetweenCheckpoints = Math.max(1, numberOfBlocksBetweenCheckpoints);
+        this.outputOffset = resumedFrom.getOutputOffset();
+        this.resumedFrom = resumedFrom;
+    }
+
+    /** Turns the metrics on. Call before the first add(). */
+    public void recordTo(ScanMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** @return number of the first block that failed while checkpointing, -1 if there was none */
+    public int getFailedBlockNumber() {
+        return failedBlockNumber;
+    }
+
+    /** @return number of blocks whose results couldn't be written, with or without checkpoints. Read it once run() returned */
+    public int getNumberOfFailedBlocks() {
+        return numberOfFailedBlocks;
     }
 
-    public void add(Future<String> result) {
-        resultsQueue.add(result);
+    /** @return the last checkpoint saved, null if there was none */
+    public ScanCheckpoint getLastCheckpoint() {
+        return lastCheckpoint;
+    }
+
+    /** No more results will be added. The aggregator terminates after writing out the ones already added. */
+    public void finishPublishing() throws InterruptedException {
+        resultsQueue.put(END_OF_RESULTS);
     }
 
     public int size() {
         return resultsQueue.size();
     }
+
     @Override
     public void run() {
         while (true) {
-            if (resultsQueue.size() == 0) {
-                if (finishedPublishing) {
-                    logOutputProvider.accept(String.format("Terminating the results aggregator %n "));
-                    return;
-                }
-                try {
-                    MILLISECONDS.sleep(TIMEOUT_MILLISECONDS);
-                } catch (InterruptedException e) {
-                    logOutputProvider.accept(String.format("Failed to wait: %s %n ", e.getMessage()));
+            final PendingResult result;
+            try {
+                result = resultsQueue.take();
+            } catch (InterruptedException e) {
+                logOutputProvider.accept(String.format("Interrupted while waiting for results: %s %n ", e.getMessage()));
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (result == END_OF_RESULTS) {
+                saveCheckpoint();
+                logOutputProvider.accept(String.format("Terminating the results aggregator %n "));
+                return;
+            }
+            final long waitStartTime = System.nanoTime();
+            try {
+                // this operation will be processing the results in the order they were scanned, so it may be waiting for result N while N+1 is already processed.
+                // the whole block goes to the sink in one write
+                final String data = result.result.get();
+                dataOutputProvider.write(data);
+                blockWritten(result, data);
+            } catch (InterruptedException e) {
+                logOutputProvider.accept(String.format("Failed to add the results from a batch with error: %s %n ", e.getMessage()));
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | IOException e) {
+                logOutputProvider.accept(String.format("Failed to add the results from a batch with error: %s %n ", e.getMessage()));
+                numberOfFailedBlocks++;
+                blockFailed(result);
+            } finally {
+                if (null != inFlightBudget && result.permits > 0) {
+                    inFlightBudget.release(result.permits);
                 }
-            } else {
-                try {
-                    // this operation will be processing the results in the order they were scanned, so it may be waiting for result N while N+1 is already processed.
-                    String result = resultsQueue.pop().get();
-                    dataOutputProvider.accept(result);
-                } catch (InterruptedException e) {
-                    logOutputProvider.accept(String.format("Failed to add the results from a batch with error: %s %n ", e.getMessage()));
-                } catch (ExecutionException e) {
-                    logOutputProvider.accept(String.format("Failed to add the results from a batch with error: %s %n ", e.getMessage()));
+                if (null != metrics) {
+                    metrics.blockWritten(System.nanoTime() - waitStartTime);
                 }
             }
         }
     }
+
+    /** The records are ASCII, so the number of characters is the number of bytes written. */
+    private void blockWritten(PendingResult result, String data) {
+        if (null == checkpointFilePath || result.blockNumber < 0 || failedBlockNumber >= 0) {
+            return;
+        }
+        outputOffset += data.length();
+        pendingCheckpoint = new ScanCheckpoint(result.blockNumber, result.inputOffset, outputOffset);
+        if (++blocksSinceLastCheckpoint >= numberOfBlocksBetweenCheckpoints) {
+            saveCheckpoint();
+        }
+    }
+
+    /** Saves the checkpoint of the blocks before the failed one, and it's the last one. */
+    private void blockFailed(PendingResult result) {
+        if (null == checkpointFilePath || result.blockNumber < 0 || failedBlockNumber >= 0) {
+            return;
+        }
+        failedBlockNumber = result.blockNumber;
+        saveCheckpoint();
+        logOutputProvider.accept(String.format("The block %d failed, the checkpoint stops advancing at %s. Resuming scans again from there %n",
+                failedBlockNumber, null != lastCheckpoint ? lastCheckpoint : resumedFrom == ScanCheckpoint.START ? "the start" : resumedFrom));
+    }
+
+    /** The output is flushed first, the checkpoint never gets ahead of what is actually in the output. */
+    private void saveCheckpoint() {
+        if (null == pendingCheckpoint) {
+            return;
+        }
+        try {
+            dataOutputProvider.flush();
+            pendingCheckpoint.save(checkpointFilePath);
+            lastCheckpoint = pendingCheckpoint;
+            pendingCheckpoint = null;
+            blocksSinceLastCheckpoint = 0;
+        } catch (IOException e) {
+            logOutputProvider.accept(String.format("Failed to save the checkpoint with error: %s %n ", e.getMessage()));
+        }
+    }
+
+    /** Result of a block along with where it ends in the input. */
+    private static class PendingResult {
+        final Future<String> result;
+        final int blockNumber;
+        final long inputOffset;
+        final int permits;
+
+        PendingResult(Future<String> result, int blockNumber, long inputOffset, int permits) {
+            this.result = result;
+            this.blockNumber = blockNumber;
+            this.inputOffset = inputOffset;
+            this.permits = permits;
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.olegpro.sc;
 
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public class ScanBlockOfChunksTask implements Callable<String> {
@@ -11,30 +12,62 @@ public class ScanBlockOfChunksTask implements Callable<String> {
         this.scanner = scanner;
     }
 
+    /**
+     * @param blockSize characters in the block
+     * @param blockSizer gets told how long the block took
+     */
+    public ScanBlockOfChunksTask(List<String> block, int blockNumber, DigitalNumberScanner scanner, int blockSize, AdaptiveBlockSizer blockSizer) {
+        this(block, blockNumber, scanner);
+        this.blockSize = blockSize;
+        this.blockSizer = blockSizer;
+    }
+
+    /**
+     * @param chunkOffsets offset of every chunk of the block in the input, in the same order
+     */
+    public ScanBlockOfChunksTask(List<String> block, long[] chunkOffsets, int blockNumber, DigitalNumberScanner scanner, int blockSize, AdaptiveBlockSizer blockSizer) {
+        this(block, blockNumber, scanner, blockSize, blockSizer);
+        this.chunkOffsets = chunkOffsets;
+    }
+
     List<String> block;
+    long[] chunkOffsets = null; // unknown
     int blockNumber;
     DigitalNumberScanner scanner;
+    int blockSize;
+    AdaptiveBlockSizer blockSizer = null;
 
     @Override
     public String call() throws Exception {
         StringBuilder data = new StringBuilder();
-        scanBlockOfChunks(block, data::append, System.out::print);
+        scanBlockOfChunks(block, data::append, scanner.logOutputProvider);
         return data.toString();
     }
 
-    public void scanBlockOfChunks(List<String> block, Consumer<String> dataOutputProvider, Consumer<String> logOutputProvider) throws ScanException {
+    public void scanBlockOfChunks(List<String> block, OutputSink dataOutputProvider, Consumer<String> logOutputProvider) throws ScanException {
         try {
-            long startTime = System.currentTimeMillis();
+            long startTime = System.nanoTime();
             logOutputProvider.accept(String.format("Scanning the block %d %n", blockNumber));
+            long numberOfBytes = 0;
+            int chunkNumber = 0;
             for (String chunk : block) {
+                numberOfBytes += chunk.length();
+                final long offset = null == chunkOffsets ? DeadLetterWriter.UNKNOWN_OFFSET : chunkOffsets[chunkNumber];
+                chunkNumber++;
                 try {
-                    scanner.scanChunk(chunk, dataOutputProvider, logOutputProvider);
+                    scanner.scanChunk(chunk, offset, dataOutputProvider, logOutputProvider);
                 } catch (Exception e) {
                     // this is what would go into log for investigation and manual correction later.
                     logOutputProvider.accept("Failed processing one chunk but proceeding with others. Error" + e.getStackTrace());
                 }
             }
-            logOutputProvider.accept(String.format("Completed the block %d in %d ms. %n", blockNumber, System.currentTimeMillis() - startTime));
+            final long elapsedNanos = System.nanoTime() - startTime;
+            scanner.metrics.chunksScanned(block.size(), numberOfBytes);
+            scanner.metrics.blockScanned(elapsedNanos);
+            logOutputProvider.accept(String.format("Completed the block %d in %d ms. %n", blockNumber, TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+            if (null != blockSizer) {
+                blockSizer.blockCompleted(block.size(), (int) numberOfBytes, elapsedNanos);
+            }
         } catch (Exception e) {
             throw new ScanException(e);
         }
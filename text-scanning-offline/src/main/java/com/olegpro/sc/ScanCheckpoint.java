@@ -0,0 +1,86 @@
+package com.olegpro.sc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Where a resumable scan got to: the last block fully written to the output,
+ * the input offset right after its last chunk and the size of the output at that point.
+ * A restart reads the input from inputOffset, truncates the output to outputOffset and carries on from the next block.
+ */
+public class ScanCheckpoint {
+    /** Nothing scanned yet. */
+    static final ScanCheckpoint START = new ScanCheckpoint(-1, 0, 0);
+    static final String BLOCK_NUMBER_PROPERTY = "scan.checkpoint.blockNumber";
+    static final String INPUT_OFFSET_PROPERTY = "scan.checkpoint.inputOffset";
+    static final String OUTPUT_OFFSET_PROPERTY = "scan.checkpoint.outputOffset";
+    private final int blockNumber;
+    private final long inputOffset;
+    private final long outputOffset;
+
+    public ScanCheckpoint(int blockNumber, long inputOffset, long outputOffset) {
+        this.blockNumber = blockNumber;
+        this.inputOffset = inputOffset;
+        this.outputOffset = outputOffset;
+    }
+
+    public int getBlockNumber() {
+        return blockNumber;
+    }
+
+    public long getInputOffset() {
+        return inputOffset;
+    }
+
+    public long getOutputOffset() {
+        return outputOffset;
+    }
+
+    /**
+     * Writes into a temporary file next to the checkpoint file first and then moves it over,
+     * so a crash in the middle leaves the previous checkpoint intact.
+     */
+    public void save(String checkpointFilePath) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(BLOCK_NUMBER_PROPERTY, String.valueOf(blockNumber));
+        properties.setProperty(INPUT_OFFSET_PROPERTY, String.valueOf(inputOffset));
+        properties.setProperty(OUTPUT_OFFSET_PROPERTY, String.valueOf(outputOffset));
+        final Path checkpointFile = Paths.get(checkpointFilePath);
+        final Path temporaryFile = Paths.get(checkpointFilePath + ".tmp");
+        try (OutputStream outputStream = Files.newOutputStream(temporaryFile)) {
+            properties.store(outputStream, "Digital number scanner checkpoint");
+        }
+        Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** @return the saved checkpoint or START if there is no checkpoint file yet */
+    public static ScanCheckpoint loadOrStart(String checkpointFilePath) throws IOException {
+        final Path checkpointFile = Paths.get(checkpointFilePath);
+        if (!Files.exists(checkpointFile)) {
+            return START;
+        }
+        final Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(checkpointFile)) {
+            properties.load(inputStream);
+        }
+        try {
+            return new ScanCheckpoint(
+                    Integer.parseInt(properties.getProperty(BLOCK_NUMBER_PROPERTY)),
+                    Long.parseLong(properties.getProperty(INPUT_OFFSET_PROPERTY)),
+                    Long.parseLong(properties.getProperty(OUTPUT_OFFSET_PROPERTY)));
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("Corrupt checkpoint file %s", checkpointFilePath), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("block %d, input offset %d, output offset %d", blockNumber, inputOffset, outputOffset);
+    }
+}
@@ -0,0 +1,42 @@
+package com.olegpro.sc;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Executors for the scanning tasks.
+ * The project is compiled for Java 8, so the virtual thread executor (Java 21) is looked up at runtime.
+ */
+public class ScanExecutors {
+    static final String VIRTUAL_THREAD_EXECUTOR_METHOD = "newVirtualThreadPerTaskExecutor";
+
+    private ScanExecutors() {
+    }
+
+    /**
+     * @return executor starting a new virtual thread for every task.
+     * On a JDK without virtual threads it falls back to a cached pool of platform threads, i.e. also a thread per task,
+     * as many as there are blocks in flight, and warns about it: that's not what the mode is meant for.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(Consumer<String> logOutputProvider) {
+        try {
+            return (ExecutorService) Executors.class.getMethod(VIRTUAL_THREAD_EXECUTOR_METHOD).invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logOutputProvider.accept(String.format("WARNING: Virtual threads are not available on Java %s, falling back to a platform thread per task."
+                    + " There is a platform thread for every block in flight, only the in-flight budget limits them."
+                    + " Use Java 21+ or the fixed pool (no virtual flag) %n", System.getProperty("java.version")));
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /** @return true if newVirtualThreadPerTaskExecutor gives virtual threads on this JDK */
+    public static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod(VIRTUAL_THREAD_EXECUTOR_METHOD);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
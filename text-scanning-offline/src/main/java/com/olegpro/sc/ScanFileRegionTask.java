@@ -0,0 +1,90 @@
+package com.olegpro.sc;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Maps its own region of the file into memory, chunks it and scans the chunks.
+ * Unlike ScanBlockOfChunksTask, the input isn't read by the main thread, every task reads its own part of the file.
+ */
+public class ScanFileRegionTask implements Callable<String> {
+    public ScanFileRegionTask(FileChannel channel, FileRegion region, int regionNumber, DigitalNumberScanner scanner) {
+        this.channel = channel;
+        this.region = region;
+        this.regionNumber = regionNumber;
+        this.scanner = scanner;
+    }
+
+    FileChannel channel;
+    FileRegion region;
+    int regionNumber;
+    DigitalNumberScanner scanner;
+
+    @Override
+    public String call() throws Exception {
+        StringBuilder data = new StringBuilder();
+        scanRegion(data, scanner.logOutputProvider);
+        return data.toString();
+    }
+
+    public void scanRegion(StringBuilder data, Consumer<String> logOutputProvider) throws ScanException {
+        try {
+            long startTime = System.nanoTime();
+            logOutputProvider.accept(String.format("Scanning the region %d %s %n", regionNumber, region));
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, region.getStart(), region.size());
+            scanMappedChunks(channel, buffer, region.getStart(), scanner.newByteChunkScanner(), data, logOutputProvider);
+            final long elapsedNanos = System.nanoTime() - startTime;
+            scanner.metrics.blockScanned(elapsedNanos);
+            logOutputProvider.accept(String.format("Completed the region %d in %d ms. %n", regionNumber, TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+        } catch (Exception e) {
+            throw new ScanException(e);
+        }
+    }
+
+    /**
+     * Well formed chunks are scanned straight from the mapped bytes, corrupt ones are rejected with their offset in the file,
+     * the rest go through the String based scanChunk.
+     * @param channel the input file, corrupt chunks are copied from it to the dead letter file
+     * @param buffer chunks between its position and limit are scanned
+     * @param bufferOffset offset of the buffer in the input file
+     */
+    static void scanMappedChunks(FileChannel channel, ByteBuffer buffer, long bufferOffset, ByteChunkScanner chunkScanner,
+                                 StringBuilder data, Consumer<String> logOutputProvider) {
+        final DigitalNumberScanner scanner = chunkScanner.scanner();
+        ByteBufferChunker chunker = new ByteBufferChunker(buffer);
+        long numberOfChunks = 0;
+        long numberOfBytes = 0;
+        while (chunker.hasNext()) {
+            final int chunkStart = chunker.chunkStart();
+            final int chunkEnd = chunker.chunkEnd();
+            chunker.skip();
+            numberOfChunks++;
+            numberOfBytes += chunkEnd - chunkStart;
+            final long offset = bufferOffset + chunkStart;
+            try {
+                if (!chunkScanner.scan(buffer, chunkStart, chunkEnd, offset, data)) {
+                    final String rejectionReason = chunkScanner.rejectionReason();
+                    if (null != rejectionReason && null != scanner.deadLetterWriter) {
+                        // straight from the input file to the dead letter file, no Strings involved
+                        scanner.metrics.invalidChunk();
+                        scanner.deadLetterWriter.write(channel, offset, chunkEnd - chunkStart, rejectionReason);
+                        logOutputProvider.accept(String.format("Chunk at %d sent to the dead letter file: %s%n", offset, rejectionReason));
+                    } else if (null != rejectionReason) {
+                        scanner.rejectChunk(ByteBufferChunker.toString(buffer, chunkStart, chunkEnd), offset, rejectionReason, logOutputProvider);
+                    } else {
+                        scanner.scanChunk(ByteBufferChunker.toString(buffer, chunkStart, chunkEnd), offset, data::append, logOutputProvider);
+                    }
+                }
+            } catch (Exception e) {
+                // this is what would go into log for investigation and manual correction later.
+                logOutputProvider.accept("Failed processing one chunk but proceeding with others. Error" + e.getStackTrace());
+            }
+        }
+        scanner.metrics.chunksScanned(numberOfChunks, numberOfBytes);
+        chunkScanner.recordGlyphs(scanner.metrics);
+    }
+}
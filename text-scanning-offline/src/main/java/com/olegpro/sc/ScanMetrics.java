@@ -0,0 +1,200 @@
+package com.olegpro.sc;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the scan, shared by all the threads of the scanner.
+ * All of them are LongAdders (striped), so the threads recording at the same time don't contend on one counter.
+ * The hot paths record as little as possible: chunks and bytes are added once per block or region,
+ * ByteChunkScanner counts the glyphs in plain fields and adds them once per region.
+ * Exposed over JMX with registerMBean(), and as a summary line, see summary() and MetricsReporter.
+ */
+public class ScanMetrics implements ScanMetricsMXBean {
+    static final String OBJECT_NAME = "com.olegpro.sc:type=ScanMetrics";
+    private final long startNanos = System.nanoTime();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder exactGlyphs = new LongAdder();
+    private final LongAdder fuzzyGlyphs = new LongAdder();
+    private final LongAdder unrecognizedGlyphs = new LongAdder();
+    private final LongAdder invalidChunks = new LongAdder();
+    private final LongAdder blocksInFlight = new LongAdder();
+    private final LongAdder blocksWritten = new LongAdder();
+    private final LongAdder queueFullWaits = new LongAdder();
+    /** How long a block (or a mapped region) takes to scan. */
+    private final LatencyHistogram blockLatency = new LatencyHistogram();
+    /** How long ResultsAggregator waits for the next block in order, i.e. the head of line blocking. */
+    private final LatencyHistogram resultWait = new LatencyHistogram();
+
+    public void chunksScanned(long numberOfChunks, long numberOfBytes) {
+        chunks.add(numberOfChunks);
+        bytes.add(numberOfBytes);
+    }
+
+    public void glyphsRecognized(long exact, long fuzzy, long unrecognized) {
+        if (exact != 0) {
+            exactGlyphs.add(exact);
+        }
+        if (fuzzy != 0) {
+            fuzzyGlyphs.add(fuzzy);
+        }
+        if (unrecognized != 0) {
+            unrecognizedGlyphs.add(unrecognized);
+        }
+    }
+
+    public void exactGlyph() {
+        exactGlyphs.increment();
+    }
+
+    public void fuzzyGlyph() {
+        fuzzyGlyphs.increment();
+    }
+
+    public void unrecognizedGlyph() {
+        unrecognizedGlyphs.increment();
+    }
+
+    public void invalidChunk() {
+        invalidChunks.increment();
+    }
+
+    public void blockScanned(long elapsedNanos) {
+        blockLatency.record(elapsedNanos);
+    }
+
+    public void blockSubmitted() {
+        blocksInFlight.increment();
+    }
+
+    /** @param resultWaitNanos how long the aggregator waited for the block after it got to the head of the queue */
+    public void blockWritten(long resultWaitNanos) {
+        blocksInFlight.decrement();
+        blocksWritten.increment();
+        resultWait.record(resultWaitNanos);
+    }
+
+    public void queueFull() {
+        queueFullWaits.increment();
+    }
+
+    public LatencyHistogram getBlockLatency() {
+        return blockLatency;
+    }
+
+    public LatencyHistogram getResultWait() {
+        return resultWait;
+    }
+
+    @Override
+    public long getChunks() {
+        return chunks.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public double getChunksPerSecond() {
+        return perSecond(getChunks());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(getBytes());
+    }
+
+    @Override
+    public long getExactGlyphs() {
+        return exactGlyphs.sum();
+    }
+
+    @Override
+    public long getFuzzyGlyphs() {
+        return fuzzyGlyphs.sum();
+    }
+
+    @Override
+    public long getUnrecognizedGlyphs() {
+        return unrecognizedGlyphs.sum();
+    }
+
+    @Override
+    public long getInvalidChunks() {
+        return invalidChunks.sum();
+    }
+
+    @Override
+    public long getBlocksInFlight() {
+        return blocksInFlight.sum();
+    }
+
+    @Override
+    public long getBlocksWritten() {
+        return blocksWritten.sum();
+    }
+
+    @Override
+    public long getQueueFullWaits() {
+        return queueFullWaits.sum();
+    }
+
+    @Override
+    public double getBlockLatencyMeanMillis() {
+        return blockLatency.getMeanMillis();
+    }
+
+    @Override
+    public double getBlockLatencyP50Millis() {
+        return blockLatency.getPercentileMillis(50);
+    }
+
+    @Override
+    public double getBlockLatencyP99Millis() {
+        return blockLatency.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getBlockLatencyMaxMillis() {
+        return blockLatency.getMaxMillis();
+    }
+
+    @Override
+    public double getResultWaitP99Millis() {
+        return resultWait.getPercentileMillis(99);
+    }
+
+    /** @return everything in one line, with the rates averaged since the start */
+    public String summary() {
+        return String.format("Metrics: %d chunks (%.0f/s), %d bytes (%.2f MB/s), glyphs %d exact %d fuzzy %d unrecognized, %d invalid chunks, "
+                        + "%d blocks in flight, %d written, block latency %s, result wait %s %n",
+                getChunks(), getChunksPerSecond(), getBytes(), getBytesPerSecond() / (1024 * 1024),
+                getExactGlyphs(), getFuzzyGlyphs(), getUnrecognizedGlyphs(), getInvalidChunks(),
+                getBlocksInFlight(), getBlocksWritten(), blockLatency.summary(), resultWait.summary());
+    }
+
+    /**
+     * Registers under com.olegpro.sc:type=ScanMetrics on the platform MBean server, replacing what was registered there before.
+     * @return the name it's registered under
+     */
+    public ObjectName registerMBean() throws JMException {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = new ObjectName(OBJECT_NAME);
+        if (mBeanServer.isRegistered(objectName)) {
+            mBeanServer.unregisterMBean(objectName);
+        }
+        mBeanServer.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    private double perSecond(long count) {
+        final double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds <= 0 ? 0 : count / seconds;
+    }
+}
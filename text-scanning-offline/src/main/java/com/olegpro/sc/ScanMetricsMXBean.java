@@ -0,0 +1,39 @@
+package com.olegpro.sc;
+
+/**
+ * What ScanMetrics exposes over JMX, e.g. in JConsole under com.olegpro.sc:type=ScanMetrics.
+ * The rates are averages since the metrics were created, the latencies are in milliseconds.
+ */
+public interface ScanMetricsMXBean {
+    long getChunks();
+
+    long getBytes();
+
+    double getChunksPerSecond();
+
+    double getBytesPerSecond();
+
+    long getExactGlyphs();
+
+    long getFuzzyGlyphs();
+
+    long getUnrecognizedGlyphs();
+
+    long getInvalidChunks();
+
+    long getBlocksInFlight();
+
+    long getBlocksWritten();
+
+    long getQueueFullWaits();
+
+    double getBlockLatencyMeanMillis();
+
+    double getBlockLatencyP50Millis();
+
+    double getBlockLatencyP99Millis();
+
+    double getBlockLatencyMaxMillis();
+
+    double getResultWaitP99Millis();
+}
@@ -0,0 +1,97 @@
+package com.olegpro.sc;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Scans a part of a mapped region on a ForkJoinPool.
+ * Parts larger than leafSize are split in two at the chunk boundary nearest to the middle: the first half is forked,
+ * the second half is scanned by the same thread. Idle workers steal the forked halves, so an expensive part of the file,
+ * e.g. full of corrupt chunks matched fuzzily, is shared out among the workers instead of holding up one of them.
+ * The results are joined first half first, so they come out in the order of the input.
+ */
+public class ScanRegionRecursiveTask extends RecursiveTask<List<String>> {
+    private static final long serialVersionUID = 1L;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final long bufferOffset;
+    private final int start;
+    private final int end;
+    private final int leafSize;
+    private final DigitalNumberScanner scanner;
+
+    /**
+     * @param channel the input file
+     * @param buffer mapped region of the input
+     * @param bufferOffset offset of the region in the input file
+     * @param start position of the first chunk of the part in the buffer
+     * @param end position right after the last chunk of the part in the buffer
+     * @param leafSize parts of up to this many bytes are scanned by a single task
+     */
+    public ScanRegionRecursiveTask(FileChannel channel, ByteBuffer buffer, long bufferOffset, int start, int end, int leafSize,
+                                   DigitalNumberScanner scanner) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.bufferOffset = bufferOffset;
+        this.start = start;
+        this.end = end;
+        this.leafSize = leafSize;
+        this.scanner = scanner;
+    }
+
+    /** @return the results of the part, one piece per leaf task, in order */
+    @Override
+    protected List<String> compute() {
+        if (end - start > leafSize) {
+            final int middle = ByteBufferChunker.nextChunkStart(buffer, start + (end - start) / 2, end);
+            if (middle < end) {
+                ScanRegionRecursiveTask firstHalf = new ScanRegionRecursiveTask(channel, buffer, bufferOffset, start, middle, leafSize, scanner);
+                ScanRegionRecursiveTask secondHalf = new ScanRegionRecursiveTask(channel, buffer, bufferOffset, middle, end, leafSize, scanner);
+                firstHalf.fork();
+                List<String> secondHalfResults = secondHalf.compute();
+                List<String> results = firstHalf.join();
+                results.addAll(secondHalfResults);
+                return results;
+            }
+        }
+        // every task has its own view of the buffer and its own chunk scanner, both hold state
+        final ByteBuffer part = buffer.duplicate();
+        part.limit(end);
+        part.position(start);
+        final StringBuilder data = new StringBuilder();
+        ScanFileRegionTask.scanMappedChunks(channel, part, bufferOffset, scanner.newByteChunkScanner(), data, scanner.logOutputProvider);
+        final List<String> results = new ArrayList<>();
+        results.add(data.toString());
+        return results;
+    }
+
+    /**
+     * Maps the region and scans it on the pool of the calling worker.
+     * @return the results of the region in order
+     */
+    static String scanRegion(FileChannel channel, FileRegion region, int regionNumber, int leafSize, DigitalNumberScanner scanner) throws ScanException {
+        final Consumer<String> logOutputProvider = scanner.logOutputProvider;
+        try {
+            long startTime = System.nanoTime();
+            logOutputProvider.accept(String.format("Scanning the region %d %s %n", regionNumber, region));
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, region.getStart(), region.size());
+            List<String> results = new ScanRegionRecursiveTask(channel, buffer, region.getStart(), 0, buffer.limit(), leafSize, scanner).invoke();
+            StringBuilder data = new StringBuilder();
+            for (String result : results) {
+                data.append(result);
+            }
+            final long elapsedNanos = System.nanoTime() - startTime;
+            scanner.metrics.blockScanned(elapsedNanos);
+            logOutputProvider.accept(String.format("Completed the region %d in %d ms. %n", regionNumber, TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+            return data.toString();
+        } catch (Exception e) {
+            throw new ScanException(e);
+        }
+    }
+}
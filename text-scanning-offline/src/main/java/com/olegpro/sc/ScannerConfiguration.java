@@ -0,0 +1,407 @@
+package com.olegpro.sc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.function.IntSupplier;
+
+/**
+ * All the settings of the scanner, layered from these sources, every next one overriding the previous:
+ * <ol>
+ *     <li>the defaults, /DigitalNumberScanner.properties on the classpath,</li>
+ *     <li>the tuning profile, if one is chosen: /profiles/&lt;name&gt;.properties on the classpath,</li>
+ *     <li>an external properties file, e.g. per host,</li>
+ *     <li>system properties, e.g. -Ddigital.number.scanner.block.numberOfChunks=500,</li>
+ *     <li>command line options, see fromArguments().</li>
+ * </ol>
+ * The profile and the external file are themselves settings (profile, config) and are taken from the highest layer that has them.
+ * Everything is validated when loaded: the values have to parse and make sense, and keys that aren't known are rejected,
+ * so that a typo doesn't silently leave the default in place. All the problems are reported at once in the InitException.
+ */
+public class ScannerConfiguration {
+    static final String PREFIX = "digital.number.scanner.";
+    static final String DEFAULTS_CLASSPATH_RESOURCE_PATH = DigitalNumberScanner.APP_PROPERTIES_CLASSPATH_RESOURCE_PATH;
+    static final String PROFILE_CLASSPATH_RESOURCE_PATH = "/profiles/%s.properties";
+    static final String PROFILE_ARGUMENT_PREFIX = "profile=";
+    static final String CONFIG_FILE_ARGUMENT_PREFIX = "config=";
+    /** What the thread settings of 0 stand for, replaced in the tests to pretend a larger machine. */
+    static IntSupplier availableProcessors = Runtime.getRuntime()::availableProcessors;
+
+    /** Which of the DigitalNumberScanner scan methods App runs. */
+    public enum Engine {
+        SEQUENTIAL, PARALLEL, MAPPED, FORKJOIN, FOLLOW
+    }
+
+    /** What the output file is: lines of text, or fixed size records, see BinaryOutputSink. */
+    public enum OutputFormat {
+        TEXT, BINARY
+    }
+
+    /** What the value of a setting has to be. */
+    enum Kind {
+        /** 1 or more */
+        COUNT,
+        /** 1 or more, 0 for the number of available processors */
+        THREADS,
+        /** 1 or more, 0 turns it off */
+        OPTIONAL_COUNT,
+        /** 1 or more, 0 to infer it */
+        INFERRED_COUNT,
+        /** 1 or more bytes, with an optional K, M or G suffix, at most 2G - 1 */
+        SIZE,
+        BOOLEAN,
+        ENGINE,
+        FORMAT,
+        /** any text */
+        NAME
+    }
+
+    public enum Setting {
+        PROFILE("profile", Kind.NAME),
+        CONFIG("config", Kind.NAME),
+        DIGIT_WIDTH("digit.width", Kind.INFERRED_COUNT),
+        DIGIT_HEIGHT("digit.height", Kind.INFERRED_COUNT),
+        MAP_NUMBER_OF_DIGITS("map.numberOfDigits", Kind.INFERRED_COUNT),
+        CHUNK_NUMBER_OF_DIGITS("chunk.numberOfDigits", Kind.INFERRED_COUNT),
+        ENGINE("engine", Kind.ENGINE),
+        BLOCK_NUMBER_OF_CHUNKS("block.numberOfChunks", Kind.COUNT),
+        BLOCK_NUMBER_OF_PRE_FETCH_BLOCKS("block.numberOfPreFetchBlocks", Kind.COUNT),
+        BLOCK_ADAPTIVE("block.adaptive", Kind.BOOLEAN),
+        BLOCK_ADAPTIVE_TARGET_LATENCY_MILLIS("block.adaptive.targetLatencyMillis", Kind.COUNT),
+        BLOCK_ADAPTIVE_MIN_NUMBER_OF_CHUNKS("block.adaptive.minNumberOfChunks", Kind.COUNT),
+        BLOCK_ADAPTIVE_MAX_NUMBER_OF_CHUNKS("block.adaptive.maxNumberOfChunks", Kind.COUNT),
+        BLOCK_ADAPTIVE_MAX_PRE_FETCH_BLOCKS("block.adaptive.maxNumberOfPreFetchBlocks", Kind.COUNT),
+        PARALLEL_NUMBER_OF_THREADS("parallel.numberOfThreads", Kind.THREADS),
+        PARALLEL_VIRTUAL_THREADS("parallel.virtualThreads", Kind.BOOLEAN),
+        IN_FLIGHT_MAX_SIZE("inFlight.maxSize", Kind.SIZE),
+        MAPPED_MAX_REGION_SIZE("mapped.maxRegionSize", Kind.SIZE),
+        FORKJOIN_LEAF_SIZE("forkjoin.leafSize", Kind.SIZE),
+        FORKJOIN_NUMBER_OF_THREADS("forkjoin.numberOfThreads", Kind.THREADS),
+        CHECKPOINT_NUMBER_OF_BLOCKS_BETWEEN("checkpoint.numberOfBlocksBetween", Kind.COUNT),
+        OUTPUT_BUFFER_SIZE("output.bufferSize", Kind.SIZE),
+        OUTPUT_FORMAT("output.format", Kind.FORMAT),
+        OUTPUT_BINARY_MAX_DIGITS("output.binary.maxDigits", Kind.COUNT),
+        OUTPUT_BINARY_INDEX_INTERVAL("output.binary.indexInterval", Kind.COUNT),
+        RECOGNITION_FUZZY("recognition.fuzzy", Kind.BOOLEAN),
+        RECOGNITION_SWAR("recognition.swar", Kind.BOOLEAN),
+        RECOGNITION_DELAY("recognition.delay", Kind.BOOLEAN),
+        RECOGNITION_DELAY_MICROSECONDS("recognition.delayMicroseconds", Kind.COUNT),
+        FOLLOW_POLL_INTERVAL_MILLIS("follow.pollIntervalMillis", Kind.COUNT),
+        FOLLOW_IDLE_TIMEOUT_SECONDS("follow.idleTimeoutSeconds", Kind.OPTIONAL_COUNT),
+        METRICS_REPORT_INTERVAL_SECONDS("metrics.reportIntervalSeconds", Kind.OPTIONAL_COUNT),
+        METRICS_JMX("metrics.jmx", Kind.BOOLEAN);
+
+        final String key;
+        final Kind kind;
+
+        Setting(String name, Kind kind) {
+            this.key = PREFIX + name;
+            this.kind = kind;
+        }
+
+        static Setting forKey(String key) {
+            for (Setting setting : values()) {
+                if (setting.key.equals(key)) {
+                    return setting;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Properties properties;
+    private final List<String> sources;
+
+    private ScannerConfiguration(Properties properties, List<String> sources) {
+        this.properties = properties;
+        this.sources = sources;
+    }
+
+    /** @return the classpath defaults only */
+    public static ScannerConfiguration defaults() throws InitException {
+        return load(new Properties(), new Properties());
+    }
+
+    /**
+     * @param systemProperties only the keys starting with digital.number.scanner. are taken, e.g. System.getProperties()
+     * @param commandLine highest layer, e.g. from fromArguments()
+     * @throws InitException listing everything that's wrong, if anything is
+     */
+    public static ScannerConfiguration load(Properties systemProperties, Properties commandLine) throws InitException {
+        final List<String> sources = new ArrayList<>();
+        final Properties defaults = loadResource(DEFAULTS_CLASSPATH_RESOURCE_PATH, true);
+        sources.add("classpath:" + DEFAULTS_CLASSPATH_RESOURCE_PATH);
+        final Properties system = new Properties();
+        for (String key : systemProperties.stringPropertyNames()) {
+            if (key.startsWith(PREFIX)) {
+                system.setProperty(key, systemProperties.getProperty(key));
+            }
+        }
+
+        final String configFilePath = highest(Setting.CONFIG, commandLine, system, defaults);
+        final Properties external = new Properties();
+        if (null != configFilePath) {
+            try (InputStream inputStream = Files.newInputStream(Paths.get(configFilePath))) {
+                external.load(inputStream);
+            } catch (IOException e) {
+                throw new InitException(String.format("Cannot read the configuration file %s", configFilePath), e);
+            }
+        }
+        final String profile = highest(Setting.PROFILE, commandLine, system, external, defaults);
+        final Properties profileProperties = new Properties();
+        if (null != profile && !profile.isEmpty()) {
+            final String profileResourcePath = String.format(PROFILE_CLASSPATH_RESOURCE_PATH, profile);
+            final Properties loaded = loadResource(profileResourcePath, false);
+            if (null == loaded) {
+                throw new InitException(String.format("Unknown profile \"%s\", there is no %s on the classpath", profile, profileResourcePath));
+            }
+            profileProperties.putAll(loaded);
+            sources.add("profile:" + profile);
+        }
+        if (null != configFilePath) {
+            sources.add("file:" + configFilePath);
+        }
+        if (!system.isEmpty()) {
+            sources.add("system properties");
+        }
+        if (!commandLine.isEmpty()) {
+            sources.add("command line");
+        }
+
+        final Properties merged = new Properties();
+        for (Properties layer : new Properties[]{defaults, profileProperties, external, system, commandLine}) {
+            merged.putAll(layer);
+        }
+        final ScannerConfiguration configuration = new ScannerConfiguration(merged, Collections.unmodifiableList(sources));
+        configuration.validate();
+        return configuration;
+    }
+
+    /**
+     * Takes the settings out of the App arguments, the first argument (the input) is skipped:
+     * <ul>
+     *     <li>"profile=&lt;name&gt;" and "config=&lt;file&gt;",</li>
+     *     <li>any "digital.number.scanner.&lt;key&gt;=&lt;value&gt;",</li>
+     *     <li>the flags App always had: "parallel", "virtual", "adaptive", "mapped", "forkjoin", "follow", "delay" and "fuzzy".
+     *     If there are several engine flags, follow wins over forkjoin, forkjoin over mapped, mapped over the parallel ones, as it always did.</li>
+     * </ul>
+     * Anything else, e.g. "out=", is left to App.
+     */
+    public static Properties fromArguments(String[] args) {
+        final Properties properties = new Properties();
+        final List<String> arguments = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            arguments.add(args[i]);
+        }
+        if (arguments.contains("parallel") || arguments.contains("virtual") || arguments.contains("adaptive")) {
+            properties.setProperty(Setting.ENGINE.key, "parallel");
+        }
+        if (arguments.contains("mapped")) {
+            properties.setProperty(Setting.ENGINE.key, "mapped");
+        }
+        if (arguments.contains("forkjoin")) {
+            properties.setProperty(Setting.ENGINE.key, "forkjoin");
+        }
+        if (arguments.contains("follow")) {
+            properties.setProperty(Setting.ENGINE.key, "follow");
+        }
+        if (arguments.contains("virtual")) {
+            properties.setProperty(Setting.PARALLEL_VIRTUAL_THREADS.key, "true");
+        }
+        if (arguments.contains("adaptive")) {
+            properties.setProperty(Setting.BLOCK_ADAPTIVE.key, "true");
+        }
+        if (arguments.contains("delay")) {
+            properties.setProperty(Setting.RECOGNITION_DELAY.key, "true");
+        }
+        if (arguments.contains("fuzzy")) {
+            properties.setProperty(Setting.RECOGNITION_FUZZY.key, "true");
+        }
+        for (String argument : arguments) {
+            final int separator = argument.indexOf('=');
+            if (argument.startsWith(PROFILE_ARGUMENT_PREFIX)) {
+                properties.setProperty(Setting.PROFILE.key, argument.substring(PROFILE_ARGUMENT_PREFIX.length()));
+            } else if (argument.startsWith(CONFIG_FILE_ARGUMENT_PREFIX)) {
+                properties.setProperty(Setting.CONFIG.key, argument.substring(CONFIG_FILE_ARGUMENT_PREFIX.length()));
+            } else if (argument.startsWith(PREFIX) && separator > 0) {
+                properties.setProperty(argument.substring(0, separator), argument.substring(separator + 1));
+            }
+        }
+        return properties;
+    }
+
+    public int getInt(Setting setting) {
+        final String value = get(setting);
+        if (setting.kind == Kind.SIZE) {
+            return (int) parseSize(value);
+        }
+        final int number = Integer.parseInt(value);
+        if (setting == Setting.BLOCK_NUMBER_OF_PRE_FETCH_BLOCKS && isNumberOfProcessors(Setting.PARALLEL_NUMBER_OF_THREADS)) {
+            // a block ready for every thread, however many processors there turn out to be
+            return Math.max(number, availableProcessors.getAsInt() + 1);
+        }
+        return setting.kind == Kind.THREADS && number == 0 ? availableProcessors.getAsInt() : number;
+    }
+
+    /** @return true if the threads setting is 0, i.e. the number of processors of the machine it runs on */
+    private boolean isNumberOfProcessors(Setting setting) {
+        return Integer.parseInt(get(setting)) == 0;
+    }
+
+    public boolean getBoolean(Setting setting) {
+        return Boolean.parseBoolean(get(setting));
+    }
+
+    public Engine getEngine() {
+        return Engine.valueOf(get(Setting.ENGINE).toUpperCase(Locale.ROOT));
+    }
+
+    public OutputFormat getOutputFormat() {
+        return OutputFormat.valueOf(get(Setting.OUTPUT_FORMAT).toUpperCase(Locale.ROOT));
+    }
+
+    /** @return the value with the surrounding whitespace trimmed, properties files keep the trailing one */
+    public String get(Setting setting) {
+        final String value = properties.getProperty(setting.key);
+        return null == value ? null : value.trim();
+    }
+
+    /** @return where the settings came from, lowest layer first */
+    public List<String> getSources() {
+        return sources;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder description = new StringBuilder(String.join(" < ", sources));
+        for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+            description.append(String.format("%n  %s=%s", key, properties.getProperty(key)));
+        }
+        return description.toString();
+    }
+
+    private void validate() throws InitException {
+        final List<String> problems = new ArrayList<>();
+        for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+            final Setting setting = Setting.forKey(key);
+            if (null == setting) {
+                problems.add(String.format("unknown setting %s", key));
+            } else {
+                final String problem = check(setting, get(setting));
+                if (null != problem) {
+                    problems.add(String.format("%s=%s %s", key, properties.getProperty(key), problem));
+                }
+            }
+        }
+        for (Setting setting : Setting.values()) {
+            if (setting.kind != Kind.NAME && null == get(setting)) {
+                problems.add(String.format("%s is missing", setting.key));
+            }
+        }
+        if (problems.isEmpty()) {
+            checkConsistency(problems);
+        }
+        if (!problems.isEmpty()) {
+            throw new InitException(String.format("Invalid configuration (%s): %s", String.join(" < ", sources), String.join("; ", problems)));
+        }
+    }
+
+    /** The rules between the settings, only checked once every value is valid on its own. */
+    private void checkConsistency(List<String> problems) {
+        // with 0 threads the prefetch follows the number of processors, see getInt()
+        if (!isNumberOfProcessors(Setting.PARALLEL_NUMBER_OF_THREADS)
+                && getInt(Setting.BLOCK_NUMBER_OF_PRE_FETCH_BLOCKS) <= getInt(Setting.PARALLEL_NUMBER_OF_THREADS)) {
+            problems.add(String.format("%s has to be larger than %s, so that there are blocks ready for the threads",
+                    Setting.BLOCK_NUMBER_OF_PRE_FETCH_BLOCKS.key, Setting.PARALLEL_NUMBER_OF_THREADS.key));
+        }
+        if (getInt(Setting.BLOCK_ADAPTIVE_MIN_NUMBER_OF_CHUNKS) > getInt(Setting.BLOCK_ADAPTIVE_MAX_NUMBER_OF_CHUNKS)) {
+            problems.add(String.format("%s can't be larger than %s",
+                    Setting.BLOCK_ADAPTIVE_MIN_NUMBER_OF_CHUNKS.key, Setting.BLOCK_ADAPTIVE_MAX_NUMBER_OF_CHUNKS.key));
+        }
+        final int maxDigits = getInt(Setting.OUTPUT_BINARY_MAX_DIGITS);
+        if (maxDigits > BinaryRecord.MAX_DIGITS) {
+            problems.add(String.format("%s can't be larger than %d, the illegal positions are a bit each in an int",
+                    Setting.OUTPUT_BINARY_MAX_DIGITS.key, BinaryRecord.MAX_DIGITS));
+        }
+        if (getOutputFormat() == OutputFormat.BINARY && getInt(Setting.CHUNK_NUMBER_OF_DIGITS) > maxDigits) {
+            problems.add(String.format("%s can't be larger than %s, the numbers wouldn't fit into the binary records",
+                    Setting.CHUNK_NUMBER_OF_DIGITS.key, Setting.OUTPUT_BINARY_MAX_DIGITS.key));
+        }
+    }
+
+    /** @return what's wrong with the value, null if nothing */
+    private static String check(Setting setting, String value) {
+        try {
+            switch (setting.kind) {
+                case COUNT:
+                    return Integer.parseInt(value) >= 1 ? null : "has to be 1 or more";
+                case THREADS:
+                    return Integer.parseInt(value) >= 0 ? null : "has to be 1 or more, or 0 for the number of processors";
+                case OPTIONAL_COUNT:
+                    return Integer.parseInt(value) >= 0 ? null : "has to be 1 or more, or 0 to turn it off";
+                case INFERRED_COUNT:
+                    return Integer.parseInt(value) >= 0 ? null : "has to be 1 or more, or 0 to infer it";
+                case SIZE:
+                    final long size = parseSize(value);
+                    return size >= 1 && size <= Integer.MAX_VALUE ? null : "has to be between 1 and 2G - 1";
+                case BOOLEAN:
+                    return "true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value) ? null : "has to be true or false";
+                case ENGINE:
+                    Engine.valueOf(value.toUpperCase(Locale.ROOT));
+                    return null;
+                case FORMAT:
+                    OutputFormat.valueOf(value.toUpperCase(Locale.ROOT));
+                    return null;
+                default:
+                    return null;
+            }
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            if (setting.kind == Kind.ENGINE) {
+                return String.format("is not one of %s", Arrays.toString(Engine.values()).toLowerCase(Locale.ROOT));
+            }
+            return setting.kind == Kind.FORMAT
+                    ? String.format("is not one of %s", Arrays.toString(OutputFormat.values()).toLowerCase(Locale.ROOT))
+                    : "is not a number";
+        }
+    }
+
+    /** Same units as the InputGenerator sizes: 1024, 64K, 16M, 1G. */
+    static long parseSize(String size) {
+        return InputGenerator.parseSize(size);
+    }
+
+    private static String highest(Setting setting, Properties... layersHighestFirst) {
+        for (Properties layer : layersHighestFirst) {
+            final String value = layer.getProperty(setting.key);
+            if (null != value) {
+                return value.trim();
+            }
+        }
+        return null;
+    }
+
+    /** @return null if the resource isn't there and isn't required */
+    private static Properties loadResource(String classpathResourcePath, boolean required) throws InitException {
+        try (InputStream inputStream = ScannerConfiguration.class.getResourceAsStream(classpathResourcePath)) {
+            if (null == inputStream) {
+                if (required) {
+                    throw new InitException(String.format("%s is missing from the classpath", classpathResourcePath));
+                }
+                return null;
+            }
+            final Properties properties = new Properties();
+            properties.load(inputStream);
+            return properties;
+        } catch (IOException e) {
+            throw new InitException(e);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.olegpro.sc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Encodes all the glyphs of a chunk at once, eight bytes of a row at a time (SWAR, SIMD within a register).
+ * <p>
+ * A row of 27 bytes is read as four longs, the last one overlapping the third, so nothing past the row is read.
+ * Every byte lane is compared to each character of the alphabet in one go, which gives the cell values of the eight lanes
+ * and tells if all of them are in the alphabet. The rows are then folded into one value per column of the chunk,
+ * column = ((row0 * base) + row1) * base + row2, still lane by lane, as long as base^height fits into a byte (27 for the digits).
+ * A glyph is its three column values in base 27, i.e. the same cells in column-major order,
+ * a table maps that back to the GlyphClassifier code, so the classification and fuzzy matching stay as they are.
+ * Where the longs are read from and which lane a column is in follow from the row length, so any number of digits works the same,
+ * there is nothing to set up per width.
+ * <p>
+ * If any byte is outside of the alphabet or the row is shorter than a long, encode() returns false and the chunk goes the scalar way, glyph by glyph.
+ * create() returns null for glyph sets it can't do, e.g. too many characters or too many rows for a byte lane.
+ * Immutable, so one instance is shared by all the ByteChunkScanners, the scratch arrays are theirs.
+ */
+public class SwarGlyphEncoder {
+    static final long SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    static final long HIGH_BITS = 0x8080808080808080L;
+    private final int digitWidth;
+    private final int digitHeight;
+    private final int base;
+    private final int columnBase;
+    /** Every character of the alphabet repeated in all the eight lanes, in the order of the cell values. */
+    private final long[] alphabetWords;
+    private final int[] codesByColumnCode;
+
+    private SwarGlyphEncoder(GlyphClassifier glyphClassifier, int digitWidth, int digitHeight) {
+        this.digitWidth = digitWidth;
+        this.digitHeight = digitHeight;
+        this.base = glyphClassifier.base();
+        this.columnBase = (int) Math.pow(base, digitHeight);
+        this.alphabetWords = new long[base];
+        for (int value = 0; value < base; value++) {
+            alphabetWords[value] = glyphClassifier.alphabetCharacter(value) * 0x0101010101010101L;
+        }
+        this.codesByColumnCode = new int[glyphClassifier.numberOfCodes()];
+        for (int code = 0; code < codesByColumnCode.length; code++) {
+            codesByColumnCode[columnCode(code)] = code;
+        }
+    }
+
+    /**
+     * @return the encoder or null if the glyphs don't fit into the byte lanes or there are no glyphs
+     */
+    public static SwarGlyphEncoder create(GlyphClassifier glyphClassifier, int digitWidth, int digitHeight) {
+        if (glyphClassifier.alphabetSize() == 0 || Math.pow(glyphClassifier.base(), digitHeight) > 256) {
+            return null;
+        }
+        return new SwarGlyphEncoder(glyphClassifier, digitWidth, digitHeight);
+    }
+
+    /** @return a scratch array for encode() of up to that many digits, one per thread */
+    long[] newColumnWords(int numberOfDigits) {
+        return new long[(numberOfDigits * digitWidth + Long.BYTES - 1) / Long.BYTES];
+    }
+
+    /**
+     * @param buffer input, any byte order
+     * @param rowStarts position of every row of the chunk, each row is a whole line of glyphs
+     * @param numberOfDigits how many glyphs there are in a row
+     * @param columnWords scratch, see newColumnWords()
+     * @param codes the GlyphClassifier codes of the glyphs, left to right
+     * @return false if there is a byte outside of the alphabet or the rows are shorter than a long, the codes are undefined then
+     */
+    public boolean encode(ByteBuffer buffer, int[] rowStarts, int numberOfDigits, long[] columnWords, int[] codes) {
+        final int rowLength = numberOfDigits * digitWidth;
+        if (rowLength < Long.BYTES) {
+            return false;
+        }
+        final boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        final long[] alphabetWords = this.alphabetWords;
+        final int base = this.base;
+        final int lastWord = (rowLength - 1) / Long.BYTES;
+        // the last long is moved back to end with the row, so it overlaps the one before
+        final int lastWordOffset = rowLength - Long.BYTES;
+        for (int word = 0; word <= lastWord; word++) {
+            final int wordOffset = word == lastWord ? lastWordOffset : word * Long.BYTES;
+            long columns = 0;
+            for (int row = 0; row < digitHeight; row++) {
+                final long bytes = buffer.getLong(rowStarts[row] + wordOffset);
+                // lane 0 is the first byte either way
+                final long lanes = bigEndian ? Long.reverseBytes(bytes) : bytes;
+                long matched = zeroLanes(lanes ^ alphabetWords[0]);
+                long cells = 0;
+                for (int value = 1; value < base; value++) {
+                    final long equal = zeroLanes(lanes ^ alphabetWords[value]);
+                    matched |= equal;
+                    cells += (equal >>> 7) * value;
+                }
+                if (matched != HIGH_BITS) {
+                    return false;
+                }
+                // no lane gets over base^height - 1, so nothing carries into the next lane
+                columns = columns * base + cells;
+            }
+            columnWords[word] = columns;
+        }
+        final int lastWordStart = lastWord * Long.BYTES;
+        final int columnBase = this.columnBase;
+        for (int digitNumber = 0, position = 0; digitNumber < numberOfDigits; digitNumber++) {
+            int columnCode = 0;
+            for (int column = 0; column < digitWidth; column++, position++) {
+                final long columns = position < lastWordStart ? columnWords[position / Long.BYTES] : columnWords[lastWord];
+                final int lane = position < lastWordStart ? position % Long.BYTES : position - lastWordOffset;
+                columnCode = columnCode * columnBase + ((int) (columns >>> (lane * Byte.SIZE)) & 0xFF);
+            }
+            codes[digitNumber] = codesByColumnCode[columnCode];
+        }
+        return true;
+    }
+
+    /** @return the high bit set in every lane that is zero, nothing else. Exact, unlike the usual haszero() test. */
+    static long zeroLanes(long word) {
+        return ~(((word & SEVEN_BITS) + SEVEN_BITS) | word | SEVEN_BITS);
+    }
+
+    /** Same cells as the row-major GlyphClassifier code, column by column, each column read top down in base^height. */
+    private int columnCode(int code) {
+        final int[] cells = new int[digitWidth * digitHeight];
+        for (int i = cells.length - 1; i >= 0; i--) {
+            cells[i] = code % base;
+            code /= base;
+        }
+        int columnCode = 0;
+        for (int column = 0; column < digitWidth; column++) {
+            int columnValue = 0;
+            for (int row = 0; row < digitHeight; row++) {
+                columnValue = columnValue * base + cells[row * digitWidth + column];
+            }
+            columnCode = columnCode * columnBase + columnValue;
+        }
+        return columnCode;
+    }
+}
@@ -2,19 +2,32 @@ package com.olegpro.sc;
 
 import java.io.Closeable;
 import java.io.InputStream;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 import java.util.regex.Pattern;
 
 /**
  * Wrapper around java.util.Scanner
+ * Keeps track of the position in the input, in characters. With a single byte charset, e.g. ISO_8859_1, it's the byte offset.
  */
 public abstract class TextChunker implements Closeable {
     static final Pattern CHUNK_DELIMITER_REGEXP_PATTERN = Pattern.compile("\\n\\s*\\n");
     private Scanner inputTextScanner;
+    private long position;
+    private long chunkOffset;
+    private boolean started = false;
 
     public TextChunker(Scanner inputFileScanner ) {
+        this(inputFileScanner, 0);
+    }
+
+    /**
+     * @param startPosition position in the input the scanner starts at, e.g. when resuming from a checkpoint
+     */
+    public TextChunker(Scanner inputFileScanner, long startPosition) {
         this.inputTextScanner = inputFileScanner;
         this.inputTextScanner.useDelimiter(CHUNK_DELIMITER_REGEXP_PATTERN);
+        this.position = startPosition;
     }
 
     public TextChunker(InputStream inputStream) {
@@ -26,7 +39,34 @@ public abstract class TextChunker implements Closeable {
     }
 
     public String next() {
-        return inputTextScanner.next();
+        if (!started) {
+            // the first chunk may or may not have a delimiter in front of it, e.g. blank lines at the start of the file
+            started = true;
+            try {
+                inputTextScanner.skip(CHUNK_DELIMITER_REGEXP_PATTERN);
+                position += inputTextScanner.match().end() - inputTextScanner.match().start();
+            } catch (NoSuchElementException e) {
+                // no delimiter in front of the first chunk
+            }
+        } else {
+            // the previous chunk ended right before a delimiter, so it's found at the current position.
+            // Unlike skip() followed by match(), this doesn't copy the scanner buffer for every chunk.
+            position += inputTextScanner.findWithinHorizon(CHUNK_DELIMITER_REGEXP_PATTERN, 0).length();
+        }
+        String chunk = inputTextScanner.next();
+        chunkOffset = position;
+        position += chunk.length();
+        return chunk;
+    }
+
+    /** @return position of the last chunk returned by next() */
+    public long chunkOffset() {
+        return chunkOffset;
+    }
+
+    /** @return position right after the last chunk returned by next() */
+    public long position() {
+        return position;
     }
 
     public void close() {
@@ -2,7 +2,12 @@ package com.olegpro.sc;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Scanner;
 
 /**
@@ -13,6 +18,21 @@ public class TextFileChunker extends TextChunker {
         super( new Scanner(new File(inputFilePath)));
     }
 
+    /**
+     * @param charset a single byte charset, e.g. ISO_8859_1, keeps position() and chunkOffset() equal to the byte offsets in the file.
+     */
+    public TextFileChunker(String inputFilePath, Charset charset) throws IOException {
+        this(inputFilePath, charset, 0);
+    }
+
+    /**
+     * Starts reading the file from the given byte offset.
+     * @param charset a single byte charset, e.g. ISO_8859_1, keeps position() equal to the byte offset in the file.
+     */
+    public TextFileChunker(String inputFilePath, Charset charset, long startOffset) throws IOException {
+        super(new Scanner(FileChannel.open(Paths.get(inputFilePath), StandardOpenOption.READ).position(startOffset), charset.name()), startOffset);
+    }
+
     public TextFileChunker(InputStream inputStream) {
         super(inputStream);
     }
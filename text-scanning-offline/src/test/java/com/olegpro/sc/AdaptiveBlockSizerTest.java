@@ -0,0 +1,101 @@
+package com.olegpro.sc;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveBlockSizerTest {
+    private static final long PLENTY_OF_HEAP = Long.MAX_VALUE / 2;
+    private final StringBuilder log = new StringBuilder();
+
+    /** 10 us per chunk and 50 ms target is 5000 chunks, the block size at most doubles on the way. */
+    @Test
+    public void shouldGrowBlocksTowardsTargetLatency() {
+        AdaptiveBlockSizer blockSizer = newBlockSizer(64 * 1024 * 1024, PLENTY_OF_HEAP);
+        blockSizer.blockCompleted(100, 8500, TimeUnit.MICROSECONDS.toNanos(1000));
+        assertEquals(200, blockSizer.numberOfChunksInBlock());
+        for (int i = 0; i < 20; i++) {
+            int chunks = blockSizer.numberOfChunksInBlock();
+            blockSizer.blockCompleted(chunks, chunks * 85, TimeUnit.MICROSECONDS.toNanos(10L * chunks));
+        }
+        assertEquals(5000, blockSizer.numberOfChunksInBlock());
+        assertTrue(log.toString().contains("Block size set to 5000 chunks"));
+    }
+
+    @Test
+    public void shouldShrinkBlocksWhenChunksGetSlow() {
+        AdaptiveBlockSizer blockSizer = newBlockSizer(64 * 1024 * 1024, PLENTY_OF_HEAP);
+        for (int i = 0; i < 20; i++) {
+            int chunks = blockSizer.numberOfChunksInBlock();
+            blockSizer.blockCompleted(chunks, chunks * 85, TimeUnit.MILLISECONDS.toNanos(10L * chunks));
+        }
+        assertEquals(10, blockSizer.numberOfChunksInBlock());
+        assertEquals(64, blockSizer.prefetchDepth());
+    }
+
+    /** 85 KB blocks into a 1 MB budget is 12 blocks, never the 64 allowed. */
+    @Test
+    public void shouldKeepPrefetchDepthWithinMemoryBudget() {
+        AdaptiveBlockSizer blockSizer = newBlockSizer(1024 * 1024, PLENTY_OF_HEAP);
+        for (int i = 0; i < 20; i++) {
+            blockSizer.blockCompleted(1000, 85_000, TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        assertEquals(1000, blockSizer.numberOfChunksInBlock());
+        assertEquals(12, blockSizer.prefetchDepth());
+        assertTrue(blockSizer.prefetchDepth() * 85_000 <= 1024 * 1024);
+    }
+
+    /** A quarter of 1 MB of headroom only fits 3 blocks of 1000 chunks, so the blocks get smaller to fit the 6 the threads need. */
+    @Test
+    public void shouldShrinkBlocksWhenHeapIsShort() {
+        AdaptiveBlockSizer blockSizer = newBlockSizer(64 * 1024 * 1024, 1024 * 1024);
+        for (int i = 0; i < 20; i++) {
+            blockSizer.blockCompleted(blockSizer.numberOfChunksInBlock(), blockSizer.numberOfChunksInBlock() * 85, TimeUnit.MICROSECONDS.toNanos(50 * blockSizer.numberOfChunksInBlock()));
+        }
+        assertEquals(514, blockSizer.numberOfChunksInBlock());
+        assertEquals(6, blockSizer.prefetchDepth());
+        assertTrue(blockSizer.summary().startsWith("Adaptive block sizing: 20 blocks"));
+    }
+
+    /** 5 threads and only 1 block queued: the threads wait for the reader, so the blocks shrink instead of growing to the target. */
+    @Test
+    public void shouldShrinkBlocksWhenThreadsWaitForBlocks() {
+        AdaptiveBlockSizer blockSizer = newBlockSizer(64 * 1024 * 1024, PLENTY_OF_HEAP);
+        int[] queueDepth = {1};
+        blockSizer.watchQueue(() -> queueDepth[0]);
+        for (int i = 0; i < 5; i++) {
+            int chunks = blockSizer.numberOfChunksInBlock();
+            blockSizer.blockCompleted(chunks, chunks * 85, TimeUnit.MICROSECONDS.toNanos(10L * chunks));
+        }
+        assertEquals(10, blockSizer.numberOfChunksInBlock());
+        assertTrue(log.toString(), log.toString().contains("1.0 blocks queued"));
+
+        queueDepth[0] = 6;
+        for (int i = 0; i < 30; i++) {
+            int chunks = blockSizer.numberOfChunksInBlock();
+            blockSizer.blockCompleted(chunks, chunks * 85, TimeUnit.MICROSECONDS.toNanos(10L * chunks));
+        }
+        assertEquals("Back to the latency target once the queue fills up", 5000, blockSizer.numberOfChunksInBlock());
+    }
+
+    @Test
+    public void shouldChangeMaxBlocksInFlight() throws Exception {
+        InFlightBudget inFlightBudget = new InFlightBudget(1000, 2);
+        int first = inFlightBudget.acquire(10);
+        inFlightBudget.acquire(10);
+        inFlightBudget.setMaxBlocksInFlight(1);
+        inFlightBudget.release(first);
+        assertEquals(1, inFlightBudget.getMaxBlocksInFlight());
+        inFlightBudget.setMaxBlocksInFlight(3);
+        inFlightBudget.acquire(10);
+        inFlightBudget.acquire(10);
+        assertEquals(970, inFlightBudget.available());
+    }
+
+    private AdaptiveBlockSizer newBlockSizer(long maxBytesInFlight, long heapHeadroom) {
+        return new AdaptiveBlockSizer(50, 100, 10, 10_000, 6, 64, maxBytesInFlight, () -> heapHeadroom, log::append);
+    }
+}
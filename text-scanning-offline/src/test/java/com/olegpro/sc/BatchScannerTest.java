@@ -0,0 +1,96 @@
+package com.olegpro.sc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchScannerTest {
+    private static final List<String> RESOURCES = Arrays.asList("multipleChunks", "multipleChunksWithCorruptedChunk", "multipleChunksWithIllegalRow", "singleChunk");
+    private DigitalNumberScanner digitalNumberScanner;
+    private Path inputDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+        digitalNumberScanner.logOutputProvider = new StringBuilder()::append;
+        inputDirectory = Files.createTempDirectory("batch");
+        inputDirectory.toFile().deleteOnExit();
+        for (String resource : RESOURCES) {
+            Path inputFile = inputDirectory.resolve(resource);
+            Files.copy(Paths.get(this.getClass().getResource("/" + resource).getPath()), inputFile);
+            inputFile.toFile().deleteOnExit();
+            new File(BatchScanner.outputFilePath(inputFile.toString(), null)).deleteOnExit();
+        }
+    }
+
+    /**
+     * One chunk per block and a budget smaller than a chunk, so that the reading has to wait for the outputs all the time.
+     * Every file should still get the same output as when it's scanned on its own.
+     */
+    @Test
+    public void shouldScanEveryFileIntoItsOwnOutput() throws Exception {
+        digitalNumberScanner.numberOfChunksInBlock = 1;
+        List<String> inputFilePaths = BatchScanner.resolveInputFiles(inputDirectory.toString());
+        assertEquals(RESOURCES.size(), inputFilePaths.size());
+        try (BatchScanner batchScanner = new BatchScanner(digitalNumberScanner, 3, 10, 2)) {
+            assertEquals(0, batchScanner.scanFiles(inputFilePaths, inputFilePath -> BatchScanner.outputFilePath(inputFilePath, null)));
+        }
+        for (String inputFilePath : inputFilePaths) {
+            StringBuilder expectedOutput = new StringBuilder();
+            digitalNumberScanner.dataOutputProvider = expectedOutput::append;
+            digitalNumberScanner.scanFile(inputFilePath);
+            assertEquals(expectedOutput.toString(), new String(Files.readAllBytes(Paths.get(BatchScanner.outputFilePath(inputFilePath, null)))));
+        }
+    }
+
+    @Test
+    public void shouldCountMissingFilesAsFailed() throws Exception {
+        try (BatchScanner batchScanner = new BatchScanner(digitalNumberScanner)) {
+            assertEquals(1, batchScanner.scanFiles(Arrays.asList(inputDirectory.resolve("singleChunk").toString(), inputDirectory.resolve("missing").toString()),
+                    inputFilePath -> BatchScanner.outputFilePath(inputFilePath, null)));
+        }
+        new File(BatchScanner.outputFilePath(inputDirectory.resolve("missing").toString(), null)).delete();
+    }
+
+    /** The block fails in the pool, after the file was read, the file counts as failed once however many of its blocks fail. */
+    @Test
+    public void shouldCountFilesWithFailedBlocksAsFailed() throws Exception {
+        digitalNumberScanner.numberOfChunksInBlock = 1;
+        String failingFilePath = inputDirectory.resolve("multipleChunks").toString();
+        AtomicInteger failingBlocks = new AtomicInteger(2);
+        digitalNumberScanner.logOutputProvider = message -> {
+            if (message.startsWith("Scanning the block") && failingBlocks.getAndDecrement() > 0) {
+                throw new IllegalStateException("Failed block");
+            }
+        };
+        try (BatchScanner batchScanner = new BatchScanner(digitalNumberScanner, 1, Integer.MAX_VALUE, 1)) {
+            assertEquals(1, batchScanner.scanFiles(Collections.singletonList(failingFilePath), inputFilePath -> BatchScanner.outputFilePath(inputFilePath, null)));
+            assertEquals(0, batchScanner.scanFiles(Collections.singletonList(failingFilePath), inputFilePath -> BatchScanner.outputFilePath(inputFilePath, null)));
+        }
+    }
+
+    @Test
+    public void shouldResolveGlobsAndFileLists() throws Exception {
+        assertEquals(Arrays.asList(inputDirectory.resolve("multipleChunksWithCorruptedChunk").toString(), inputDirectory.resolve("multipleChunksWithIllegalRow").toString()),
+                BatchScanner.resolveInputFiles(inputDirectory.resolve("multipleChunksWith*").toString()));
+
+        Path fileList = Files.createTempFile("files", null);
+        fileList.toFile().deleteOnExit();
+        Files.write(fileList, Arrays.asList("b", "", "a"));
+        assertEquals(Arrays.asList("b", "a"), BatchScanner.resolveInputFiles(BatchScanner.FILE_LIST_PREFIX + fileList));
+
+        assertEquals(Arrays.asList("singleFile"), BatchScanner.resolveInputFiles("singleFile"));
+        assertEquals(Paths.get("out", "singleFile.out").toString(), BatchScanner.outputFilePath("in/singleFile", "out"));
+    }
+}
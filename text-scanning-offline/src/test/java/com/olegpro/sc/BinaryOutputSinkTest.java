@@ -0,0 +1,206 @@
+package com.olegpro.sc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryOutputSinkTest {
+    private DigitalNumberScanner digitalNumberScanner;
+    private File inputFile;
+    private File outputFile;
+
+    @Before
+    public void setup() throws Exception {
+        Properties binary = new Properties();
+        binary.setProperty(ScannerConfiguration.Setting.OUTPUT_FORMAT.key, "binary");
+        binary.setProperty(ScannerConfiguration.Setting.OUTPUT_BINARY_INDEX_INTERVAL.key, "7");
+        digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init(ScannerConfiguration.load(new Properties(), binary));
+        digitalNumberScanner.logOutputProvider = log -> { };
+        inputFile = File.createTempFile("binaryInput", null);
+        inputFile.deleteOnExit();
+        outputFile = File.createTempFile("binaryOutput", null);
+        outputFile.deleteOnExit();
+        new File(outputFile.getPath() + BinaryOutputSink.INDEX_FILE_SUFFIX).deleteOnExit();
+        StringWriter input = new StringWriter();
+        InputGenerator inputGenerator = new InputGenerator(digitalNumberScanner, 23);
+        inputGenerator.illegalGlyphRate = 0.05;
+        inputGenerator.wrongLengthRowRate = 0.05;
+        inputGenerator.generate(input, new StringWriter(), 30 * 1024);
+        Files.write(inputFile.toPath(), input.toString().getBytes(ByteBufferChunker.CHUNK_CHARSET));
+    }
+
+    /** Same numbers as the text output, in the same order, each with the offset of its chunk in the input. */
+    @Test
+    public void shouldReadBackTheTextOutputWithSourceOffsets() throws Exception {
+        List<String> expected = scanToText();
+        scanToBinary();
+        Set<Long> chunkStarts = chunkStarts();
+        try (BinaryRecordReader reader = BinaryRecordReader.open(outputFile.getPath())) {
+            assertEquals(expected, reader.records().map(BinaryRecord::toText).collect(Collectors.toList()));
+            long previousOffset = -1;
+            for (long recordNumber = 0; recordNumber < reader.numberOfRecords(); recordNumber++) {
+                BinaryRecord record = reader.read(recordNumber);
+                assertTrue(record.toString(), chunkStarts.contains(record.getSourceOffset()));
+                assertTrue("In the order of the input", record.getSourceOffset() > previousOffset);
+                previousOffset = record.getSourceOffset();
+                assertFalse(record.isFuzzy());
+            }
+        }
+    }
+
+    @Test
+    public void shouldFindRecordsBySourceOffset() throws Exception {
+        scanToBinary();
+        try (BinaryRecordReader reader = BinaryRecordReader.open(outputFile.getPath())) {
+            long numberOfRecords = reader.numberOfRecords();
+            assertTrue(numberOfRecords > 50);
+            for (long recordNumber = 0; recordNumber < numberOfRecords; recordNumber++) {
+                long sourceOffset = reader.read(recordNumber).getSourceOffset();
+                assertEquals(recordNumber, reader.findRecord(sourceOffset));
+                assertEquals(recordNumber + 1, reader.findRecord(sourceOffset + 1));
+            }
+            assertEquals(0, reader.findRecord(-5));
+            assertEquals(numberOfRecords, reader.findRecord(Long.MAX_VALUE));
+        }
+        Files.delete(Paths.get(outputFile.getPath() + BinaryOutputSink.INDEX_FILE_SUFFIX));
+        try (BinaryRecordReader reader = BinaryRecordReader.open(outputFile.getPath())) {
+            assertEquals("Same without the index", 10, reader.findRecord(reader.read(10).getSourceOffset()));
+        }
+    }
+
+    /** The String path and the bytes path agree on which numbers had fuzzily matched digits. */
+    @Test
+    public void shouldFlagFuzzyRecords() throws Exception {
+        digitalNumberScanner.fuzzyMatchingMode = true;
+        scanToBinary();
+        List<Boolean> mapped;
+        try (BinaryRecordReader reader = BinaryRecordReader.open(outputFile.getPath())) {
+            mapped = reader.records().map(BinaryRecord::isFuzzy).collect(Collectors.toList());
+        }
+        assertTrue(mapped.contains(true));
+        try (OutputSink outputSink = digitalNumberScanner.newOutputSink(outputFile.getPath())) {
+            digitalNumberScanner.dataOutputProvider = outputSink;
+            digitalNumberScanner.scanFile(inputFile.getPath());
+        }
+        try (BinaryRecordReader reader = BinaryRecordReader.open(outputFile.getPath())) {
+            assertEquals(mapped, reader.records().map(BinaryRecord::isFuzzy).collect(Collectors.toList()));
+        }
+    }
+
+    /** The Scanner based engines know the offsets too, the records are the same whatever the engine. */
+    @Test
+    public void shouldWriteSameRecordsWithScannerEngines() throws Exception {
+        scanToBinary();
+        List<String> mapped = readRecords();
+        try (OutputSink outputSink = digitalNumberScanner.newOutputSink(outputFile.getPath())) {
+            digitalNumberScanner.dataOutputProvider = outputSink;
+            digitalNumberScanner.scanFile(inputFile.getPath());
+        }
+        assertEquals(mapped, readRecords());
+        try (OutputSink outputSink = digitalNumberScanner.newOutputSink(outputFile.getPath())) {
+            digitalNumberScanner.dataOutputProvider = outputSink;
+            digitalNumberScanner.scanFileParallel(inputFile.getPath());
+        }
+        assertEquals(mapped, readRecords());
+        try (BinaryRecordReader reader = BinaryRecordReader.open(outputFile.getPath())) {
+            assertEquals(10, reader.findRecord(reader.read(10).getSourceOffset()));
+        }
+    }
+
+    @Test
+    public void shouldMarkIllegalPositionsAndTruncate() throws Exception {
+        try (BinaryOutputSink outputSink = BinaryOutputSink.toFile(outputFile.getPath(), "0123456789", 5, 1, 64)) {
+            outputSink.write("1?3?ILL\t12\t-\n123456789\t40\tF\r\n42\n");
+            assertEquals(3, outputSink.numberOfRecords());
+        }
+        try (BinaryRecordReader reader = BinaryRecordReader.open(outputFile.getPath())) {
+            assertEquals(3, reader.numberOfRecords());
+            BinaryRecord illegal = reader.read(0);
+            assertEquals("1?3?ILL", illegal.toText());
+            assertEquals(0b1010, illegal.getIllegalPositions());
+            assertEquals(12, illegal.getSourceOffset());
+            BinaryRecord truncated = reader.read(1);
+            assertEquals("12345", truncated.getDigits());
+            assertTrue(truncated.isTruncated());
+            assertTrue(truncated.isFuzzy());
+            assertFalse(truncated.isIllegal());
+            BinaryRecord plain = reader.read(2);
+            assertEquals("42", plain.getDigits());
+            assertEquals(DeadLetterWriter.UNKNOWN_OFFSET, plain.getSourceOffset());
+        }
+    }
+
+    @Test
+    public void shouldNotOpenTextOutput() throws Exception {
+        Files.write(outputFile.toPath(), "123456789\n".getBytes(ByteBufferChunker.CHUNK_CHARSET));
+        try {
+            BinaryRecordReader.open(outputFile.getPath()).close();
+            fail("Should not read a text file");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("not a binary output file"));
+        }
+    }
+
+    @Test
+    public void shouldRejectNumbersThatDontFitIntoRecords() throws Exception {
+        Properties tooLong = new Properties();
+        tooLong.setProperty(ScannerConfiguration.Setting.OUTPUT_FORMAT.key, "binary");
+        tooLong.setProperty(ScannerConfiguration.Setting.OUTPUT_BINARY_MAX_DIGITS.key, "8");
+        try {
+            ScannerConfiguration.load(new Properties(), tooLong);
+            fail("9 digits don't fit into 8");
+        } catch (InitException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(ScannerConfiguration.Setting.OUTPUT_BINARY_MAX_DIGITS.key));
+        }
+    }
+
+    private List<String> scanToText() throws Exception {
+        digitalNumberScanner.outputFormat = ScannerConfiguration.OutputFormat.TEXT;
+        StringBuilder output = new StringBuilder();
+        digitalNumberScanner.dataOutputProvider = output::append;
+        digitalNumberScanner.scanFileMapped(inputFile.getPath());
+        digitalNumberScanner.outputFormat = ScannerConfiguration.OutputFormat.BINARY;
+        return Arrays.asList(output.toString().split(ByteChunkScanner.RECORD_SEPARATOR));
+    }
+
+    private void scanToBinary() throws Exception {
+        try (OutputSink outputSink = digitalNumberScanner.newOutputSink(outputFile.getPath())) {
+            digitalNumberScanner.dataOutputProvider = outputSink;
+            digitalNumberScanner.scanFileMapped(inputFile.getPath());
+        }
+    }
+
+    private List<String> readRecords() throws IOException {
+        try (BinaryRecordReader reader = BinaryRecordReader.open(outputFile.getPath())) {
+            return reader.records().map(BinaryRecord::toString).collect(Collectors.toList());
+        }
+    }
+
+    private Set<Long> chunkStarts() throws IOException {
+        Set<Long> chunkStarts = new HashSet<>();
+        ByteBufferChunker chunker = new ByteBufferChunker(ByteBuffer.wrap(Files.readAllBytes(inputFile.toPath())));
+        while (chunker.hasNext()) {
+            chunkStarts.add((long) chunker.chunkStart());
+            chunker.skip();
+        }
+        return chunkStarts;
+    }
+}
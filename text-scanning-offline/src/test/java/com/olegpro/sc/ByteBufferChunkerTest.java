@@ -0,0 +1,106 @@
+package com.olegpro.sc;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ByteBufferChunkerTest {
+
+    private static final String[] INPUTS = {
+            "aaa\nbbb\n\nccc\nddd",
+            "\n\naaa\n \t \n  \nbbb\n",
+            "aaa\r\n\r\nbbb\r\n \r\nccc",
+            "  \n\naaa\n  ",
+            "aaa\n\n\n\n",
+            "",
+    };
+
+    /**
+     * The byte level chunker has to return exactly the same chunks as the Scanner based one.
+     */
+    @Test
+    public void shouldChunkSameAsTextChunker() {
+        for (String input : INPUTS) {
+            assertEquals("Chunks of " + input, scannerChunks(input), bufferChunks(ByteBuffer.wrap(input.getBytes(ByteBufferChunker.CHUNK_CHARSET))));
+        }
+    }
+
+    /**
+     * Whatever the number of regions, every region starts at a chunk and the chunks across all regions are the same as of the whole file.
+     */
+    @Test
+    public void shouldSplitAtChunkBoundaries() throws Exception {
+        for (String input : INPUTS) {
+            File file = File.createTempFile("chunks", null);
+            file.deleteOnExit();
+            try (FileOutputStream outputStream = new FileOutputStream(file)) {
+                outputStream.write(input.getBytes(ByteBufferChunker.CHUNK_CHARSET));
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                for (int numberOfRegions = 1; numberOfRegions < 10; numberOfRegions++) {
+                    List<String> chunks = new ArrayList<>();
+                    long previousEnd = 0;
+                    for (FileRegion region : new MappedFileSplitter(channel, 4).split(numberOfRegions)) {
+                        assertEquals("Regions should be contiguous", previousEnd, region.getStart());
+                        assertTrue("Regions should not be empty", region.size() > 0);
+                        previousEnd = region.getEnd();
+                        chunks.addAll(bufferChunks(channel.map(FileChannel.MapMode.READ_ONLY, region.getStart(), region.size())));
+                    }
+                    assertEquals("Regions should cover the whole file", channel.size(), previousEnd);
+                    assertEquals("Chunks of " + input, scannerChunks(input), chunks);
+                }
+            }
+        }
+    }
+
+    /**
+     * Splitting a buffer at nextChunkStart from any position gives the same chunks as the whole buffer, as ScanRegionRecursiveTask relies on.
+     */
+    @Test
+    public void shouldSplitBufferAtChunkBoundaries() {
+        for (String input : INPUTS) {
+            ByteBuffer buffer = ByteBuffer.wrap(input.getBytes(ByteBufferChunker.CHUNK_CHARSET));
+            for (int position = 0; position < buffer.limit(); position++) {
+                int split = ByteBufferChunker.nextChunkStart(buffer, position, buffer.limit());
+                List<String> chunks = bufferChunks(part(buffer, 0, split));
+                chunks.addAll(bufferChunks(part(buffer, split, buffer.limit())));
+                assertEquals("Chunks of " + input + " split at " + split, scannerChunks(input), chunks);
+            }
+        }
+    }
+
+    private ByteBuffer part(ByteBuffer buffer, int start, int end) {
+        ByteBuffer part = buffer.duplicate();
+        part.limit(end);
+        part.position(start);
+        return part;
+    }
+
+    private List<String> scannerChunks(String input) {
+        List<String> chunks = new ArrayList<>();
+        TextChunker chunker = new TextChunker(new Scanner(input)) {};
+        while (chunker.hasNext()) {
+            chunks.add(chunker.next());
+        }
+        return chunks;
+    }
+
+    private List<String> bufferChunks(ByteBuffer buffer) {
+        List<String> chunks = new ArrayList<>();
+        ByteBufferChunker chunker = new ByteBufferChunker(buffer);
+        while (chunker.hasNext()) {
+            chunks.add(chunker.next());
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,85 @@
+package com.olegpro.sc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ByteChunkScannerTest {
+    private static final String VALID =
+            "    _  _     _  _  _  _  _ \n" +
+            "  | _| _||_||_ |_   ||_||_|\n" +
+            "  ||_  _|  | _||_|  ||_| _|";
+    private static final String ILLEGAL =
+            "    _  _     _  _  _  _  _ \n" +
+            "  | _| _||_||_ |_   ||_||_|\n" +
+            "  ||_  _|  | _||_|| ||_| _|";
+    private static final String[] WELL_FORMED = {
+            VALID,
+            VALID + "\n",
+            VALID.replace("\n", "\r\n"),
+            ILLEGAL,
+            ILLEGAL.replace("\n", "\r\n") + "\r\n",
+            VALID.replace("|_|  ||", "|é|  ||"),
+    };
+    private static final String[] MALFORMED = {
+            VALID.substring(1),
+            VALID + "\n ",
+            VALID.replace("_|\n", "_\r|\n"),
+            VALID + "\r",
+            "\n" + VALID,
+            "",
+    };
+
+    private DigitalNumberScanner digitalNumberScanner;
+
+    @Before
+    public void setup() throws Exception {
+        digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+    }
+
+    @Test
+    public void shouldScanSameAsStringPath() throws Exception {
+        for (boolean fuzzy : new boolean[]{false, true}) {
+            digitalNumberScanner.fuzzyMatchingMode = fuzzy;
+            ByteChunkScanner byteChunkScanner = digitalNumberScanner.newByteChunkScanner();
+            for (String chunk : WELL_FORMED) {
+                StringBuilder expected = new StringBuilder();
+                digitalNumberScanner.scanChunk(chunk, expected::append, s -> { });
+                StringBuilder actual = new StringBuilder();
+                assertTrue("Should scan " + chunk, byteChunkScanner.scan(wrap(chunk), 0, chunk.length(), actual));
+                assertEquals(expected.toString(), actual.toString());
+            }
+        }
+    }
+
+    @Test
+    public void shouldRejectMalformedChunks() {
+        ByteChunkScanner byteChunkScanner = digitalNumberScanner.newByteChunkScanner();
+        for (String chunk : MALFORMED) {
+            StringBuilder actual = new StringBuilder();
+            assertFalse("Should reject " + chunk, byteChunkScanner.scan(wrap(chunk), 0, chunk.length(), actual));
+            assertEquals("Nothing should be written", 0, actual.length());
+        }
+    }
+
+    /**
+     * The chunk does not have to start at the beginning of the buffer.
+     */
+    @Test
+    public void shouldScanChunkInTheMiddleOfBuffer() {
+        String input = "xx" + VALID + "yy";
+        StringBuilder actual = new StringBuilder();
+        assertTrue(digitalNumberScanner.newByteChunkScanner().scan(wrap(input), 2, 2 + VALID.length(), actual));
+        assertEquals(String.format("123456789%n"), actual.toString());
+    }
+
+    private ByteBuffer wrap(String chunk) {
+        return ByteBuffer.wrap(chunk.getBytes(ByteBufferChunker.CHUNK_CHARSET));
+    }
+}
@@ -0,0 +1,57 @@
+package com.olegpro.sc;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChannelOutputSinkTest {
+
+    /**
+     * The buffer is smaller than the records, so it has to be written out several times.
+     */
+    @Test
+    public void shouldWriteRecordsLargerThanBuffer() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (OutputSink outputSink = new ChannelOutputSink(Channels.newChannel(output), 4, false, true)) {
+            outputSink.write("123456789\n");
+            outputSink.write("12?456789ILL\n");
+        }
+        assertEquals("123456789\n12?456789ILL\n", output.toString());
+    }
+
+    @Test
+    public void shouldWriteOnlyOnFlushOrWhenFull() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        OutputSink outputSink = new ChannelOutputSink(Channels.newChannel(output), 1024, false, true);
+        outputSink.write("123456789\n");
+        assertEquals("Should be buffered", 0, output.size());
+        outputSink.flush();
+        assertEquals("123456789\n", output.toString());
+    }
+
+    @Test
+    public void shouldWriteEveryRecordWhenFlushOnRecord() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        OutputSink outputSink = new ChannelOutputSink(Channels.newChannel(output), 1024, true, true);
+        outputSink.write("123456789\n");
+        assertEquals("123456789\n", output.toString());
+    }
+
+    @Test
+    public void shouldScanToFile() throws Exception {
+        File outputFile = File.createTempFile("output", null);
+        outputFile.deleteOnExit();
+        DigitalNumberScanner digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+        try (OutputSink outputSink = ChannelOutputSink.toFile(outputFile.getPath())) {
+            digitalNumberScanner.dataOutputProvider = outputSink;
+            digitalNumberScanner.scanFileMapped(this.getClass().getResource("/singleChunk").getPath());
+        }
+        assertEquals(String.format("000000000%n"), new String(Files.readAllBytes(outputFile.toPath())));
+    }
+}
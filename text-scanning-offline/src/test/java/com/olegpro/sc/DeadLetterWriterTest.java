@@ -0,0 +1,124 @@
+package com.olegpro.sc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeadLetterWriterTest {
+    private DigitalNumberScanner digitalNumberScanner;
+    private File deadLetterFile;
+    private String inputPath;
+    private String input;
+    private String corruptChunk;
+
+    @Before
+    public void setUp() throws Exception {
+        digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+        digitalNumberScanner.dataOutputProvider = new StringBuilder()::append;
+        deadLetterFile = File.createTempFile("deadLetters", null);
+        deadLetterFile.deleteOnExit();
+        new File(deadLetterFile.getPath() + DeadLetterWriter.INDEX_FILE_SUFFIX).deleteOnExit();
+        inputPath = this.getClass().getResource("/multipleChunksWithCorruptedChunk").getPath();
+        input = new String(Files.readAllBytes(Paths.get(inputPath)), ByteBufferChunker.CHUNK_CHARSET);
+        corruptChunk = input.split("\n\\s*\n")[1];
+    }
+
+    /** In the memory-mapped mode the chunk is copied from the input as is, and its offset in the input is known. */
+    @Test
+    public void shouldSendCorruptChunkToDeadLetterFileInMappedMode() throws Exception {
+        StringBuilder log = new StringBuilder();
+        digitalNumberScanner.logOutputProvider = log::append;
+        try (DeadLetterWriter deadLetterWriter = DeadLetterWriter.toFile(deadLetterFile.getPath())) {
+            digitalNumberScanner.deadLetterWriter = deadLetterWriter;
+            digitalNumberScanner.scanFileMapped(inputPath);
+            assertEquals(1, deadLetterWriter.getNumberOfChunks());
+        }
+        assertEquals(corruptChunk, readDeadLetters());
+        String[] index = readIndex().get(0).split("\t");
+        assertEquals("0", index[0]);
+        assertEquals(String.valueOf(input.indexOf(corruptChunk)), index[1]);
+        assertEquals(String.valueOf(corruptChunk.length()), index[2]);
+        assertEquals(digitalNumberScanner.rejectionReason(corruptChunk.split(DigitalNumberScanner.LINE_DELIMITER_REGEXP)), index[3]);
+        assertFalse("The chunk itself should not be logged", log.toString().contains("Cannot read the chunk"));
+    }
+
+    @Test
+    public void shouldSendCorruptChunkWithItsOffsetInSequentialMode() throws Exception {
+        try (DeadLetterWriter deadLetterWriter = DeadLetterWriter.toFile(deadLetterFile.getPath())) {
+            digitalNumberScanner.deadLetterWriter = deadLetterWriter;
+            digitalNumberScanner.scanFile(inputPath);
+        }
+        assertEquals(corruptChunk, readDeadLetters());
+        String[] index = readIndex().get(0).split("\t");
+        assertEquals(String.valueOf(input.indexOf(corruptChunk)), index[1]);
+    }
+
+    @Test
+    public void shouldSendCorruptChunkWithItsOffsetInParallelMode() throws Exception {
+        try (DeadLetterWriter deadLetterWriter = DeadLetterWriter.toFile(deadLetterFile.getPath())) {
+            digitalNumberScanner.deadLetterWriter = deadLetterWriter;
+            digitalNumberScanner.scanFileParallel(inputPath);
+        }
+        String[] index = readIndex().get(0).split("\t");
+        assertEquals(String.valueOf(input.indexOf(corruptChunk)), index[1]);
+    }
+
+    /** Same reasons from both paths, so the dead letter file doesn't depend on the mode. */
+    @Test
+    public void shouldGiveSameRejectionReasonAsStringPath() throws Exception {
+        ByteChunkScanner byteChunkScanner = digitalNumberScanner.newByteChunkScanner();
+        for (String chunk : new String[]{corruptChunk, corruptChunk + "\n" + corruptChunk, corruptChunk.substring(0, 10)}) {
+            ByteBuffer buffer = ByteBuffer.wrap(chunk.getBytes(ByteBufferChunker.CHUNK_CHARSET));
+            assertFalse(byteChunkScanner.scan(buffer, 0, buffer.limit(), new StringBuilder()));
+            assertEquals(digitalNumberScanner.rejectionReason(chunk.split(DigitalNumberScanner.LINE_DELIMITER_REGEXP)),
+                    byteChunkScanner.rejectionReason());
+        }
+    }
+
+    @Test
+    public void shouldSeparateChunksByEmptyLines() throws Exception {
+        try (DeadLetterWriter deadLetterWriter = DeadLetterWriter.toFile(deadLetterFile.getPath())) {
+            deadLetterWriter.write("first", 0, "reason");
+            deadLetterWriter.write("second", 10, "reason");
+        }
+        assertEquals("first\n\nsecond", readDeadLetters());
+        List<String> index = readIndex();
+        assertEquals(2, index.size());
+        assertTrue(index.get(1).startsWith("7\t10\t6\t"));
+    }
+
+    /** transferTo gives 0 past the end of the input, e.g. when it was truncated under the scanner. */
+    @Test(timeout = 10000)
+    public void shouldFailWhenInputEndsBeforeChunk() throws Exception {
+        try (DeadLetterWriter deadLetterWriter = DeadLetterWriter.toFile(deadLetterFile.getPath());
+             FileChannel inputChannel = FileChannel.open(Paths.get(inputPath), StandardOpenOption.READ)) {
+            deadLetterWriter.write(inputChannel, input.length() - 5, 20, "reason");
+            fail("The chunk is past the end of the input");
+        } catch (EOFException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(String.valueOf(input.length())));
+        }
+        assertEquals(input.substring(input.length() - 5), readDeadLetters());
+    }
+
+    private String readDeadLetters() throws Exception {
+        return new String(Files.readAllBytes(deadLetterFile.toPath()), ByteBufferChunker.CHUNK_CHARSET);
+    }
+
+    private List<String> readIndex() throws Exception {
+        return Files.readAllLines(Paths.get(deadLetterFile.getPath() + DeadLetterWriter.INDEX_FILE_SUFFIX));
+    }
+}
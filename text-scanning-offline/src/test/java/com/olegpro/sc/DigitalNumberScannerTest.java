@@ -3,6 +3,16 @@ package com.olegpro.sc;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
 import static com.olegpro.sc.DigitalNumberScanner.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -77,6 +87,140 @@ public class DigitalNumberScannerTest
         assertTrue("Output should contain error message", output.toString().contains("Cannot read the chunk"));
     }
 
+    /**
+     * Regions are made tiny so that every chunk ends up in its own region. Output should still be in the same order.
+     */
+    @Test
+    public void shouldScanMappedSameAsSequential() throws Exception {
+        digitalNumberScanner.maxMappedRegionSize = 10;
+        assertSameAsSequential("/multipleChunksWithIllegalRow", digitalNumberScanner::scanFileMapped);
+    }
+
+    /**
+     * One chunk per block and a budget smaller than a chunk, so that every block waits for the previous one to be written.
+     */
+    @Test
+    public void shouldScanVirtualThreadsSameAsSequential() throws Exception {
+        digitalNumberScanner.virtualThreads = true;
+        digitalNumberScanner.numberOfChunksInBlock = 1;
+        digitalNumberScanner.maxBytesInFlight = 10;
+        assertSameAsSequential("/multipleChunksWithIllegalRow", digitalNumberScanner::scanFileParallel);
+    }
+
+    /**
+     * A generated file of a few thousand chunks, so the block size changes many times over the scan.
+     */
+    @Test
+    public void shouldScanAdaptiveBlockSizeSameAsExpected() throws Exception {
+        File inputFile = File.createTempFile("generated", null);
+        inputFile.deleteOnExit();
+        StringWriter expectedOutput = new StringWriter();
+        try (Writer input = new FileWriter(inputFile)) {
+            InputGenerator inputGenerator = new InputGenerator(digitalNumberScanner, 11);
+            inputGenerator.wrongLengthRowRate = 0.05;
+            inputGenerator.generate(input, expectedOutput, 200 * 1024);
+        }
+        StringBuilder log = new StringBuilder();
+        digitalNumberScanner.logOutputProvider = log::append;
+        digitalNumberScanner.adaptiveBlockSize = true;
+        digitalNumberScanner.numberOfChunksInBlock = 1;
+        digitalNumberScanner.minChunksInBlock = 1;
+        digitalNumberScanner.targetBlockLatencyMillis = 1;
+        digitalNumberScanner.maxBytesInFlight = 10 * 1024;
+        assertEquals(expectedOutput.toString(), scan(digitalNumberScanner::scanFileParallel, inputFile.getPath()));
+        assertTrue("Should sum up the chosen sizes", log.toString().contains("Adaptive block sizing:"));
+    }
+
+    /**
+     * Tiny regions and leaves, so that the regions are split down to single chunks and the results are joined from many pieces.
+     */
+    @Test
+    public void shouldScanForkJoinSameAsSequential() throws Exception {
+        digitalNumberScanner.maxMappedRegionSize = 200;
+        for (String resource : new String[]{"/multipleChunksWithIllegalRow", "/multipleChunksWithCorruptedChunk"}) {
+            for (int leafSize : new int[]{1, 100, 1000}) {
+                digitalNumberScanner.forkJoinLeafSize = leafSize;
+                assertSameAsSequential(resource, digitalNumberScanner::scanFileForkJoin);
+            }
+        }
+    }
+
+    @Test
+    public void shouldInferGlyphSizeFromDigitsMap() {
+        assertEquals(3, digitalNumberScanner.getDigitWidth());
+        assertEquals(3, digitalNumberScanner.getDigitHeight());
+        assertEquals(11, digitalNumberScanner.getDigitsMap().size());
+    }
+
+    /**
+     * 9, 12 and 16 digit numbers in one file, with the number of digits taken from every chunk, on the String and on the byte path.
+     */
+    @Test
+    public void shouldScanMixedWidthsSameAsExpected() throws Exception {
+        Properties variableWidth = new Properties();
+        variableWidth.setProperty(ScannerConfiguration.Setting.CHUNK_NUMBER_OF_DIGITS.key, "0");
+        digitalNumberScanner.init(ScannerConfiguration.load(new Properties(), variableWidth));
+        digitalNumberScanner.logOutputProvider = log -> { };
+        File inputFile = File.createTempFile("mixed", null);
+        inputFile.deleteOnExit();
+        StringWriter expectedOutput = new StringWriter();
+        try (Writer input = new FileWriter(inputFile)) {
+            InputGenerator inputGenerator = new InputGenerator(digitalNumberScanner, 19);
+            inputGenerator.numbersOfDigits = new int[]{9, 12, 16};
+            inputGenerator.illegalGlyphRate = 0.01;
+            inputGenerator.wrongLengthRowRate = 0.05;
+            inputGenerator.whitespaceDelimiterRate = 0.1;
+            inputGenerator.generate(input, expectedOutput, 50 * 1024);
+        }
+        final String sequentialOutput = scan(digitalNumberScanner::scanFile, inputFile.getPath());
+        assertEquals(expectedOutput.toString(), sequentialOutput);
+        assertEquals(expectedOutput.toString(), scan(digitalNumberScanner::scanFileMapped, inputFile.getPath()));
+        Set<Integer> widths = new TreeSet<>();
+        for (String number : sequentialOutput.split(LINE_DELIMITER_REGEXP)) {
+            widths.add(number.replace(ILLEGAL_INPUT_INDICATOR, "").length());
+        }
+        assertEquals("Should have all the widths", new TreeSet<>(Arrays.asList(9, 12, 16)), widths);
+    }
+
+    @Test
+    public void shouldRejectFirstLineNotMadeOfWholeGlyphs() throws Exception {
+        Properties variableWidth = new Properties();
+        variableWidth.setProperty(ScannerConfiguration.Setting.CHUNK_NUMBER_OF_DIGITS.key, "0");
+        digitalNumberScanner.init(ScannerConfiguration.load(new Properties(), variableWidth));
+        assertEquals("Line " + repeat('_', 26) + " has incorrect length. Expected a multiple of 3, found 26.",
+                digitalNumberScanner.rejectionReason(new String[]{repeat('_', 26), repeat('_', 27), repeat('_', 27)}));
+        assertEquals("Line " + repeat('_', 27) + " has incorrect length. Expected 36, found 27.",
+                digitalNumberScanner.rejectionReason(new String[]{repeat('_', 36), repeat('_', 36), repeat('_', 27)}));
+        assertEquals(null, digitalNumberScanner.rejectionReason(new String[]{repeat('_', 48), repeat('_', 48), repeat('_', 48)}));
+    }
+
+    private static String repeat(char c, int times) {
+        return new String(new char[times]).replace('\0', c);
+    }
+
+    /** One of the scanFile... engines. */
+    private interface FileScan {
+        void scan(String inputFilePath) throws Exception;
+    }
+
+    /** The output of the engine, with whatever settings the test made, has to be the same as scanFile's. */
+    private void assertSameAsSequential(String resource, FileScan engine) throws Exception {
+        final String inputFilePath = this.getClass().getResource(resource).getPath();
+        assertEquals(resource, scan(digitalNumberScanner::scanFile, inputFilePath), scan(engine, inputFilePath));
+    }
+
+    private String scan(FileScan engine, String inputFilePath) throws Exception {
+        StringBuilder output = new StringBuilder();
+        digitalNumberScanner.dataOutputProvider = output::append;
+        engine.scan(inputFilePath);
+        return output.toString();
+    }
+
+    @Test(expected = ScanException.class)
+    public void shouldThrowExceptionWhenMappingMissingFile() throws Exception {
+        digitalNumberScanner.scanFileMapped("/missingFile");
+    }
+
     @Test(expected = Exception.class)
     public void shouldThrowException() throws Exception {
         digitalNumberScanner.scanFile("/missingFile");
@@ -90,12 +234,12 @@ public class DigitalNumberScannerTest
     public void shouldHandleExceptionsWhenProcessingMultipleChunk() throws Exception {
         digitalNumberScanner = new DigitalNumberScanner() {
             private boolean toggle = true;
-          void scanChunk(String chunk) {
+          void scanChunk(String chunk, long offset) throws IOException {
               toggle = !toggle;
               if (toggle) {
                   throw new RuntimeException("Error processing chunk");
               } else {
-                  dataOutputProvider.accept(String.format("000000000%n"));
+                  dataOutputProvider.write(String.format("000000000%n"));
               }
             }
         };
@@ -0,0 +1,167 @@
+package com.olegpro.sc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileFollowerTest {
+    DigitalNumberScanner digitalNumberScanner;
+    File inputFile;
+    byte[] input;
+    String expectedOutput;
+
+    @Before
+    public void setup() throws Exception {
+        digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+        digitalNumberScanner.logOutputProvider = log -> { };
+        inputFile = File.createTempFile("followed", null);
+        inputFile.deleteOnExit();
+        StringWriter generatedInput = new StringWriter();
+        StringWriter generatedOutput = new StringWriter();
+        InputGenerator inputGenerator = new InputGenerator(digitalNumberScanner, 17);
+        inputGenerator.wrongLengthRowRate = 0.05;
+        inputGenerator.whitespaceDelimiterRate = 0.2;
+        inputGenerator.generate(generatedInput, generatedOutput, 20 * 1024);
+        input = generatedInput.toString().getBytes(StandardCharsets.ISO_8859_1);
+        expectedOutput = generatedOutput.toString();
+    }
+
+    /**
+     * The file is appended in random pieces, so they end mid glyph, mid row and mid delimiter.
+     * Every poll may only write out whole chunks, i.e. a prefix of the expected output, and all of it once finished.
+     */
+    @Test
+    public void shouldScanAppendedChunksIncrementally() throws Exception {
+        StringBuilder output = new StringBuilder();
+        Random random = new Random(3);
+        try (FileOutputStream appender = new FileOutputStream(inputFile);
+             FileFollower fileFollower = new FileFollower(inputFile.getPath(), digitalNumberScanner, output::append)) {
+            assertFalse("Nothing to read yet", fileFollower.poll());
+            int written = 0;
+            while (written < input.length) {
+                int length = Math.min(input.length - written, 1 + random.nextInt(300));
+                appender.write(input, written, length);
+                written += length;
+                assertTrue(fileFollower.poll());
+                assertTrue("Should only write whole chunks", expectedOutput.startsWith(output.toString()));
+            }
+            assertFalse("Nothing new", fileFollower.poll());
+            assertTrue("The last chunk should be held back", output.length() < expectedOutput.length());
+            fileFollower.finish();
+            assertEquals(expectedOutput, output.toString());
+            assertEquals("Should be at the end of the file", input.length, fileFollower.position());
+        }
+    }
+
+    /**
+     * A chunk is written out as soon as the next line after its delimiter arrives, before the file is finished.
+     */
+    @Test
+    public void shouldScanChunkOnceDelimiterIsComplete() throws Exception {
+        StringBuilder output = new StringBuilder();
+        String text = new String(input, StandardCharsets.ISO_8859_1);
+        Matcher delimiter = TextChunker.CHUNK_DELIMITER_REGEXP_PATTERN.matcher(text);
+        assertTrue(delimiter.find());
+        String chunk = text.substring(0, delimiter.start());
+        try (FileOutputStream appender = new FileOutputStream(inputFile);
+             FileFollower fileFollower = new FileFollower(inputFile.getPath(), digitalNumberScanner, output::append)) {
+            appender.write((chunk + "\n").getBytes(StandardCharsets.ISO_8859_1));
+            fileFollower.poll();
+            assertEquals("The delimiter may still get longer", "", output.toString());
+            appender.write(" \n ".getBytes(StandardCharsets.ISO_8859_1));
+            fileFollower.poll();
+            assertEquals(expectedOutput.substring(0, expectedOutput.indexOf('\n') + 1), output.toString());
+        }
+    }
+
+    /**
+     * Following starts on a file several times the buffer, it's read a buffer at a time rather than all at once.
+     */
+    @Test
+    public void shouldStartFollowingFileLargerThanBuffer() throws Exception {
+        StringWriter generatedInput = new StringWriter();
+        StringWriter generatedOutput = new StringWriter();
+        new InputGenerator(digitalNumberScanner, 29).generate(generatedInput, generatedOutput, 5 * FileFollower.INITIAL_BUFFER_SIZE);
+        input = generatedInput.toString().getBytes(StandardCharsets.ISO_8859_1);
+        assertTrue(input.length > 4 * FileFollower.INITIAL_BUFFER_SIZE);
+        StringBuilder output = new StringBuilder();
+        try (FileOutputStream appender = new FileOutputStream(inputFile);
+             FileFollower fileFollower = new FileFollower(inputFile.getPath(), digitalNumberScanner, output::append)) {
+            appender.write(input);
+            assertTrue(fileFollower.poll());
+            assertTrue("All but the last chunk", fileFollower.position() > input.length - FileFollower.INITIAL_BUFFER_SIZE);
+            fileFollower.finish();
+            assertEquals(generatedOutput.toString(), output.toString());
+            assertEquals("Should not grow for chunks that fit", FileFollower.INITIAL_BUFFER_SIZE, fileFollower.bufferSize());
+        }
+    }
+
+    /**
+     * Only a chunk longer than the buffer makes it grow, the output is the same as scanFile's.
+     */
+    @Test
+    public void shouldGrowForChunkLongerThanBuffer() throws Exception {
+        StringBuilder longRows = new StringBuilder();
+        for (int row = 0; row < 3; row++) {
+            for (int i = 0; i < FileFollower.INITIAL_BUFFER_SIZE / 2; i++) {
+                longRows.append('_');
+            }
+            longRows.append('\n');
+        }
+        longRows.append('\n');
+        byte[] longChunk = longRows.toString().getBytes(StandardCharsets.ISO_8859_1);
+        StringBuilder output = new StringBuilder();
+        try (FileOutputStream appender = new FileOutputStream(inputFile);
+             FileFollower fileFollower = new FileFollower(inputFile.getPath(), digitalNumberScanner, output::append)) {
+            appender.write(input);
+            appender.write(longChunk);
+            appender.write(input);
+            assertTrue(fileFollower.poll());
+            fileFollower.finish();
+            assertTrue(fileFollower.bufferSize() > FileFollower.INITIAL_BUFFER_SIZE);
+        }
+        StringBuilder expected = new StringBuilder();
+        digitalNumberScanner.dataOutputProvider = expected::append;
+        digitalNumberScanner.scanFile(inputFile.getPath());
+        assertEquals(expected.toString(), output.toString());
+    }
+
+    /**
+     * Another thread writes the file while it's followed, the following stops once nothing was appended for the idle timeout.
+     */
+    @Test
+    public void shouldFollowUntilIdle() throws Exception {
+        StringBuilder output = new StringBuilder();
+        StringBuilder log = new StringBuilder();
+        digitalNumberScanner.logOutputProvider = log::append;
+        digitalNumberScanner.dataOutputProvider = output::append;
+        digitalNumberScanner.followPollIntervalMillis = 10;
+        digitalNumberScanner.followIdleTimeoutMillis = 500;
+        Thread writer = new Thread(() -> {
+            try (FileOutputStream appender = new FileOutputStream(inputFile)) {
+                for (int written = 0; written < input.length; written += 4096) {
+                    appender.write(input, written, Math.min(4096, input.length - written));
+                    Thread.sleep(20);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        digitalNumberScanner.followFile(inputFile.getPath());
+        writer.join();
+        assertEquals(expectedOutput, output.toString());
+        assertTrue(log.toString().contains("stopped following"));
+    }
+}
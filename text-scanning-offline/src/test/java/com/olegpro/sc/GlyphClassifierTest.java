@@ -0,0 +1,108 @@
+package com.olegpro.sc;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GlyphClassifierTest {
+
+    private GlyphClassifier glyphClassifier;
+
+    @Before
+    public void setUp() throws Exception {
+        Map<String, String> digitsMap = new LinkedHashMap<>();
+        digitsMap.put(" _ | ||_|", "0");
+        digitsMap.put(" _   |  |", "7");
+        digitsMap.put(" _ |_|| |", "A");
+        glyphClassifier = new GlyphClassifier(digitsMap, 9);
+    }
+
+    @Test
+    public void shouldInferBase3Alphabet() {
+        assertEquals(3, glyphClassifier.base());
+        assertEquals(19683, glyphClassifier.numberOfCodes());
+    }
+
+    @Test
+    public void shouldClassifyKnownGlyphs() {
+        assertEquals('0', glyphClassifier.classify(glyphClassifier.encode(" _ | ||_|")));
+        assertEquals('7', glyphClassifier.classify(glyphClassifier.encode(" _   |  |")));
+        assertEquals("A", glyphClassifier.classifyToString(glyphClassifier.encode(" _ |_|| |")));
+    }
+
+    @Test
+    public void shouldNotClassifyUnknownGlyphs() {
+        assertEquals(GlyphClassifier.UNRECOGNIZED, glyphClassifier.classify(glyphClassifier.encode("         ")));
+        assertNull(glyphClassifier.classifyToString(glyphClassifier.encode("|||||||||")));
+    }
+
+    @Test
+    public void shouldNotEncodeCharactersOutsideOfAlphabet() {
+        assertEquals(-1, glyphClassifier.encode("x_   |  |"));
+        assertEquals(-1, glyphClassifier.encode(" _ "));
+    }
+
+    @Test
+    public void shouldBuildNearestGlyphsOnFirstFuzzyLookup() {
+        assertFalse(glyphClassifier.hasNearestGlyphs());
+        assertEquals('0', glyphClassifier.classify(glyphClassifier.encode(" _ | ||_|")));
+        assertFalse(glyphClassifier.hasNearestGlyphs());
+        assertEquals('7', glyphClassifier.nearestSymbol(glyphClassifier.encode(" _   |  |")));
+        assertTrue(glyphClassifier.hasNearestGlyphs());
+    }
+
+    /**
+     * Brute force check of the whole table against the Levenshtein distance.
+     */
+    @Test
+    public void shouldPrecomputeNearestGlyphForEveryCode() {
+        String[] known = {" _ | ||_|", " _   |  |", " _ |_|| |"};
+        for (int code = 0; code < glyphClassifier.numberOfCodes(); code++) {
+            String glyph = glyphClassifier.decode(code);
+            assertEquals(code, glyphClassifier.encode(glyph));
+            int minDistance = Integer.MAX_VALUE;
+            for (String knownGlyph : known) {
+                minDistance = Math.min(minDistance, StringUtils.getLevenshteinDistance(knownGlyph, glyph));
+            }
+            assertEquals("Distance of " + glyph, minDistance, glyphClassifier.nearestDistance(code));
+        }
+        assertEquals(0, glyphClassifier.nearestDistance(glyphClassifier.encode(" _   |  |")));
+        assertEquals('7', glyphClassifier.nearestSymbol(glyphClassifier.encode(" _   |  |")));
+    }
+
+    /**
+     * "H" is at the distance 1 from both "4" and "A", the one that comes first in the map wins.
+     */
+    @Test
+    public void shouldBreakTiesByOrderOfGlyphs() throws Exception {
+        Map<String, String> digitsMap = new LinkedHashMap<>();
+        digitsMap.put("   |_|  |", "4");
+        digitsMap.put(" _ |_|| |", "A");
+        assertEquals("4", new GlyphClassifier(digitsMap, 9).nearestSymbolToString("   |_|| |"));
+
+        digitsMap = new LinkedHashMap<>();
+        digitsMap.put(" _ |_|| |", "A");
+        digitsMap.put("   |_|  |", "4");
+        assertEquals("A", new GlyphClassifier(digitsMap, 9).nearestSymbolToString("   |_|| |"));
+    }
+
+    @Test
+    public void shouldFuzzyMatchCharactersOutsideOfAlphabet() {
+        assertEquals("7", glyphClassifier.nearestSymbolToString("x_   |  |"));
+    }
+
+    @Test(expected = InitException.class)
+    public void shouldRejectTooManyPossibleGlyphs() throws Exception {
+        Map<String, String> digitsMap = new LinkedHashMap<>();
+        digitsMap.put("abcdefghijklmnopqrstuvwxy", "0");
+        new GlyphClassifier(digitsMap, 25);
+    }
+}
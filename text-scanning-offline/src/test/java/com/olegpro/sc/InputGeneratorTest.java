@@ -0,0 +1,66 @@
+package com.olegpro.sc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InputGeneratorTest {
+
+    private DigitalNumberScanner digitalNumberScanner;
+
+    @Before
+    public void setup() throws Exception {
+        digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+    }
+
+    /**
+     * The scanner output for the generated file should be exactly the generated expected output, with all kinds of corruption on.
+     */
+    @Test
+    public void shouldGenerateInputMatchingExpectedOutput() throws Exception {
+        InputGenerator inputGenerator = new InputGenerator(digitalNumberScanner, 7);
+        inputGenerator.illegalGlyphRate = 0.05;
+        inputGenerator.wrongLengthRowRate = 0.1;
+        inputGenerator.whitespaceDelimiterRate = 0.3;
+        File inputFile = File.createTempFile("generated", null);
+        inputFile.deleteOnExit();
+        StringWriter expectedOutput = new StringWriter();
+        try (Writer input = new FileWriter(inputFile)) {
+            assertTrue("Should generate chunks", inputGenerator.generate(input, expectedOutput, 100 * 1024) > 1000);
+        }
+        assertTrue("Should have illegal glyphs", expectedOutput.toString().contains(DigitalNumberScanner.ILLEGAL_INPUT_INDICATOR));
+
+        StringBuilder output = new StringBuilder();
+        StringBuilder log = new StringBuilder();
+        digitalNumberScanner.dataOutputProvider = output::append;
+        digitalNumberScanner.logOutputProvider = log::append;
+        digitalNumberScanner.scanFile(inputFile.getPath());
+        assertEquals(expectedOutput.toString(), output.toString());
+        assertTrue("Should have corrupted chunks", log.toString().contains("Cannot read the chunk"));
+    }
+
+    @Test
+    public void shouldGenerateSameInputForSameSeed() throws Exception {
+        StringWriter first = new StringWriter();
+        StringWriter second = new StringWriter();
+        new InputGenerator(digitalNumberScanner, 1).generate(first, new StringWriter(), 10 * 1024);
+        new InputGenerator(digitalNumberScanner, 1).generate(second, new StringWriter(), 10 * 1024);
+        assertEquals(first.toString(), second.toString());
+    }
+
+    @Test
+    public void shouldParseSizes() {
+        assertEquals(1000, InputGenerator.parseSize("1000"));
+        assertEquals(500 * 1024, InputGenerator.parseSize("500K"));
+        assertEquals(64L * 1024 * 1024, InputGenerator.parseSize("64m"));
+        assertEquals(100L * 1024 * 1024 * 1024, InputGenerator.parseSize("100G"));
+    }
+}
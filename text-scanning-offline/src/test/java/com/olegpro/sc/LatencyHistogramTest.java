@@ -0,0 +1,43 @@
+package com.olegpro.sc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    /** Every value falls into a bucket no wider than 1/16 of it. */
+    @Test
+    public void shouldBucketWithinPrecision() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(bucket < LatencyHistogram.NUMBER_OF_BUCKETS);
+            long highestValue = LatencyHistogram.highestValue(bucket);
+            assertTrue(value + " in bucket up to " + highestValue, value <= highestValue);
+            assertTrue(value + " in bucket up to " + highestValue, highestValue - value <= value / LatencyHistogram.SUB_BUCKETS);
+        }
+        assertEquals(LatencyHistogram.NUMBER_OF_BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldGivePercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * 1_000_000L);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50, histogram.getPercentileMillis(50), 50 / 16.0);
+        assertEquals(99, histogram.getPercentileMillis(99), 99 / 16.0);
+        assertEquals(100, histogram.getPercentileMillis(100), 0.0);
+        assertEquals(100, histogram.getMaxMillis(), 0.0);
+        assertEquals(50.5, histogram.getMeanMillis(), 0.001);
+    }
+
+    @Test
+    public void shouldGiveZeroWhenEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMillis(99), 0.0);
+        assertEquals("p50 0.00 p90 0.00 p99 0.00 max 0.00 ms", histogram.summary());
+    }
+}
@@ -0,0 +1,88 @@
+package com.olegpro.sc;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResultsAggregatorTest {
+
+    /**
+     * Second block completes first, the output should still follow the order of the blocks.
+     */
+    @Test
+    public void shouldWriteResultsInOrder() throws Exception {
+        StringBuffer output = new StringBuffer();
+        ResultsAggregator resultsAggregator = new ResultsAggregator(output::append, s -> { }, 10);
+        Thread resultsAggregatorThread = new Thread(resultsAggregator);
+        resultsAggregatorThread.start();
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        resultsAggregator.add(first);
+        resultsAggregator.add(second);
+        resultsAggregator.finishPublishing();
+        second.complete("2");
+        first.complete("1");
+        resultsAggregatorThread.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse("Aggregator should terminate", resultsAggregatorThread.isAlive());
+        assertEquals("12", output.toString());
+    }
+
+    /**
+     * The producer should block in add() while the queue is full and carry on as soon as the aggregator takes a result.
+     */
+    @Test
+    public void shouldBlockProducerWhenFull() throws Exception {
+        ResultsAggregator resultsAggregator = new ResultsAggregator(s -> { }, s -> { }, 1);
+        resultsAggregator.add(CompletableFuture.completedFuture("1"));
+        CountDownLatch added = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                resultsAggregator.add(CompletableFuture.completedFuture("2"));
+                added.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        assertFalse("Producer should be blocked", added.await(100, TimeUnit.MILLISECONDS));
+        Thread resultsAggregatorThread = new Thread(resultsAggregator);
+        resultsAggregatorThread.start();
+        assertTrue("Producer should be released", added.await(5, TimeUnit.SECONDS));
+        resultsAggregator.finishPublishing();
+        resultsAggregatorThread.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse("Aggregator should terminate", resultsAggregatorThread.isAlive());
+    }
+
+    /** Blocks after a failed one are still written, but the checkpoint stays before it, so resuming scans it again. */
+    @Test
+    public void shouldStopCheckpointingAtFailedBlock() throws Exception {
+        File checkpointFile = File.createTempFile("checkpoint", null);
+        checkpointFile.deleteOnExit();
+        StringBuilder output = new StringBuilder();
+        StringBuilder log = new StringBuilder();
+        ResultsAggregator resultsAggregator = new ResultsAggregator(output::append, log::append);
+        resultsAggregator.checkpointTo(checkpointFile.getPath(), 1, ScanCheckpoint.START);
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new ScanException(new IOException("Disk on fire")));
+        resultsAggregator.add(CompletableFuture.completedFuture("1\n"), 0, 10);
+        resultsAggregator.add(failed, 1, 20);
+        resultsAggregator.add(CompletableFuture.completedFuture("3\n"), 2, 30);
+        resultsAggregator.finishPublishing();
+        resultsAggregator.run();
+
+        assertEquals("1\n3\n", output.toString());
+        assertEquals(1, resultsAggregator.getFailedBlockNumber());
+        ScanCheckpoint checkpoint = ScanCheckpoint.loadOrStart(checkpointFile.getPath());
+        assertEquals(0, checkpoint.getBlockNumber());
+        assertEquals(10, checkpoint.getInputOffset());
+        assertTrue(log.toString(), log.toString().contains("The block 1 failed, the checkpoint stops advancing at block 0"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.olegpro.sc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanCheckpointTest {
+    private DigitalNumberScanner digitalNumberScanner;
+    private File inputFile;
+    private File outputFile;
+    private File checkpointFile;
+    private String input;
+    private String expectedOutput;
+
+    @Before
+    public void setUp() throws Exception {
+        digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+        digitalNumberScanner.logOutputProvider = new StringBuilder()::append;
+        digitalNumberScanner.numberOfChunksInBlock = 7;
+        digitalNumberScanner.numberOfBlocksBetweenCheckpoints = 3;
+        inputFile = File.createTempFile("input", null);
+        inputFile.deleteOnExit();
+        outputFile = File.createTempFile("output", null);
+        outputFile.deleteOnExit();
+        checkpointFile = new File(outputFile.getPath() + ".checkpoint");
+        checkpointFile.deleteOnExit();
+
+        InputGenerator inputGenerator = new InputGenerator(digitalNumberScanner, 11);
+        inputGenerator.illegalGlyphRate = 0.05;
+        inputGenerator.wrongLengthRowRate = 0.05;
+        inputGenerator.whitespaceDelimiterRate = 0.3;
+        StringWriter inputWriter = new StringWriter();
+        StringWriter expectedOutputWriter = new StringWriter();
+        inputGenerator.generate(inputWriter, expectedOutputWriter, 20 * 1024);
+        input = inputWriter.toString();
+        expectedOutput = expectedOutputWriter.toString();
+    }
+
+    @Test
+    public void shouldScanSameAsExpectedAndCheckpointTheEnd() throws Exception {
+        Files.write(inputFile.toPath(), input.getBytes(ByteBufferChunker.CHUNK_CHARSET));
+        digitalNumberScanner.scanFileResumable(inputFile.getPath(), outputFile.getPath(), checkpointFile.getPath());
+        assertEquals(expectedOutput, read(outputFile));
+
+        ScanCheckpoint checkpoint = ScanCheckpoint.loadOrStart(checkpointFile.getPath());
+        assertEquals(input.length(), checkpoint.getInputOffset());
+        assertEquals(expectedOutput.length(), checkpoint.getOutputOffset());
+    }
+
+    /**
+     * The first run only gets through the first half of the input, and some output after its last checkpoint is lost mid-write.
+     * The second run should pick up from the checkpoint and end up with the same output as a single run.
+     */
+    @Test
+    public void shouldResumeFromCheckpoint() throws Exception {
+        Matcher delimiter = TextChunker.CHUNK_DELIMITER_REGEXP_PATTERN.matcher(input);
+        assertTrue(delimiter.find(input.length() / 2));
+        Files.write(inputFile.toPath(), input.substring(0, delimiter.start()).getBytes(ByteBufferChunker.CHUNK_CHARSET));
+        digitalNumberScanner.scanFileResumable(inputFile.getPath(), outputFile.getPath(), checkpointFile.getPath());
+        ScanCheckpoint checkpoint = ScanCheckpoint.loadOrStart(checkpointFile.getPath());
+        assertEquals(delimiter.start(), checkpoint.getInputOffset());
+        assertTrue(checkpoint.getBlockNumber() > 0);
+        Files.write(outputFile.toPath(), "12345".getBytes(), StandardOpenOption.APPEND);
+
+        Files.write(inputFile.toPath(), input.getBytes(ByteBufferChunker.CHUNK_CHARSET));
+        digitalNumberScanner.scanFileResumable(inputFile.getPath(), outputFile.getPath(), checkpointFile.getPath());
+        assertEquals(expectedOutput, read(outputFile));
+
+        // nothing left to do the third time
+        digitalNumberScanner.scanFileResumable(inputFile.getPath(), outputFile.getPath(), checkpointFile.getPath());
+        assertEquals(expectedOutput, read(outputFile));
+    }
+
+    @Test(expected = ScanException.class)
+    public void shouldNotResumeIntoLostOutput() throws Exception {
+        Files.write(inputFile.toPath(), input.getBytes(ByteBufferChunker.CHUNK_CHARSET));
+        new ScanCheckpoint(3, 100, 1000).save(checkpointFile.getPath());
+        digitalNumberScanner.scanFileResumable(inputFile.getPath(), outputFile.getPath(), checkpointFile.getPath());
+    }
+
+    private String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), ByteBufferChunker.CHUNK_CHARSET);
+    }
+}
@@ -0,0 +1,102 @@
+package com.olegpro.sc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanMetricsTest {
+    private DigitalNumberScanner digitalNumberScanner;
+
+    @Before
+    public void setUp() throws Exception {
+        digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+        digitalNumberScanner.dataOutputProvider = new StringBuilder()::append;
+        digitalNumberScanner.logOutputProvider = new StringBuilder()::append;
+    }
+
+    /** The String and the byte paths count the same, whatever the engine. */
+    @Test
+    public void shouldCountSameInEveryMode() throws Exception {
+        String illegalRow = this.getClass().getResource("/multipleChunksWithIllegalRow").getPath();
+        String corrupted = this.getClass().getResource("/multipleChunksWithCorruptedChunk").getPath();
+        for (String mode : new String[]{"sequential", "parallel", "mapped", "forkjoin"}) {
+            digitalNumberScanner.metrics = new ScanMetrics();
+            scan(mode, illegalRow);
+            scan(mode, corrupted);
+            ScanMetrics metrics = digitalNumberScanner.metrics;
+            assertEquals(mode, 6, metrics.getChunks());
+            assertEquals(mode, 26 + 18, metrics.getExactGlyphs());
+            assertEquals(mode, 0, metrics.getFuzzyGlyphs());
+            assertEquals(mode, 1, metrics.getUnrecognizedGlyphs());
+            assertEquals(mode, 1, metrics.getInvalidChunks());
+            assertEquals(mode, 0, metrics.getBlocksInFlight());
+        }
+    }
+
+    @Test
+    public void shouldCountFuzzyGlyphs() throws Exception {
+        digitalNumberScanner.fuzzyMatchingMode = true;
+        scan("mapped", this.getClass().getResource("/multipleChunksWithIllegalRow").getPath());
+        assertEquals(26, digitalNumberScanner.metrics.getExactGlyphs());
+        assertEquals(1, digitalNumberScanner.metrics.getFuzzyGlyphs());
+        assertEquals(0, digitalNumberScanner.metrics.getUnrecognizedGlyphs());
+    }
+
+    /** A block per chunk, so every block is timed and written. */
+    @Test
+    public void shouldRecordBlocks() throws Exception {
+        digitalNumberScanner.numberOfChunksInBlock = 1;
+        scan("parallel", this.getClass().getResource("/multipleChunksWithIllegalRow").getPath());
+        assertEquals(3, digitalNumberScanner.metrics.getBlockLatency().getCount());
+        assertEquals(3, digitalNumberScanner.metrics.getBlocksWritten());
+        assertEquals(3, digitalNumberScanner.metrics.getResultWait().getCount());
+        assertTrue(digitalNumberScanner.metrics.summary().startsWith("Metrics: 3 chunks"));
+    }
+
+    @Test
+    public void shouldExposeOverJmx() throws Exception {
+        scan("sequential", this.getClass().getResource("/multipleChunksWithIllegalRow").getPath());
+        ObjectName objectName = digitalNumberScanner.metrics.registerMBean();
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(3L, mBeanServer.getAttribute(objectName, "Chunks"));
+        assertEquals(1L, mBeanServer.getAttribute(objectName, "UnrecognizedGlyphs"));
+        // registering again replaces it
+        new ScanMetrics().registerMBean();
+        assertEquals(0L, mBeanServer.getAttribute(objectName, "Chunks"));
+        mBeanServer.unregisterMBean(objectName);
+    }
+
+    @Test
+    public void shouldReportRatesOverLastInterval() throws Exception {
+        StringBuilder log = new StringBuilder();
+        try (MetricsReporter metricsReporter = new MetricsReporter(digitalNumberScanner.metrics, 0, log::append)) {
+            digitalNumberScanner.metrics.chunksScanned(10, 850);
+            metricsReporter.report();
+        }
+        assertTrue(log.toString(), log.toString().startsWith("Last "));
+        assertTrue(log.toString(), log.toString().contains("Metrics: 10 chunks"));
+    }
+
+    private void scan(String mode, String inputFilePath) throws ScanException {
+        switch (mode) {
+            case "parallel":
+                digitalNumberScanner.scanFileParallel(inputFilePath);
+                break;
+            case "mapped":
+                digitalNumberScanner.scanFileMapped(inputFilePath);
+                break;
+            case "forkjoin":
+                digitalNumberScanner.scanFileForkJoin(inputFilePath);
+                break;
+            default:
+                digitalNumberScanner.scanFile(inputFilePath);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.olegpro.sc;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.Properties;
+import java.util.function.IntSupplier;
+
+import static com.olegpro.sc.ScannerConfiguration.Setting;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScannerConfigurationTest {
+
+    @Test
+    public void shouldLoadDefaults() throws Exception {
+        ScannerConfiguration configuration = ScannerConfiguration.defaults();
+        assertEquals(ScannerConfiguration.Engine.SEQUENTIAL, configuration.getEngine());
+        assertEquals(100, configuration.getInt(Setting.BLOCK_NUMBER_OF_CHUNKS));
+        assertEquals(64 * 1024 * 1024, configuration.getInt(Setting.IN_FLIGHT_MAX_SIZE));
+        assertEquals(Runtime.getRuntime().availableProcessors(), configuration.getInt(Setting.FORKJOIN_NUMBER_OF_THREADS));
+        assertFalse(configuration.getBoolean(Setting.RECOGNITION_DELAY));
+    }
+
+    /** Every profile has to pass the validation on its own, e.g. the pre-fetch vs the threads. */
+    @Test
+    public void shouldLoadEveryProfile() throws Exception {
+        for (String profile : new String[]{"low-latency", "max-throughput", "low-memory"}) {
+            ScannerConfiguration configuration = ScannerConfiguration.load(new Properties(), properties(Setting.PROFILE, profile));
+            assertEquals("profile:" + profile, configuration.getSources().get(1));
+            DigitalNumberScanner digitalNumberScanner = new DigitalNumberScanner();
+            digitalNumberScanner.init(configuration);
+        }
+        ScannerConfiguration lowMemory = ScannerConfiguration.load(new Properties(), properties(Setting.PROFILE, "low-memory"));
+        assertEquals(4 * 1024 * 1024, lowMemory.getInt(Setting.IN_FLIGHT_MAX_SIZE));
+        assertEquals(ScannerConfiguration.Engine.PARALLEL, lowMemory.getEngine());
+    }
+
+    /** defaults < profile < file < system properties < command line */
+    @Test
+    public void shouldLayerSources() throws Exception {
+        File configFile = File.createTempFile("scanner", ".properties");
+        configFile.deleteOnExit();
+        try (Writer writer = new FileWriter(configFile)) {
+            writer.write(Setting.PROFILE.key + "=low-memory\n");
+            writer.write(Setting.BLOCK_NUMBER_OF_CHUNKS.key + "=70\n");
+            writer.write(Setting.OUTPUT_BUFFER_SIZE.key + "=16K\n");
+            writer.write(Setting.RECOGNITION_DELAY_MICROSECONDS.key + "=5\n");
+        }
+        Properties systemProperties = properties(Setting.CONFIG, configFile.getPath());
+        systemProperties.setProperty(Setting.OUTPUT_BUFFER_SIZE.key, "32K");
+        systemProperties.setProperty(Setting.RECOGNITION_DELAY_MICROSECONDS.key, "7");
+        systemProperties.setProperty("java.version", "ignored");
+        Properties commandLine = properties(Setting.RECOGNITION_DELAY_MICROSECONDS, "9");
+
+        ScannerConfiguration configuration = ScannerConfiguration.load(systemProperties, commandLine);
+        assertEquals(2, configuration.getInt(Setting.PARALLEL_NUMBER_OF_THREADS));
+        assertEquals(70, configuration.getInt(Setting.BLOCK_NUMBER_OF_CHUNKS));
+        assertEquals(32 * 1024, configuration.getInt(Setting.OUTPUT_BUFFER_SIZE));
+        assertEquals(9, configuration.getInt(Setting.RECOGNITION_DELAY_MICROSECONDS));
+        assertEquals(5, configuration.getSources().size());
+    }
+
+    @Test
+    public void shouldReportAllProblemsAtOnce() {
+        Properties commandLine = properties(Setting.BLOCK_NUMBER_OF_CHUNKS, "0");
+        commandLine.setProperty(Setting.ENGINE.key, "quantum");
+        commandLine.setProperty(Setting.OUTPUT_BUFFER_SIZE.key, "lots");
+        commandLine.setProperty(Setting.RECOGNITION_FUZZY.key, "yes");
+        commandLine.setProperty(ScannerConfiguration.PREFIX + "block.numberOfChunk", "10");
+        try {
+            ScannerConfiguration.load(new Properties(), commandLine);
+            fail("Should not accept the configuration");
+        } catch (InitException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("block.numberOfChunks=0 has to be 1 or more"));
+            assertTrue(e.getMessage(), e.getMessage().contains("engine=quantum is not one of"));
+            assertTrue(e.getMessage(), e.getMessage().contains("output.bufferSize=lots is not a number"));
+            assertTrue(e.getMessage(), e.getMessage().contains("recognition.fuzzy=yes has to be true or false"));
+            assertTrue(e.getMessage(), e.getMessage().contains("unknown setting digital.number.scanner.block.numberOfChunk"));
+        }
+    }
+
+    @Test
+    public void shouldRejectInconsistentSettings() {
+        Properties commandLine = properties(Setting.BLOCK_NUMBER_OF_PRE_FETCH_BLOCKS, "5");
+        try {
+            ScannerConfiguration.load(new Properties(), commandLine);
+            fail("Should not accept fewer pre-fetched blocks than threads");
+        } catch (InitException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("has to be larger than " + Setting.PARALLEL_NUMBER_OF_THREADS.key));
+        }
+    }
+
+    /** The profiles ask for 64 blocks and a thread per processor, on a 128 core machine that's still fine. */
+    @Test
+    public void shouldFollowNumberOfProcessorsWithPrefetch() throws Exception {
+        final IntSupplier availableProcessors = ScannerConfiguration.availableProcessors;
+        ScannerConfiguration.availableProcessors = () -> 128;
+        try {
+            for (String profile : new String[]{"low-latency", "max-throughput"}) {
+                ScannerConfiguration configuration = ScannerConfiguration.load(new Properties(), properties(Setting.PROFILE, profile));
+                assertEquals(128, configuration.getInt(Setting.PARALLEL_NUMBER_OF_THREADS));
+                assertEquals(129, configuration.getInt(Setting.BLOCK_NUMBER_OF_PRE_FETCH_BLOCKS));
+            }
+            ScannerConfiguration.availableProcessors = () -> 4;
+            ScannerConfiguration configuration = ScannerConfiguration.load(new Properties(), properties(Setting.PROFILE, "max-throughput"));
+            assertEquals(64, configuration.getInt(Setting.BLOCK_NUMBER_OF_PRE_FETCH_BLOCKS));
+        } finally {
+            ScannerConfiguration.availableProcessors = availableProcessors;
+        }
+    }
+
+    @Test(expected = InitException.class)
+    public void shouldRejectUnknownProfile() throws Exception {
+        ScannerConfiguration.load(new Properties(), properties(Setting.PROFILE, "turbo"));
+    }
+
+    /** The flags App always had map onto the settings, the input file is not an option. */
+    @Test
+    public void shouldTakeSettingsFromArguments() {
+        Properties properties = ScannerConfiguration.fromArguments(new String[]{
+                "./input/large", "virtual", "forkjoin", "fuzzy", "profile=low-latency", "out=numbers",
+                Setting.BLOCK_NUMBER_OF_CHUNKS.key + "=20"});
+        assertEquals("forkjoin", properties.getProperty(Setting.ENGINE.key));
+        assertEquals("true", properties.getProperty(Setting.PARALLEL_VIRTUAL_THREADS.key));
+        assertEquals("true", properties.getProperty(Setting.RECOGNITION_FUZZY.key));
+        assertEquals("low-latency", properties.getProperty(Setting.PROFILE.key));
+        assertEquals("20", properties.getProperty(Setting.BLOCK_NUMBER_OF_CHUNKS.key));
+        assertEquals(5, properties.size());
+    }
+
+    private static Properties properties(Setting setting, String value) {
+        Properties properties = new Properties();
+        properties.setProperty(setting.key, value);
+        return properties;
+    }
+}
@@ -0,0 +1,137 @@
+package com.olegpro.sc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SwarGlyphEncoderTest {
+    private DigitalNumberScanner digitalNumberScanner;
+    private GlyphClassifier glyphClassifier;
+    private SwarGlyphEncoder glyphEncoder;
+
+    @Before
+    public void setup() throws Exception {
+        digitalNumberScanner = new DigitalNumberScanner();
+        digitalNumberScanner.init();
+        glyphClassifier = digitalNumberScanner.getGlyphClassifier();
+        glyphEncoder = SwarGlyphEncoder.create(glyphClassifier, 3, 3);
+        assertNotNull(glyphEncoder);
+    }
+
+    @Test
+    public void shouldFindExactlyTheZeroLanes() {
+        assertEquals(0x8080808080808080L, SwarGlyphEncoder.zeroLanes(0));
+        assertEquals(0, SwarGlyphEncoder.zeroLanes(-1));
+        // 0x80 and 0x01 next to a zero lane, the usual haszero() test gets those wrong
+        assertEquals(0x0000000000800000L, SwarGlyphEncoder.zeroLanes(0x0101010101000180L));
+    }
+
+    /**
+     * Random glyphs from the alphabet, i.e. all sorts of unknown ones too, both byte orders, rows anywhere in the buffer,
+     * any number of digits, so the last long overlaps the one before by anything from 0 to 7 bytes.
+     */
+    @Test
+    public void shouldEncodeSameAsGlyphClassifier() {
+        final String alphabet = " _|";
+        Random random = new Random(5);
+        long[] columnWords = glyphEncoder.newColumnWords(20);
+        int[] codes = new int[20];
+        for (int i = 0; i < 1000; i++) {
+            int numberOfDigits = 3 + random.nextInt(18);
+            String[] lines = new String[3];
+            StringBuilder chunk = new StringBuilder();
+            int padding = random.nextInt(10);
+            for (int p = 0; p < padding; p++) {
+                chunk.append('x');
+            }
+            int[] rowStarts = new int[3];
+            for (int row = 0; row < 3; row++) {
+                StringBuilder line = new StringBuilder();
+                for (int column = 0; column < numberOfDigits * 3; column++) {
+                    line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                lines[row] = line.toString();
+                rowStarts[row] = chunk.length();
+                chunk.append(lines[row]).append(row < 2 ? "\n" : "");
+            }
+            int[] expectedCodes = new int[numberOfDigits];
+            DigitReader digitReader = new DigitReader(3, 3);
+            for (int digitNumber = 0; digitNumber < numberOfDigits; digitNumber++) {
+                expectedCodes[digitNumber] = glyphClassifier.encode(digitReader.read(lines, digitNumber));
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(chunk.toString().getBytes(ByteBufferChunker.CHUNK_CHARSET))
+                    .order(i % 2 == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            assertTrue(glyphEncoder.encode(buffer, rowStarts, numberOfDigits, columnWords, codes));
+            assertArrayEquals(expectedCodes, Arrays.copyOf(codes, numberOfDigits));
+        }
+    }
+
+    @Test
+    public void shouldNotEncodeCharactersOutsideOfAlphabet() {
+        String line = "    _  _     _  _  _  _  _ ";
+        for (int position = 0; position < line.length(); position++) {
+            String chunk = line + "\n" + line.substring(0, position) + "é" + line.substring(position + 1) + "\n" + line;
+            ByteBuffer buffer = ByteBuffer.wrap(chunk.getBytes(ByteBufferChunker.CHUNK_CHARSET));
+            assertFalse("Position " + position, glyphEncoder.encode(buffer, new int[]{0, 28, 56}, 9, glyphEncoder.newColumnWords(9), new int[9]));
+        }
+    }
+
+    @Test
+    public void shouldNotEncodeRowsShorterThanLong() {
+        ByteBuffer buffer = ByteBuffer.wrap(" _  _ \n| || |\n|_||_|".getBytes(ByteBufferChunker.CHUNK_CHARSET));
+        assertFalse(glyphEncoder.encode(buffer, new int[]{0, 7, 14}, 2, glyphEncoder.newColumnWords(2), new int[2]));
+    }
+
+    /**
+     * Generated input with corrupt glyphs, wrong length rows and mixed widths, scanned with and without the encoder, fuzzy matching on and off.
+     */
+    @Test
+    public void shouldScanSameWithAndWithoutEncoder() throws Exception {
+        Properties variableWidth = new Properties();
+        variableWidth.setProperty(ScannerConfiguration.Setting.CHUNK_NUMBER_OF_DIGITS.key, "0");
+        digitalNumberScanner.init(ScannerConfiguration.load(new Properties(), variableWidth));
+        StringWriter input = new StringWriter();
+        InputGenerator inputGenerator = new InputGenerator(digitalNumberScanner, 13);
+        inputGenerator.numbersOfDigits = new int[]{2, 9, 12, 16};
+        inputGenerator.illegalGlyphRate = 0.05;
+        inputGenerator.wrongLengthRowRate = 0.05;
+        inputGenerator.generate(input, new StringWriter(), 50 * 1024);
+        ByteBuffer buffer = ByteBuffer.wrap(input.toString().getBytes(ByteBufferChunker.CHUNK_CHARSET));
+        for (boolean fuzzy : new boolean[]{false, true}) {
+            digitalNumberScanner.fuzzyMatchingMode = fuzzy;
+            digitalNumberScanner.swarRecognition = false;
+            String scalar = scanAll(buffer, digitalNumberScanner.newByteChunkScanner());
+            digitalNumberScanner.swarRecognition = true;
+            assertEquals(scalar, scanAll(buffer, digitalNumberScanner.newByteChunkScanner()));
+        }
+    }
+
+    @Test
+    public void shouldNotCreateForGlyphsTooTallForByteLanes() {
+        assertEquals(null, SwarGlyphEncoder.create(glyphClassifier, 3, 6));
+    }
+
+    private String scanAll(ByteBuffer buffer, ByteChunkScanner byteChunkScanner) {
+        StringBuilder output = new StringBuilder();
+        ByteBufferChunker chunker = new ByteBufferChunker(buffer.duplicate());
+        while (chunker.hasNext()) {
+            if (!byteChunkScanner.scan(buffer, chunker.chunkStart(), chunker.chunkEnd(), output)) {
+                output.append("rejected").append(System.lineSeparator());
+            }
+            chunker.skip();
+        }
+        return output.toString();
+    }
+}
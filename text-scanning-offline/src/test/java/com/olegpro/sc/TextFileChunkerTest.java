@@ -3,6 +3,11 @@ package com.olegpro.sc;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class TextFileChunkerTest {
@@ -26,4 +31,33 @@ public class TextFileChunkerTest {
         assertTrue("Should have chunk 3", !chunker.next().isEmpty());
         assertTrue("Should have no more chunks", !chunker.hasNext());
     }
-}
\ No newline at end of file
+
+    /** Whitespace in the delimiters shouldn't throw the position off. */
+    @Test
+    public void shouldTrackSamePositionsAsByteBufferChunker() throws Exception {
+        String path = this.getClass().getResource("/multipleChunksWithCorruptedChunk").getPath();
+        ByteBufferChunker byteBufferChunker = new ByteBufferChunker(ByteBuffer.wrap(Files.readAllBytes(Paths.get(path))));
+        TextFileChunker offsetChunker = new TextFileChunker(path, ByteBufferChunker.CHUNK_CHARSET);
+        while (byteBufferChunker.hasNext()) {
+            int chunkStart = byteBufferChunker.chunkStart();
+            int chunkEnd = byteBufferChunker.chunkEnd();
+            assertEquals(byteBufferChunker.next(), offsetChunker.next());
+            assertEquals(chunkStart, offsetChunker.chunkOffset());
+            assertEquals(chunkEnd, offsetChunker.position());
+        }
+        assertTrue("Should have no more chunks", !offsetChunker.hasNext());
+        offsetChunker.close();
+    }
+
+    @Test
+    public void shouldStartFromOffset() throws Exception {
+        String path = this.getClass().getResource("/multipleChunks").getPath();
+        String first = chunker.next();
+        String second = chunker.next();
+        TextFileChunker offsetChunker = new TextFileChunker(path, ByteBufferChunker.CHUNK_CHARSET, chunker.position() - second.length());
+        assertEquals(second, offsetChunker.next());
+        assertEquals(chunker.position(), offsetChunker.position());
+        assertTrue("Should start after the first chunk", !first.isEmpty());
+        offsetChunker.close();
+    }
+}